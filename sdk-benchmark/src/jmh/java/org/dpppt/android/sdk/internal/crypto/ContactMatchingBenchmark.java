@@ -0,0 +1,83 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.dpppt.android.sdk.internal.database.models.Contact;
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Matches known cases published over the last days against the contacts of the retention period. One in every
+ * hundred known cases is a real match, all other contacts are random.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ContactMatchingBenchmark {
+
+	private static final int NUMBER_OF_DAYS_TO_TEST = 14;
+
+	@Param({"100", "1000"})
+	public int numberOfKnownCases;
+
+	@Param({"50", "500"})
+	public int numberOfContactsPerDay;
+
+	private List<MatchingJob> jobs;
+	private ContactMatcher.GetContactsCallback contacts;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		EphIdGenerator generator = new EphIdGenerator();
+		DayDate today = new DayDate();
+		DayDate onsetDate = today.subtractDays(NUMBER_OF_DAYS_TO_TEST);
+
+		jobs = new ArrayList<>();
+		List<byte[]> keys = new ArrayList<>();
+		for (int i = 0; i < numberOfKnownCases; i++) {
+			byte[] key = new byte[32];
+			random.nextBytes(key);
+			keys.add(key);
+			jobs.add(new MatchingJob(i, key, onsetDate, today));
+		}
+
+		List<Contact> contactsOfDay = new ArrayList<>();
+		for (int i = 0; i < numberOfContactsPerDay; i++) {
+			byte[] ephId = new byte[CryptoConstants.KEY_LENGTH];
+			random.nextBytes(ephId);
+			contactsOfDay.add(new Contact(i, today, new EphId(ephId), 0));
+		}
+		for (int i = 0; i < keys.size() && i < contactsOfDay.size(); i += 100) {
+			EphId matchingEphId = generator.createEphIds(keys.get(i), false).get(0);
+			contactsOfDay.set(i, new Contact(i, onsetDate, matchingEphId, 0));
+		}
+		contacts = date -> contactsOfDay;
+	}
+
+	@Benchmark
+	public int checkContactsSequential() {
+		int[] matches = new int[1];
+		for (MatchingJob job : jobs) {
+			ContactMatcher.checkContacts(job.getKey(), job.getOnsetDate(), job.getBucketDate(), contacts,
+					contact -> matches[0]++);
+		}
+		return matches[0];
+	}
+
+	@Benchmark
+	public MatchCollector checkContactsParallel() {
+		MatchCollector collector = new MatchCollector();
+		ParallelContactMatcher.match(jobs, contacts, collector);
+		return collector;
+	}
+
+}
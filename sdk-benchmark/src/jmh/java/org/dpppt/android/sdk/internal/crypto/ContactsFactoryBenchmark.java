@@ -0,0 +1,57 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.dpppt.android.sdk.internal.database.models.Contact;
+import org.dpppt.android.sdk.internal.database.models.Handshake;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Merges a day of handshakes in which every EphId was seen {@link #handshakesPerEphId} times on average.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContactsFactoryBenchmark {
+
+	@Param({"1000", "10000", "100000"})
+	public int numberOfHandshakes;
+
+	@Param({"1", "10"})
+	public int handshakesPerEphId;
+
+	private List<Handshake> handshakes;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		int numberOfEphIds = Math.max(1, numberOfHandshakes / handshakesPerEphId);
+		List<EphId> ephIds = new ArrayList<>();
+		for (int i = 0; i < numberOfEphIds; i++) {
+			byte[] ephId = new byte[CryptoConstants.KEY_LENGTH];
+			random.nextBytes(ephId);
+			ephIds.add(new EphId(ephId));
+		}
+
+		long now = System.currentTimeMillis();
+		handshakes = new ArrayList<>();
+		for (int i = 0; i < numberOfHandshakes; i++) {
+			EphId ephId = ephIds.get(random.nextInt(numberOfEphIds));
+			handshakes.add(new Handshake(i, now - random.nextInt(CryptoConstants.MILLISECONDS_PER_EPOCH), ephId, 0, -60));
+		}
+	}
+
+	@Benchmark
+	public List<Contact> mergeHandshakesToContacts() {
+		return ContactsFactory.mergeHandshakesToContacts(handshakes);
+	}
+
+}
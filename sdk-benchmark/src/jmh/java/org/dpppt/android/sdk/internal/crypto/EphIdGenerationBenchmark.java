@@ -0,0 +1,61 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EphIdGenerationBenchmark {
+
+	private EphIdGenerator generator;
+	private byte[] sk;
+	private byte[] ephIdBuffer;
+
+	@Setup
+	public void setup() {
+		generator = new EphIdGenerator();
+		sk = new byte[32];
+		new SecureRandom().nextBytes(sk);
+		ephIdBuffer = new byte[EphIdGenerator.EPHIDS_PER_DAY_BUFFER_SIZE];
+	}
+
+	@Benchmark
+	public byte[] ephIdGenerationIntoBuffer() {
+		generator.generateEphIds(sk, ephIdBuffer, 0);
+		return ephIdBuffer;
+	}
+
+	@Benchmark
+	public List<EphId> ephIdGenerationAsList() {
+		return generator.createEphIds(sk, false);
+	}
+
+	@Benchmark
+	public List<EphId> ephIdGenerationShuffled() {
+		return generator.createEphIds(sk, true);
+	}
+
+	@Benchmark
+	public byte[] skRatchet() {
+		return generator.getSKt1(sk);
+	}
+
+	@Benchmark
+	public byte[] skRatchetOverRetentionPeriod() {
+		byte[] key = sk;
+		for (int i = 0; i < CryptoConstants.NUMBER_OF_DAYS_TO_KEEP_DATA; i++) {
+			key = generator.getSKt1(key);
+		}
+		return key;
+	}
+
+}
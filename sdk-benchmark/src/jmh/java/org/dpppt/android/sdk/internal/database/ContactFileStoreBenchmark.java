@@ -0,0 +1,117 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoConstants;
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.crypto.EphIdGenerator;
+import org.dpppt.android.sdk.internal.crypto.MatchingJob;
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Matches known cases against a {@link ContactFileStore} holding the contacts of the whole retention period, and
+ * drops the oldest day at the end of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ContactFileStoreBenchmark {
+
+	private static final int NUMBER_OF_DAYS_TO_TEST = 14;
+
+	@Param({"100", "1000"})
+	public int numberOfKnownCases;
+
+	@Param({"500", "50000"})
+	public int numberOfContactsPerDay;
+
+	private File directory;
+	private ContactFileStore store;
+	private EphIdGenerator generator;
+	private List<MatchingJob> jobs;
+	private DayDate oldestDay;
+	private File oldestDayCopy;
+
+	@Setup
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("contacts").toFile();
+		store = new ContactFileStore(directory);
+		generator = new EphIdGenerator();
+		Random random = new Random(42);
+		DayDate today = new DayDate();
+		DayDate onsetDate = today.subtractDays(NUMBER_OF_DAYS_TO_TEST);
+
+		jobs = new ArrayList<>();
+		for (int i = 0; i < numberOfKnownCases; i++) {
+			byte[] key = new byte[32];
+			random.nextBytes(key);
+			jobs.add(new MatchingJob(i + 1, key, onsetDate, today));
+		}
+
+		for (int day = 0; day < CryptoConstants.NUMBER_OF_DAYS_TO_KEEP_DATA; day++) {
+			List<EphId> contacts = new ArrayList<>();
+			for (int i = 0; i < numberOfContactsPerDay; i++) {
+				contacts.add(new EphId(random.nextLong(), random.nextLong()));
+			}
+			store.add(today.subtractDays(day), contacts);
+			store.compact(today.subtractDays(day));
+		}
+
+		oldestDay = today.subtractDays(CryptoConstants.NUMBER_OF_DAYS_TO_KEEP_DATA - 1);
+		oldestDayCopy = File.createTempFile("oldest", ".contacts");
+		Files.copy(new File(directory, oldestDay.formatAsString() + ".contacts").toPath(), oldestDayCopy.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	@TearDown
+	public void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+		oldestDayCopy.delete();
+	}
+
+	@Benchmark
+	public int matchKnownCases() throws IOException {
+		int matches = 0;
+		for (MatchingJob job : jobs) {
+			matches += store.match(generator, job);
+		}
+		return matches;
+	}
+
+	@State(Scope.Thread)
+	public static class OldestDay {
+
+		@Setup(Level.Invocation)
+		public void restore(ContactFileStoreBenchmark benchmark) throws IOException {
+			Files.copy(benchmark.oldestDayCopy.toPath(),
+					new File(benchmark.directory, benchmark.oldestDay.formatAsString() + ".contacts").toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+
+	}
+
+	@Benchmark
+	public int dropOldestDay(OldestDay restoredDay) throws IOException {
+		return store.deleteDaysBefore(oldestDay.getNextDay());
+	}
+
+}
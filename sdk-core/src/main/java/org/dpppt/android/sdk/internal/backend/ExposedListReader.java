@@ -0,0 +1,161 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.backend;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.Arrays;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoConstants;
+import org.dpppt.android.sdk.internal.util.DayDate;
+
+/**
+ * Decodes the exposee list of the backend, {"exposed":[{"key":"...","onset":"yyyy-MM-dd"},...]}, token by token and
+ * hands every exposee to the handler as soon as it is read, so the list is never held in memory. The Base64 key is
+ * decoded into a buffer reused for every exposee and the onset into a day number.
+ * <p>
+ * Exposees without a valid key of {@link CryptoConstants#SECRET_KEY_LENGTH} bytes or without an onset are skipped and
+ * counted, a malformed onset fails the whole list.
+ */
+public class ExposedListReader {
+
+	private static final String FIELD_EXPOSED = "exposed";
+	private static final String FIELD_KEY = "key";
+	private static final String FIELD_ONSET = "onset";
+
+	private static final int[] BASE64_VALUES = new int[128];
+
+	static {
+		Arrays.fill(BASE64_VALUES, -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < alphabet.length(); i++) {
+			BASE64_VALUES[alphabet.charAt(i)] = i;
+		}
+	}
+
+	private final ExposeeHandler handler;
+	private final byte[] keyBuffer = new byte[CryptoConstants.SECRET_KEY_LENGTH];
+	private int exposeeCount;
+	private int skippedCount;
+
+	public ExposedListReader(ExposeeHandler handler) {
+		this.handler = handler;
+	}
+
+	public void read(Reader in) throws IOException {
+		JsonReader reader = new JsonReader(in);
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (FIELD_EXPOSED.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					readExposee(reader);
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	/**
+	 * @return the number of exposees handed to the handler
+	 */
+	public int getExposeeCount() {
+		return exposeeCount;
+	}
+
+	/**
+	 * @return the number of exposees skipped for a missing or invalid key or a missing onset
+	 */
+	public int getSkippedCount() {
+		return skippedCount;
+	}
+
+	private void readExposee(JsonReader reader) throws IOException {
+		int keyLength = -1;
+		String onset = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.skipValue();
+			} else if (FIELD_KEY.equals(name)) {
+				keyLength = decodeBase64(reader.nextString(), keyBuffer);
+			} else if (FIELD_ONSET.equals(name)) {
+				onset = reader.nextString();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (keyLength != CryptoConstants.SECRET_KEY_LENGTH || onset == null) {
+			skippedCount++;
+			return;
+		}
+		long onsetEpochDay;
+		try {
+			onsetEpochDay = DayDate.parseEpochDay(onset);
+		} catch (ParseException e) {
+			throw new IOException("Unexpected DayDate format " + onset, e);
+		}
+		handler.onExposee(keyBuffer, onsetEpochDay);
+		exposeeCount++;
+	}
+
+	/**
+	 * Decodes standard Base64, padded or not, into the buffer.
+	 *
+	 * @return the number of bytes decoded, -1 if the value is not valid Base64 or does not fit into the buffer
+	 */
+	static int decodeBase64(String value, byte[] buffer) {
+		int length = value.length();
+		while (length > 0 && value.charAt(length - 1) == '=') {
+			length--;
+		}
+		if (value.length() - length > 2 || length % 4 == 1) {
+			return -1;
+		}
+		int bits = 0;
+		int bitCount = 0;
+		int decoded = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			int digit = c < BASE64_VALUES.length ? BASE64_VALUES[c] : -1;
+			if (digit < 0) {
+				return -1;
+			}
+			bits = (bits << 6) | digit;
+			bitCount += 6;
+			if (bitCount >= 8) {
+				if (decoded == buffer.length) {
+					return -1;
+				}
+				bitCount -= 8;
+				buffer[decoded++] = (byte) (bits >> bitCount);
+				bits &= (1 << bitCount) - 1;
+			}
+		}
+		return decoded;
+	}
+
+	public interface ExposeeHandler {
+
+		/**
+		 * @param key the raw key, the buffer is reused for the next exposee
+		 * @param onsetEpochDay the onset in days since 1970-01-01
+		 */
+		void onExposee(byte[] key, long onsetEpochDay) throws IOException;
+
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.dpppt.android.sdk.internal.database.models.Contact;
+import org.dpppt.android.sdk.internal.util.DayDate;
+
+import static org.dpppt.android.sdk.internal.crypto.CryptoConstants.NUMBER_OF_EPOCHS_PER_DAY;
+
+public class ContactMatcher {
+
+	public static void checkContacts(byte[] sk, DayDate onsetDate, DayDate bucketDate, GetContactsCallback contactCallback,
+			MatchCallback matchCallback) {
+		checkContacts(EphIdGenerator.forCurrentThread(), new EphIdSet(NUMBER_OF_EPOCHS_PER_DAY), sk, onsetDate, onsetDate,
+				bucketDate, contactCallback, matchCallback);
+	}
+
+	public static void checkContacts(EphIdGenerator generator, EphIdSet ephIdSet, byte[] sk, DayDate onsetDate,
+			DayDate firstDayToTest, DayDate bucketDate, GetContactsCallback contactCallback, MatchCallback matchCallback) {
+		DayDate dayToTest = onsetDate;
+		byte[] skForDay = sk;
+		byte[] ephIdBuffer = null;
+		while (dayToTest.isBeforeOrEquals(bucketDate)) {
+			List<Contact> contactsOnDay =
+					dayToTest.isBefore(firstDayToTest) ? Collections.emptyList() : contactCallback.getContacts(dayToTest);
+			if (contactsOnDay.size() > 0) {
+				//generate all ephIds for day
+				if (ephIdBuffer == null) {
+					ephIdBuffer = new byte[EphIdGenerator.EPHIDS_PER_DAY_BUFFER_SIZE];
+				}
+				generator.generateEphIds(skForDay, ephIdBuffer, 0);
+				ephIdSet.clear();
+				ephIdSet.addAll(ephIdBuffer, 0, NUMBER_OF_EPOCHS_PER_DAY);
+
+				//check all contacts if they match any of the ephIds
+				for (Contact contact : contactsOnDay) {
+					if (ephIdSet.contains(contact.getEphId())) {
+						matchCallback.contactMatched(contact);
+					}
+				}
+			}
+
+			//update day to next day and rotate sk accordingly
+			dayToTest = dayToTest.getNextDay();
+			skForDay = generator.getSKt1(skForDay);
+		}
+	}
+
+	public interface GetContactsCallback {
+
+		List<Contact> getContacts(DayDate date);
+
+	}
+
+
+	public interface MatchCallback {
+
+		void contactMatched(Contact contact);
+
+	}
+
+}
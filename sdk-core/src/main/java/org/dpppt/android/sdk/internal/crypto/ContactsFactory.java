@@ -0,0 +1,39 @@
+package org.dpppt.android.sdk.internal.crypto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dpppt.android.sdk.internal.database.models.Contact;
+import org.dpppt.android.sdk.internal.database.models.Handshake;
+import org.dpppt.android.sdk.internal.util.DayDate;
+
+import static org.dpppt.android.sdk.internal.crypto.CryptoConstants.CONTACT_THRESHOLD;
+
+public class ContactsFactory {
+
+	public static List<Contact> mergeHandshakesToContacts(List<Handshake> handshakes) {
+		int numberOfHandshakes = handshakes.size();
+		EphIdIndexMap firstHandshakeIndex = new EphIdIndexMap(numberOfHandshakes);
+		EphIdCountMap handshakeCount = new EphIdCountMap(numberOfHandshakes);
+
+		// group handhakes by id
+		for (int i = 0; i < numberOfHandshakes; i++) {
+			EphId ephId = handshakes.get(i).getEphId();
+			firstHandshakeIndex.putIfAbsent(ephId, i);
+			handshakeCount.increment(ephId);
+		}
+
+		//filter result to only contain ephIDs which have been seen more than contactThreshold times
+		List<Contact> contacts = new ArrayList<>();
+		for (int i = 0; i < numberOfHandshakes; i++) {
+			Handshake handshake = handshakes.get(i);
+			EphId ephId = handshake.getEphId();
+			if (firstHandshakeIndex.get(ephId) == i && handshakeCount.get(ephId) > CONTACT_THRESHOLD) {
+				contacts.add(new Contact(-1, new DayDate(handshake.getTimestamp()), ephId, 0));
+			}
+		}
+
+		return contacts;
+	}
+
+}
@@ -0,0 +1,20 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+public final class CryptoConstants {
+
+	public static final int KEY_LENGTH = 16;
+	public static final int SECRET_KEY_LENGTH = 32;
+
+	public static final int NUMBER_OF_DAYS_TO_KEEP_DATA = 21;
+	public static final int NUMBER_OF_EPOCHS_PER_DAY = 24 * 4;
+	public static final int MILLISECONDS_PER_EPOCH = 24 * 60 * 60 * 1000 / NUMBER_OF_EPOCHS_PER_DAY;
+	public static final int CONTACT_THRESHOLD = 1;
+
+	private CryptoConstants() { }
+
+}
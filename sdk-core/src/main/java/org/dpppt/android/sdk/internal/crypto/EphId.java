@@ -0,0 +1,102 @@
+package org.dpppt.android.sdk.internal.crypto;
+
+import com.google.gson.annotations.JsonAdapter;
+
+/**
+ * 16 byte ephemeral id, stored as two big-endian longs so that it can be hashed and compared without touching an
+ * array.
+ */
+@JsonAdapter(EphIdJsonAdapter.class)
+public class EphId {
+
+	private final long high;
+	private final long low;
+
+	/**
+	 * @throws IllegalArgumentException if data is not {@link CryptoConstants#KEY_LENGTH} bytes long
+	 */
+	public EphId(byte[] data) {
+		this(checkLength(data), 0);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if data has less than {@link CryptoConstants#KEY_LENGTH} bytes from offset on
+	 */
+	public EphId(byte[] data, int offset) {
+		this(readLong(checkRange(data, offset), offset), readLong(data, offset + 8));
+	}
+
+	public EphId(long high, long low) {
+		this.high = high;
+		this.low = low;
+	}
+
+	public byte[] getData() {
+		byte[] data = new byte[CryptoConstants.KEY_LENGTH];
+		writeLong(high, data, 0);
+		writeLong(low, data, 8);
+		return data;
+	}
+
+	public long getHigh() {
+		return high;
+	}
+
+	public long getLow() {
+		return low;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if data is not {@link CryptoConstants#KEY_LENGTH} bytes long
+	 */
+	public static byte[] checkLength(byte[] data) {
+		if (data.length != CryptoConstants.KEY_LENGTH) {
+			throw new IllegalArgumentException("EphId must be " + CryptoConstants.KEY_LENGTH + " bytes, got " + data.length);
+		}
+		return data;
+	}
+
+	private static byte[] checkRange(byte[] data, int offset) {
+		if (offset < 0 || offset > data.length - CryptoConstants.KEY_LENGTH) {
+			throw new IllegalArgumentException("no EphId at offset " + offset + " of " + data.length + " bytes");
+		}
+		return data;
+	}
+
+	public static long readLong(byte[] data, int offset) {
+		long value = 0;
+		for (int i = offset; i < offset + 8; i++) {
+			value = (value << 8) | (i < data.length ? data[i] & 0xff : 0);
+		}
+		return value;
+	}
+
+	public static void writeLong(long value, byte[] data, int offset) {
+		for (int i = offset + 7; i >= offset; i--) {
+			data[i] = (byte) value;
+			value >>>= 8;
+		}
+	}
+
+	static int hash(long high, long low) {
+		long h = high * 0x9E3779B97F4A7C15L + low;
+		h ^= h >>> 32;
+		h *= 0xC2B2AE3D27D4EB4FL;
+		h ^= h >>> 29;
+		return (int) h;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		EphId ephId = (EphId) o;
+		return high == ephId.high && low == ephId.low;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash(high, low);
+	}
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+public class EphIdCountMap extends EphIdTable {
+
+	public EphIdCountMap(int expectedSize) {
+		super(expectedSize);
+	}
+
+	/**
+	 * @return the count of the given id after incrementing it
+	 */
+	public int increment(EphId ephId) {
+		return increment(ephId.getHigh(), ephId.getLow());
+	}
+
+	public int increment(long high, long low) {
+		int slot = insertSlot(high, low);
+		if (slot < 0) {
+			slot = ~slot;
+			values[slot] = 0;
+		}
+		return ++values[slot];
+	}
+
+	/**
+	 * @return the count of the given id, 0 if it was never added
+	 */
+	public int get(EphId ephId) {
+		return get(ephId.getHigh(), ephId.getLow());
+	}
+
+	public int get(long high, long low) {
+		int slot = findSlot(high, low);
+		return slot >= 0 ? values[slot] : 0;
+	}
+
+}
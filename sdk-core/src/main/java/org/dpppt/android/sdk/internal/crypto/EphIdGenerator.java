@@ -0,0 +1,117 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.dpppt.android.sdk.internal.crypto.CryptoConstants.KEY_LENGTH;
+import static org.dpppt.android.sdk.internal.crypto.CryptoConstants.NUMBER_OF_EPOCHS_PER_DAY;
+
+/**
+ * Holds its own SHA-256, HMAC and AES instances for the key ratchet and EphId derivation. Not thread-safe, use
+ * {@link #forCurrentThread()} or one instance per thread.
+ */
+public class EphIdGenerator {
+
+	/**
+	 * Size of the buffer holding all EphIds of one day back to back.
+	 */
+	public static final int EPHIDS_PER_DAY_BUFFER_SIZE = NUMBER_OF_EPOCHS_PER_DAY * KEY_LENGTH;
+
+	private static final byte[] BROADCAST_KEY = "broadcast key".getBytes();
+
+	private static final ThreadLocal<EphIdGenerator> THREAD_GENERATOR = new ThreadLocal<EphIdGenerator>() {
+		@Override
+		protected EphIdGenerator initialValue() {
+			return new EphIdGenerator();
+		}
+	};
+
+	private final MessageDigest digest;
+	private final Mac mac;
+	private final Cipher cipher;
+	private final byte[] prf;
+	private final IvParameterSpec counter = new IvParameterSpec(new byte[16]);
+	// AES-CTR of zeros is the plain keystream, which is what the EphIds are
+	private final byte[] zeros = new byte[EPHIDS_PER_DAY_BUFFER_SIZE];
+
+	public static EphIdGenerator forCurrentThread() {
+		return THREAD_GENERATOR.get();
+	}
+
+	public EphIdGenerator() {
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+			mac = Mac.getInstance("HmacSHA256");
+			cipher = Cipher.getInstance("AES/CTR/NoPadding");
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+			throw new IllegalStateException("SHA-256, HmacSHA256 and AES algorithms must be present!", e);
+		}
+		prf = new byte[mac.getMacLength()];
+	}
+
+	public byte[] getSKt1(byte[] SKt0) {
+		return digest.digest(SKt0);
+	}
+
+	/**
+	 * Writes the {@link CryptoConstants#NUMBER_OF_EPOCHS_PER_DAY} EphIds of the given key in epoch order into
+	 * {@code out}, starting at {@code offset}, with a single cipher call.
+	 */
+	public void generateEphIds(byte[] SK, byte[] out, int offset) {
+		try {
+			initCipher(SK);
+			cipher.doFinal(zeros, 0, EPHIDS_PER_DAY_BUFFER_SIZE, out, offset);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("HmacSHA256 and AES algorithms must be present!", e);
+		}
+	}
+
+	/**
+	 * Writes the {@link CryptoConstants#NUMBER_OF_EPOCHS_PER_DAY} EphIds of the given key in epoch order into
+	 * {@code out}, advancing its position by {@link #EPHIDS_PER_DAY_BUFFER_SIZE}.
+	 */
+	public void generateEphIds(byte[] SK, ByteBuffer out) {
+		try {
+			initCipher(SK);
+			cipher.doFinal(ByteBuffer.wrap(zeros), out);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("HmacSHA256 and AES algorithms must be present!", e);
+		}
+	}
+
+	public List<EphId> createEphIds(byte[] SK, boolean shuffle) {
+		byte[] ephIdBuffer = new byte[EPHIDS_PER_DAY_BUFFER_SIZE];
+		generateEphIds(SK, ephIdBuffer, 0);
+		ArrayList<EphId> ephIds = new ArrayList<>(NUMBER_OF_EPOCHS_PER_DAY);
+		for (int i = 0; i < NUMBER_OF_EPOCHS_PER_DAY; i++) {
+			ephIds.add(new EphId(ephIdBuffer, i * KEY_LENGTH));
+		}
+		if (shuffle) {
+			Collections.shuffle(ephIds, new SecureRandom());
+		}
+		return ephIds;
+	}
+
+	private void initCipher(byte[] SK) throws InvalidKeyException, InvalidAlgorithmParameterException,
+			ShortBufferException {
+		mac.init(new SecretKeySpec(SK, "HmacSHA256"));
+		mac.update(BROADCAST_KEY);
+		mac.doFinal(prf, 0);
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(prf, "AES"), counter);
+	}
+
+}
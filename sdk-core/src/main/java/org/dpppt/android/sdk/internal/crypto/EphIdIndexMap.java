@@ -0,0 +1,65 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+public class EphIdIndexMap extends EphIdTable {
+
+	public static final int NO_INDEX = -1;
+
+	public EphIdIndexMap(int expectedSize) {
+		super(expectedSize);
+	}
+
+	/**
+	 * @return the index previously stored for the given id, or {@link #NO_INDEX}
+	 */
+	public int put(EphId ephId, int index) {
+		return put(ephId.getHigh(), ephId.getLow(), index);
+	}
+
+	public int put(long high, long low, int index) {
+		int slot = insertSlot(high, low);
+		int previous = NO_INDEX;
+		if (slot >= 0) {
+			previous = values[slot];
+		} else {
+			slot = ~slot;
+		}
+		values[slot] = index;
+		return previous;
+	}
+
+	/**
+	 * Stores the index only if the id is not yet present.
+	 *
+	 * @return the index already stored for the given id, or {@link #NO_INDEX} if the given index was stored
+	 */
+	public int putIfAbsent(EphId ephId, int index) {
+		return putIfAbsent(ephId.getHigh(), ephId.getLow(), index);
+	}
+
+	public int putIfAbsent(long high, long low, int index) {
+		int slot = insertSlot(high, low);
+		if (slot >= 0) {
+			return values[slot];
+		}
+		values[~slot] = index;
+		return NO_INDEX;
+	}
+
+	/**
+	 * @return the index stored for the given id, or {@link #NO_INDEX}
+	 */
+	public int get(EphId ephId) {
+		return get(ephId.getHigh(), ephId.getLow());
+	}
+
+	public int get(long high, long low) {
+		int slot = findSlot(high, low);
+		return slot >= 0 ? values[slot] : NO_INDEX;
+	}
+
+}
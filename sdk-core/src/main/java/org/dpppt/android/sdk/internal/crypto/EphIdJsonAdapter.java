@@ -0,0 +1,57 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+
+package org.dpppt.android.sdk.internal.crypto;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Keeps the {"data":[...]} format EphIds were stored with when they wrapped a byte array.
+ */
+class EphIdJsonAdapter extends TypeAdapter<EphId> {
+
+	private static final String FIELD_DATA = "data";
+
+	@Override
+	public void write(JsonWriter out, EphId value) throws IOException {
+		out.beginObject();
+		out.name(FIELD_DATA);
+		out.beginArray();
+		for (byte b : value.getData()) {
+			out.value(b);
+		}
+		out.endArray();
+		out.endObject();
+	}
+
+	@Override
+	public EphId read(JsonReader in) throws IOException {
+		byte[] data = new byte[CryptoConstants.KEY_LENGTH];
+		in.beginObject();
+		while (in.hasNext()) {
+			if (FIELD_DATA.equals(in.nextName())) {
+				in.beginArray();
+				int i = 0;
+				while (in.hasNext()) {
+					int value = in.nextInt();
+					if (i < data.length) {
+						data[i++] = (byte) value;
+					}
+				}
+				in.endArray();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return new EphId(data);
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+public class EphIdSet extends EphIdTable {
+
+	public EphIdSet(int expectedSize) {
+		super(expectedSize);
+	}
+
+	public boolean add(EphId ephId) {
+		return add(ephId.getHigh(), ephId.getLow());
+	}
+
+	public boolean add(long high, long low) {
+		return insertSlot(high, low) < 0;
+	}
+
+	/**
+	 * Adds {@code count} EphIds stored back to back in {@code buffer}, starting at {@code offset}.
+	 */
+	public void addAll(byte[] buffer, int offset, int count) {
+		for (int i = 0; i < count; i++) {
+			int position = offset + i * CryptoConstants.KEY_LENGTH;
+			add(EphId.readLong(buffer, position), EphId.readLong(buffer, position + 8));
+		}
+	}
+
+	public boolean contains(EphId ephId) {
+		return contains(ephId.getHigh(), ephId.getLow());
+	}
+
+	public boolean contains(long high, long low) {
+		return findSlot(high, low) >= 0;
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table keyed by the two longs of an {@link EphId}. Keys, occupancy and an int value per slot
+ * live in flat arrays, so adding and looking up ids does not allocate per entry.
+ */
+abstract class EphIdTable {
+
+	private static final int MIN_CAPACITY = 8;
+
+	private long[] keys;
+	private boolean[] used;
+	int[] values;
+	private int mask;
+	private int size;
+
+	EphIdTable(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/**
+	 * @return the slot holding the given id, or -1 if it is not in the table
+	 */
+	final int findSlot(long high, long low) {
+		int slot = EphId.hash(high, low) & mask;
+		while (used[slot]) {
+			if (keys[2 * slot] == high && keys[2 * slot + 1] == low) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the slot of the given id if it was already present, or {@code ~slot} of the newly inserted entry
+	 */
+	final int insertSlot(long high, long low) {
+		if (2 * (size + 1) > used.length) {
+			rehash(used.length * 2);
+		}
+		int slot = EphId.hash(high, low) & mask;
+		while (used[slot]) {
+			if (keys[2 * slot] == high && keys[2 * slot + 1] == low) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		used[slot] = true;
+		keys[2 * slot] = high;
+		keys[2 * slot + 1] = low;
+		size++;
+		return ~slot;
+	}
+
+	private void rehash(int newCapacity) {
+		long[] oldKeys = keys;
+		boolean[] oldUsed = used;
+		int[] oldValues = values;
+		allocate(newCapacity);
+		for (int oldSlot = 0; oldSlot < oldUsed.length; oldSlot++) {
+			if (!oldUsed[oldSlot]) {
+				continue;
+			}
+			long high = oldKeys[2 * oldSlot];
+			long low = oldKeys[2 * oldSlot + 1];
+			int slot = EphId.hash(high, low) & mask;
+			while (used[slot]) {
+				slot = (slot + 1) & mask;
+			}
+			used[slot] = true;
+			keys[2 * slot] = high;
+			keys[2 * slot + 1] = low;
+			values[slot] = oldValues[oldSlot];
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[2 * capacity];
+		used = new boolean[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2 * expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+}
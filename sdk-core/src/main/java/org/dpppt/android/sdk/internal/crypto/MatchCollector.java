@@ -0,0 +1,53 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.dpppt.android.sdk.internal.database.models.Contact;
+
+/**
+ * Thread-safe sink for the matches found by the matching workers, drained once all workers are done.
+ */
+public class MatchCollector {
+
+	private final ConcurrentLinkedQueue<Match> matches = new ConcurrentLinkedQueue<>();
+
+	void add(long knownCaseId, Contact contact) {
+		matches.add(new Match(knownCaseId, contact));
+	}
+
+	public boolean isEmpty() {
+		return matches.isEmpty();
+	}
+
+	public void drain(MatchConsumer consumer) {
+		Match match;
+		while ((match = matches.poll()) != null) {
+			consumer.onMatch(match.knownCaseId, match.contact);
+		}
+	}
+
+	public interface MatchConsumer {
+
+		void onMatch(long knownCaseId, Contact contact);
+
+	}
+
+
+	private static class Match {
+
+		private final long knownCaseId;
+		private final Contact contact;
+
+		private Match(long knownCaseId, Contact contact) {
+			this.knownCaseId = knownCaseId;
+			this.contact = contact;
+		}
+
+	}
+
+}
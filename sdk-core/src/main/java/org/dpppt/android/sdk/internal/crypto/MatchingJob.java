@@ -0,0 +1,71 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import org.dpppt.android.sdk.internal.util.DayDate;
+
+public class MatchingJob {
+
+	private long knownCaseId;
+	private byte[] key;
+	private DayDate onsetDate;
+	private DayDate firstDayToMatch;
+	private DayDate bucketDate;
+
+	public MatchingJob(long knownCaseId, byte[] key, DayDate onsetDate, DayDate bucketDate) {
+		this(knownCaseId, key, onsetDate, onsetDate, bucketDate);
+	}
+
+	/**
+	 * @param firstDayToMatch first day not matched yet, days between the onset and this day are skipped
+	 */
+	public MatchingJob(long knownCaseId, byte[] key, DayDate onsetDate, DayDate firstDayToMatch, DayDate bucketDate) {
+		this.knownCaseId = knownCaseId;
+		this.key = key;
+		this.onsetDate = onsetDate;
+		this.firstDayToMatch = firstDayToMatch;
+		this.bucketDate = bucketDate;
+	}
+
+	/**
+	 * @return the part of this job that matches at most the given number of days from {@link #getFirstDayToMatch()} on
+	 */
+	public MatchingJob limitToDays(int numberOfDays) {
+		long lastDay = Math.min(firstDayToMatch.getEpochDay() + numberOfDays - 1, bucketDate.getEpochDay());
+		return new MatchingJob(knownCaseId, key, onsetDate, firstDayToMatch, DayDate.fromEpochDay(lastDay));
+	}
+
+	/**
+	 * @return the rest of this job once all days up to and including the given day are matched, null if nothing is left
+	 */
+	public MatchingJob continueAfter(DayDate lastMatchedDay) {
+		if (!lastMatchedDay.isBefore(bucketDate)) {
+			return null;
+		}
+		return new MatchingJob(knownCaseId, key, onsetDate, lastMatchedDay.getNextDay(), bucketDate);
+	}
+
+	public long getKnownCaseId() {
+		return knownCaseId;
+	}
+
+	public byte[] getKey() {
+		return key;
+	}
+
+	public DayDate getOnsetDate() {
+		return onsetDate;
+	}
+
+	public DayDate getFirstDayToMatch() {
+		return firstDayToMatch;
+	}
+
+	public DayDate getBucketDate() {
+		return bucketDate;
+	}
+
+}
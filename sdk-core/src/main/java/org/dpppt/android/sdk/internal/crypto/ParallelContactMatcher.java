@@ -0,0 +1,76 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Matches independent known cases on a bounded pool with one worker per core. Every worker uses the
+ * {@link EphIdGenerator} of its thread, so no crypto instance is shared between threads. The contacts callback is read
+ * concurrently and must therefore be safe for concurrent reads.
+ */
+public class ParallelContactMatcher {
+
+	private static final int NUMBER_OF_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+	private static ExecutorService executor;
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			AtomicInteger threadCount = new AtomicInteger();
+			executor = Executors.newFixedThreadPool(NUMBER_OF_WORKERS, runnable -> {
+				Thread thread = new Thread(runnable, "MatchingWorker-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return executor;
+	}
+
+	public static void match(List<MatchingJob> jobs, ContactMatcher.GetContactsCallback contactCallback,
+			MatchCollector collector) {
+		AtomicInteger nextJob = new AtomicInteger();
+		Runnable worker = () -> {
+			EphIdGenerator generator = EphIdGenerator.forCurrentThread();
+			EphIdSet ephIdSet = new EphIdSet(CryptoConstants.NUMBER_OF_EPOCHS_PER_DAY);
+			int jobIndex;
+			while ((jobIndex = nextJob.getAndIncrement()) < jobs.size()) {
+				MatchingJob job = jobs.get(jobIndex);
+				ContactMatcher.checkContacts(generator, ephIdSet, job.getKey(), job.getOnsetDate(), job.getFirstDayToMatch(),
+						job.getBucketDate(), contactCallback, contact -> collector.add(job.getKnownCaseId(), contact));
+			}
+		};
+
+		int numberOfWorkers = Math.min(NUMBER_OF_WORKERS, jobs.size());
+		if (numberOfWorkers <= 1) {
+			worker.run();
+			return;
+		}
+
+		ExecutorService executor = getExecutor();
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < numberOfWorkers; i++) {
+			futures.add(executor.submit(worker));
+		}
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("matching worker failed", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while matching", e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,351 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoConstants;
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.crypto.EphIdGenerator;
+import org.dpppt.android.sdk.internal.crypto.MatchingJob;
+import org.dpppt.android.sdk.internal.util.DayDate;
+
+/**
+ * Storage engine for contacts that keeps one binary file per UTC day instead of rows in a table. A day file holds
+ * fixed-size records, sorted by EphId and without duplicates: the EphId as two big-endian longs followed by the id of
+ * the associated known case, 0 while unmatched. Files are read and updated in place through a
+ * {@link MappedByteBuffer}.
+ * <p>
+ * New contacts are appended to a pending file of their day and merged into the sorted file by {@link #compact},
+ * which every read of the day does first. Matching looks up the EphIds of a known case by binary search, and
+ * dropping a day at the end of the retention period is deleting its files.
+ */
+public class ContactFileStore {
+
+	static final int RECORD_SIZE = 2 * 8 + 4;
+
+	private static final String SORTED_SUFFIX = ".contacts";
+	private static final String PENDING_SUFFIX = ".pending";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final File directory;
+	private final HashMap<DayDate, MappedByteBuffer> mappedDays = new HashMap<>();
+
+	public ContactFileStore(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("could not create " + directory);
+		}
+		this.directory = directory;
+	}
+
+	/**
+	 * Appends the contacts to the pending file of the day. Contacts already stored are dropped on the next compaction.
+	 */
+	public synchronized void add(DayDate day, Collection<EphId> ephIds) throws IOException {
+		if (ephIds.isEmpty()) {
+			return;
+		}
+		ByteBuffer records = ByteBuffer.allocate(ephIds.size() * RECORD_SIZE);
+		for (EphId ephId : ephIds) {
+			records.putLong(ephId.getHigh()).putLong(ephId.getLow()).putInt(0);
+		}
+		records.flip();
+		FileOutputStream out = new FileOutputStream(pendingFile(day), true);
+		try {
+			FileChannel channel = out.getChannel();
+			while (records.hasRemaining()) {
+				channel.write(records);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Merges the pending contacts of the day into its sorted file. The merged file is written next to the old one and
+	 * renamed over it, so a crash leaves either the old or the new file.
+	 */
+	public synchronized void compact(DayDate day) throws IOException {
+		File pendingFile = pendingFile(day);
+		if (!pendingFile.exists()) {
+			return;
+		}
+		EphId[] pending = readPending(pendingFile);
+		Arrays.sort(pending, (a, b) -> compare(a.getHigh(), a.getLow(), b.getHigh(), b.getLow()));
+
+		ByteBuffer sorted = map(day);
+		int sortedCount = sorted != null ? sorted.capacity() / RECORD_SIZE : 0;
+		File tempFile = new File(directory, day.formatAsString() + TEMP_SUFFIX);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+		try {
+			int i = 0;
+			int j = 0;
+			while (i < sortedCount || j < pending.length) {
+				if (j > 0 && j < pending.length && pending[j].getHigh() == pending[j - 1].getHigh() &&
+						pending[j].getLow() == pending[j - 1].getLow()) {
+					j++;
+					continue;
+				}
+				int comparison;
+				if (i == sortedCount) {
+					comparison = 1;
+				} else if (j == pending.length) {
+					comparison = -1;
+				} else {
+					comparison = compare(sorted.getLong(i * RECORD_SIZE), sorted.getLong(i * RECORD_SIZE + 8),
+							pending[j].getHigh(), pending[j].getLow());
+				}
+				if (comparison <= 0) {
+					int offset = i * RECORD_SIZE;
+					out.writeLong(sorted.getLong(offset));
+					out.writeLong(sorted.getLong(offset + 8));
+					out.writeInt(sorted.getInt(offset + 16));
+					i++;
+					if (comparison == 0) {
+						j++;
+					}
+				} else {
+					out.writeLong(pending[j].getHigh());
+					out.writeLong(pending[j].getLow());
+					out.writeInt(0);
+					j++;
+				}
+			}
+		} finally {
+			out.close();
+		}
+
+		mappedDays.remove(day);
+		if (!tempFile.renameTo(sortedFile(day))) {
+			throw new IOException("could not replace " + sortedFile(day));
+		}
+		if (!pendingFile.delete()) {
+			throw new IOException("could not delete " + pendingFile);
+		}
+	}
+
+	public synchronized int count(DayDate day) throws IOException {
+		ByteBuffer records = openDay(day);
+		return records != null ? records.capacity() / RECORD_SIZE : 0;
+	}
+
+	public synchronized boolean contains(DayDate day, EphId ephId) throws IOException {
+		return getAssociatedKnownCase(day, ephId) >= 0;
+	}
+
+	/**
+	 * @return the id of the known case the contact was matched with, 0 if it is unmatched or -1 if it is not stored
+	 */
+	public synchronized int getAssociatedKnownCase(DayDate day, EphId ephId) throws IOException {
+		ByteBuffer records = openDay(day);
+		if (records == null) {
+			return -1;
+		}
+		int index = find(records, ephId.getHigh(), ephId.getLow());
+		return index >= 0 ? records.getInt(index * RECORD_SIZE + 16) : -1;
+	}
+
+	/**
+	 * Marks the unmatched contacts of the day whose EphId is one of the given ones as matched with the known case.
+	 *
+	 * @param ephIds buffer holding count EphIds of {@link CryptoConstants#KEY_LENGTH} bytes, starting at offset
+	 * @return the number of contacts newly matched
+	 */
+	public synchronized int match(DayDate day, byte[] ephIds, int offset, int count, int knownCaseId) throws IOException {
+		MappedByteBuffer records = openDay(day);
+		if (records == null) {
+			return 0;
+		}
+		ByteBuffer ephIdBuffer = ByteBuffer.wrap(ephIds);
+		int matches = 0;
+		for (int i = 0; i < count; i++) {
+			int ephIdOffset = offset + i * CryptoConstants.KEY_LENGTH;
+			int index = find(records, ephIdBuffer.getLong(ephIdOffset), ephIdBuffer.getLong(ephIdOffset + 8));
+			if (index >= 0 && records.getInt(index * RECORD_SIZE + 16) == 0) {
+				records.putInt(index * RECORD_SIZE + 16, knownCaseId);
+				matches++;
+			}
+		}
+		if (matches > 0) {
+			records.force();
+		}
+		return matches;
+	}
+
+	/**
+	 * Matches the known case of the job against all stored days from its first day to match up to its bucket day,
+	 * generating the EphIds only for days that have contacts.
+	 *
+	 * @return the number of contacts newly matched
+	 */
+	public int match(EphIdGenerator generator, MatchingJob job) throws IOException {
+		byte[] ephIdBuffer = null;
+		byte[] skForDay = job.getKey();
+		int matches = 0;
+		for (DayDate day = job.getOnsetDate(); day.isBeforeOrEquals(job.getBucketDate()); day = day.getNextDay()) {
+			if (!day.isBefore(job.getFirstDayToMatch()) && count(day) > 0) {
+				if (ephIdBuffer == null) {
+					ephIdBuffer = new byte[EphIdGenerator.EPHIDS_PER_DAY_BUFFER_SIZE];
+				}
+				generator.generateEphIds(skForDay, ephIdBuffer, 0);
+				matches += match(day, ephIdBuffer, 0, CryptoConstants.NUMBER_OF_EPOCHS_PER_DAY, (int) job.getKnownCaseId());
+			}
+			skForDay = generator.getSKt1(skForDay);
+		}
+		return matches;
+	}
+
+	/**
+	 * @return the days with stored or pending contacts, in ascending order
+	 */
+	public synchronized List<DayDate> getDays() {
+		List<DayDate> days = new ArrayList<>();
+		String[] names = directory.list();
+		if (names == null) {
+			return days;
+		}
+		for (String name : names) {
+			DayDate day = parseDay(name);
+			if (day != null && !days.contains(day)) {
+				days.add(day);
+			}
+		}
+		Collections.sort(days, (a, b) -> Long.compare(a.getStartOfDayTimestamp(), b.getStartOfDayTimestamp()));
+		return days;
+	}
+
+	/**
+	 * Drops all days before the given one by deleting their files.
+	 *
+	 * @return the number of days dropped
+	 */
+	public synchronized int deleteDaysBefore(DayDate firstDayToKeep) throws IOException {
+		int deletedDays = 0;
+		for (DayDate day : getDays()) {
+			if (!day.isBefore(firstDayToKeep)) {
+				break;
+			}
+			mappedDays.remove(day);
+			deleteIfExists(sortedFile(day));
+			deleteIfExists(pendingFile(day));
+			deleteIfExists(new File(directory, day.formatAsString() + TEMP_SUFFIX));
+			deletedDays++;
+		}
+		return deletedDays;
+	}
+
+	private MappedByteBuffer openDay(DayDate day) throws IOException {
+		compact(day);
+		return map(day);
+	}
+
+	private MappedByteBuffer map(DayDate day) throws IOException {
+		MappedByteBuffer records = mappedDays.get(day);
+		if (records == null) {
+			File file = sortedFile(day);
+			if (!file.exists()) {
+				return null;
+			}
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			try {
+				records = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+			} finally {
+				randomAccessFile.close();
+			}
+			mappedDays.put(day, records);
+		}
+		return records;
+	}
+
+	private static EphId[] readPending(File pendingFile) throws IOException {
+		FileInputStream in = new FileInputStream(pendingFile);
+		ByteBuffer records;
+		try {
+			FileChannel channel = in.getChannel();
+			// ignore a record cut off by a crash during an append
+			records = ByteBuffer.allocate((int) (channel.size() / RECORD_SIZE * RECORD_SIZE));
+			while (records.hasRemaining()) {
+				if (channel.read(records) < 0) {
+					break;
+				}
+			}
+		} finally {
+			in.close();
+		}
+		records.flip();
+		EphId[] ephIds = new EphId[records.remaining() / RECORD_SIZE];
+		for (int i = 0; i < ephIds.length; i++) {
+			ephIds[i] = new EphId(records.getLong(), records.getLong());
+			records.getInt();
+		}
+		return ephIds;
+	}
+
+	private static int find(ByteBuffer records, long high, long low) {
+		int lowIndex = 0;
+		int highIndex = records.capacity() / RECORD_SIZE - 1;
+		while (lowIndex <= highIndex) {
+			int middle = (lowIndex + highIndex) >>> 1;
+			int comparison = compare(records.getLong(middle * RECORD_SIZE), records.getLong(middle * RECORD_SIZE + 8), high, low);
+			if (comparison < 0) {
+				lowIndex = middle + 1;
+			} else if (comparison > 0) {
+				highIndex = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	private static int compare(long high1, long low1, long high2, long low2) {
+		int comparison = Long.compare(high1, high2);
+		return comparison != 0 ? comparison : Long.compare(low1, low2);
+	}
+
+	private File sortedFile(DayDate day) {
+		return new File(directory, day.formatAsString() + SORTED_SUFFIX);
+	}
+
+	private File pendingFile(DayDate day) {
+		return new File(directory, day.formatAsString() + PENDING_SUFFIX);
+	}
+
+	private static DayDate parseDay(String fileName) {
+		int suffixStart = fileName.indexOf('.');
+		if (suffixStart < 0) {
+			return null;
+		}
+		try {
+			return new DayDate(fileName.substring(0, suffixStart));
+		} catch (ParseException e) {
+			return null;
+		}
+	}
+
+	private static void deleteIfExists(File file) throws IOException {
+		if (file.exists() && !file.delete()) {
+			throw new IOException("could not delete " + file);
+		}
+	}
+
+}
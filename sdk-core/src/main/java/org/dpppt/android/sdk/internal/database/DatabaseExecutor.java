@@ -0,0 +1,269 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single thread that runs all writes to the database, with one queue per {@link Lane}. The thread always runs the
+ * oldest task of the most important non-empty lane, so handshake commits and interactive requests never wait behind
+ * queued bulk work. A long bulk task splits its work into steps and calls {@link #yieldToPriorityWork(Lane)} between
+ * them to let more important tasks run in the meantime.
+ * <p>
+ * The queue depth and the time tasks wait before they start are recorded per lane, see {@link #getStatistics(Lane)}.
+ * A task that throws is reported to the {@link ErrorHandler} and does not affect the tasks after it.
+ */
+public class DatabaseExecutor {
+
+	public enum Lane {
+		/**
+		 * Group commits of incoming handshakes.
+		 */
+		INGESTION,
+		/**
+		 * Requests an app or user is waiting for.
+		 */
+		INTERACTIVE,
+		/**
+		 * Matching, contact generation and retention.
+		 */
+		BULK
+	}
+
+	private static final Lane[] LANES = Lane.values();
+
+	private static DatabaseExecutor instance;
+
+	private final Object lock = new Object();
+	private final ArrayDeque<Task>[] queues;
+	private final PriorityQueue<Task> delayedTasks = new PriorityQueue<>(11, (a, b) -> {
+		int comparison = Long.compare(a.enqueueTime, b.enqueueTime);
+		return comparison != 0 ? comparison : Long.compare(a.sequence, b.sequence);
+	});
+	private final LaneCounters[] counters;
+	private final Thread thread;
+	private long nextSequence = 0;
+	private volatile ErrorHandler errorHandler = (lane, e) -> e.printStackTrace();
+
+	public static synchronized DatabaseExecutor getInstance() {
+		if (instance == null) {
+			instance = new DatabaseExecutor("DatabaseExecutor");
+		}
+		return instance;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public DatabaseExecutor(String threadName) {
+		queues = new ArrayDeque[LANES.length];
+		counters = new LaneCounters[LANES.length];
+		for (int i = 0; i < LANES.length; i++) {
+			queues[i] = new ArrayDeque<>();
+			counters[i] = new LaneCounters();
+		}
+		thread = new Thread(this::loop, threadName);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void post(Lane lane, Runnable runnable) {
+		synchronized (lock) {
+			enqueue(new Task(lane, runnable, System.nanoTime(), nextSequence++));
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Queues the task in its lane once the delay has passed. Its wait time is measured from then on.
+	 */
+	public void postDelayed(Lane lane, Runnable runnable, long delayMillis) {
+		synchronized (lock) {
+			long dueTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+			delayedTasks.add(new Task(lane, runnable, dueTime, nextSequence++));
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Runs all queued tasks of lanes more important than the given one. Called by long tasks of that lane between two
+	 * steps, at a point where they hold no transaction. Does nothing if not called on the executor thread.
+	 */
+	public void yieldToPriorityWork(Lane lane) {
+		if (!isExecutorThread()) {
+			return;
+		}
+		while (true) {
+			Task task;
+			synchronized (lock) {
+				task = nextTask(lane.ordinal());
+			}
+			if (task == null) {
+				return;
+			}
+			execute(task);
+		}
+	}
+
+	/**
+	 * Sets the handler for exceptions and errors thrown by tasks, by default they are printed to the standard error stream.
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		this.errorHandler = errorHandler;
+	}
+
+	public boolean isExecutorThread() {
+		return Thread.currentThread() == thread;
+	}
+
+	public LaneStatistics getStatistics(Lane lane) {
+		synchronized (lock) {
+			LaneCounters laneCounters = counters[lane.ordinal()];
+			return new LaneStatistics(queues[lane.ordinal()].size(), laneCounters.maxQueueDepth,
+					laneCounters.executedTasks, laneCounters.totalWaitNanos, laneCounters.maxWaitNanos);
+		}
+	}
+
+	private void loop() {
+		while (true) {
+			Task task;
+			synchronized (lock) {
+				while ((task = nextTask(LANES.length)) == null) {
+					try {
+						if (delayedTasks.isEmpty()) {
+							lock.wait();
+						} else {
+							long waitNanos = delayedTasks.peek().enqueueTime - System.nanoTime();
+							if (waitNanos > 0) {
+								TimeUnit.NANOSECONDS.timedWait(lock, waitNanos);
+							}
+						}
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+			execute(task);
+		}
+	}
+
+	/**
+	 * @return the oldest task of the most important non-empty lane before the given lane index, or null
+	 */
+	private Task nextTask(int laneLimit) {
+		long now = System.nanoTime();
+		while (!delayedTasks.isEmpty() && delayedTasks.peek().enqueueTime - now <= 0) {
+			enqueue(delayedTasks.poll());
+		}
+		for (int i = 0; i < laneLimit; i++) {
+			Task task = queues[i].poll();
+			if (task != null) {
+				LaneCounters laneCounters = counters[i];
+				long waitNanos = now - task.enqueueTime;
+				laneCounters.executedTasks++;
+				laneCounters.totalWaitNanos += waitNanos;
+				laneCounters.maxWaitNanos = Math.max(laneCounters.maxWaitNanos, waitNanos);
+				return task;
+			}
+		}
+		return null;
+	}
+
+	private void enqueue(Task task) {
+		ArrayDeque<Task> queue = queues[task.lane.ordinal()];
+		queue.add(task);
+		LaneCounters laneCounters = counters[task.lane.ordinal()];
+		laneCounters.maxQueueDepth = Math.max(laneCounters.maxQueueDepth, queue.size());
+	}
+
+	private void execute(Task task) {
+		try {
+			task.runnable.run();
+		} catch (Throwable e) {
+			// an error of one task, even a StackOverflowError, must not end the thread and with it all later writes
+			errorHandler.onTaskFailed(task.lane, e);
+		}
+	}
+
+	public interface ErrorHandler {
+
+		void onTaskFailed(Lane lane, Throwable e);
+
+	}
+
+	private static class Task {
+
+		final Lane lane;
+		final Runnable runnable;
+		final long enqueueTime;
+		final long sequence;
+
+		Task(Lane lane, Runnable runnable, long enqueueTime, long sequence) {
+			this.lane = lane;
+			this.runnable = runnable;
+			this.enqueueTime = enqueueTime;
+			this.sequence = sequence;
+		}
+
+	}
+
+
+	private static class LaneCounters {
+
+		int maxQueueDepth;
+		long executedTasks;
+		long totalWaitNanos;
+		long maxWaitNanos;
+
+	}
+
+
+	public static class LaneStatistics {
+
+		private final int queueDepth;
+		private final int maxQueueDepth;
+		private final long executedTasks;
+		private final long totalWaitNanos;
+		private final long maxWaitNanos;
+
+		LaneStatistics(int queueDepth, int maxQueueDepth, long executedTasks, long totalWaitNanos, long maxWaitNanos) {
+			this.queueDepth = queueDepth;
+			this.maxQueueDepth = maxQueueDepth;
+			this.executedTasks = executedTasks;
+			this.totalWaitNanos = totalWaitNanos;
+			this.maxWaitNanos = maxWaitNanos;
+		}
+
+		public int getQueueDepth() {
+			return queueDepth;
+		}
+
+		public int getMaxQueueDepth() {
+			return maxQueueDepth;
+		}
+
+		public long getExecutedTasks() {
+			return executedTasks;
+		}
+
+		public double getAverageWaitMillis() {
+			return executedTasks > 0 ? totalWaitNanos / (double) executedTasks / 1e6 : 0;
+		}
+
+		public double getMaxWaitMillis() {
+			return maxWaitNanos / 1e6;
+		}
+
+		@Override
+		public String toString() {
+			return "LaneStatistics{queueDepth=" + queueDepth + ", maxQueueDepth=" + maxQueueDepth + ", executedTasks=" +
+					executedTasks + ", averageWaitMillis=" + getAverageWaitMillis() + ", maxWaitMillis=" +
+					getMaxWaitMillis() + "}";
+		}
+
+	}
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoConstants;
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.crypto.EphIdIndexMap;
+
+/**
+ * Folds handshakes into one aggregate per EphId and epoch: the number of sightings, the first and last time seen and
+ * min, max and mean of RSSI and TX power level, the means updated incrementally (Welford). An epoch keeps its
+ * aggregates in flat arrays indexed through an {@link EphIdIndexMap}, so adding a handshake only allocates when the
+ * arrays of its epoch grow.
+ * <p>
+ * {@link #flush} hands the aggregates out and forgets them; a receiver that may fail to store them uses {@link #visit}
+ * and only calls {@link #remove} once they are stored. Aggregates of the same EphId and epoch flushed at different
+ * times are partial and have to be merged by the receiver. Not thread-safe.
+ */
+public class HandshakeAggregator {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final long millisecondsPerEpoch;
+	private final TreeMap<Long, EpochAggregates> epochs = new TreeMap<>();
+	private final Aggregate aggregate = new Aggregate();
+	private int size;
+
+	// handshakes arrive in time order, so nearly all of them belong to the epoch of the previous one
+	private long lastEpoch;
+	private EpochAggregates lastEpochAggregates;
+
+	public HandshakeAggregator() {
+		this(CryptoConstants.MILLISECONDS_PER_EPOCH);
+	}
+
+	HandshakeAggregator(long millisecondsPerEpoch) {
+		this.millisecondsPerEpoch = millisecondsPerEpoch;
+	}
+
+	/**
+	 * @param ephIdBuffer buffer holding the EphId of {@link CryptoConstants#KEY_LENGTH} bytes at offset
+	 */
+	public void add(byte[] ephIdBuffer, int offset, long timestamp, int txPowerLevel, int rssi) {
+		long epoch = timestamp / millisecondsPerEpoch * millisecondsPerEpoch;
+		if (lastEpochAggregates == null || epoch != lastEpoch) {
+			lastEpochAggregates = epochs.get(epoch);
+			if (lastEpochAggregates == null) {
+				lastEpochAggregates = new EpochAggregates();
+				epochs.put(epoch, lastEpochAggregates);
+			}
+			lastEpoch = epoch;
+		}
+		if (lastEpochAggregates.add(ephIdBuffer, offset, timestamp, txPowerLevel, rssi)) {
+			size++;
+		}
+	}
+
+	/**
+	 * @return the number of aggregates not flushed yet
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Hands all aggregates of the epochs starting before the given time to the consumer, epoch by epoch, and removes
+	 * them. The aggregate passed to the consumer is reused and only valid during the callback. If the consumer throws,
+	 * nothing is removed.
+	 *
+	 * @return the number of aggregates flushed
+	 */
+	public int flush(long epochsBefore, AggregateConsumer consumer) {
+		visit(epochsBefore, consumer);
+		return remove(epochsBefore);
+	}
+
+	/**
+	 * Hands all aggregates of the epochs starting before the given time to the consumer like {@link #flush}, but keeps
+	 * them.
+	 *
+	 * @return the number of aggregates visited
+	 */
+	public int visit(long epochsBefore, AggregateConsumer consumer) {
+		int visited = 0;
+		for (Map.Entry<Long, EpochAggregates> entry : epochs.headMap(epochsBefore).entrySet()) {
+			EpochAggregates epochAggregates = entry.getValue();
+			aggregate.epoch = entry.getKey();
+			for (int i = 0; i < epochAggregates.size; i++) {
+				epochAggregates.copyTo(i, aggregate);
+				consumer.onAggregate(aggregate);
+			}
+			visited += epochAggregates.size;
+		}
+		return visited;
+	}
+
+	/**
+	 * Removes all aggregates of the epochs starting before the given time.
+	 *
+	 * @return the number of aggregates removed
+	 */
+	public int remove(long epochsBefore) {
+		int removed = 0;
+		Iterator<EpochAggregates> iterator = epochs.headMap(epochsBefore).values().iterator();
+		while (iterator.hasNext()) {
+			EpochAggregates epochAggregates = iterator.next();
+			removed += epochAggregates.size;
+			if (epochAggregates == lastEpochAggregates) {
+				lastEpochAggregates = null;
+			}
+			iterator.remove();
+		}
+		size -= removed;
+		return removed;
+	}
+
+	public int flushAll(AggregateConsumer consumer) {
+		return flush(Long.MAX_VALUE, consumer);
+	}
+
+	public interface AggregateConsumer {
+
+		void onAggregate(Aggregate aggregate);
+
+	}
+
+
+	public static class Aggregate {
+
+		private long epoch;
+		private long ephIdHigh;
+		private long ephIdLow;
+		private int count;
+		private long firstSeen;
+		private long lastSeen;
+		private int rssiMin;
+		private int rssiMax;
+		private double rssiMean;
+		private int txPowerLevelMin;
+		private int txPowerLevelMax;
+		private double txPowerLevelMean;
+
+		/**
+		 * @return the start of the epoch in milliseconds since the epoch
+		 */
+		public long getEpoch() {
+			return epoch;
+		}
+
+		/**
+		 * @return the first 8 bytes of the EphId, see {@link EphId#getHigh()}
+		 */
+		public long getEphIdHigh() {
+			return ephIdHigh;
+		}
+
+		public long getEphIdLow() {
+			return ephIdLow;
+		}
+
+		public EphId getEphId() {
+			return new EphId(ephIdHigh, ephIdLow);
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public long getFirstSeen() {
+			return firstSeen;
+		}
+
+		public long getLastSeen() {
+			return lastSeen;
+		}
+
+		public int getRssiMin() {
+			return rssiMin;
+		}
+
+		public int getRssiMax() {
+			return rssiMax;
+		}
+
+		public double getRssiMean() {
+			return rssiMean;
+		}
+
+		public int getTxPowerLevelMin() {
+			return txPowerLevelMin;
+		}
+
+		public int getTxPowerLevelMax() {
+			return txPowerLevelMax;
+		}
+
+		public double getTxPowerLevelMean() {
+			return txPowerLevelMean;
+		}
+
+	}
+
+
+	private static class EpochAggregates {
+
+		private final EphIdIndexMap indices = new EphIdIndexMap(INITIAL_CAPACITY);
+		private long[] ephIds = new long[2 * INITIAL_CAPACITY];
+		private int[] counts = new int[INITIAL_CAPACITY];
+		private long[] firstSeen = new long[INITIAL_CAPACITY];
+		private long[] lastSeen = new long[INITIAL_CAPACITY];
+		private int[] rssiMin = new int[INITIAL_CAPACITY];
+		private int[] rssiMax = new int[INITIAL_CAPACITY];
+		private double[] rssiMean = new double[INITIAL_CAPACITY];
+		private int[] txPowerLevelMin = new int[INITIAL_CAPACITY];
+		private int[] txPowerLevelMax = new int[INITIAL_CAPACITY];
+		private double[] txPowerLevelMean = new double[INITIAL_CAPACITY];
+		private int size;
+
+		/**
+		 * @return true if a new aggregate was started
+		 */
+		boolean add(byte[] ephIdBuffer, int offset, long timestamp, int txPowerLevel, int rssi) {
+			long high = EphId.readLong(ephIdBuffer, offset);
+			long low = EphId.readLong(ephIdBuffer, offset + 8);
+			int index = indices.putIfAbsent(high, low, size);
+			if (index == EphIdIndexMap.NO_INDEX) {
+				index = size++;
+				ensureCapacity(size);
+				ephIds[2 * index] = high;
+				ephIds[2 * index + 1] = low;
+				counts[index] = 1;
+				firstSeen[index] = timestamp;
+				lastSeen[index] = timestamp;
+				rssiMin[index] = rssi;
+				rssiMax[index] = rssi;
+				rssiMean[index] = rssi;
+				txPowerLevelMin[index] = txPowerLevel;
+				txPowerLevelMax[index] = txPowerLevel;
+				txPowerLevelMean[index] = txPowerLevel;
+				return true;
+			}
+			int count = ++counts[index];
+			firstSeen[index] = Math.min(firstSeen[index], timestamp);
+			lastSeen[index] = Math.max(lastSeen[index], timestamp);
+			rssiMin[index] = Math.min(rssiMin[index], rssi);
+			rssiMax[index] = Math.max(rssiMax[index], rssi);
+			rssiMean[index] += (rssi - rssiMean[index]) / count;
+			txPowerLevelMin[index] = Math.min(txPowerLevelMin[index], txPowerLevel);
+			txPowerLevelMax[index] = Math.max(txPowerLevelMax[index], txPowerLevel);
+			txPowerLevelMean[index] += (txPowerLevel - txPowerLevelMean[index]) / count;
+			return false;
+		}
+
+		void copyTo(int index, Aggregate aggregate) {
+			aggregate.ephIdHigh = ephIds[2 * index];
+			aggregate.ephIdLow = ephIds[2 * index + 1];
+			aggregate.count = counts[index];
+			aggregate.firstSeen = firstSeen[index];
+			aggregate.lastSeen = lastSeen[index];
+			aggregate.rssiMin = rssiMin[index];
+			aggregate.rssiMax = rssiMax[index];
+			aggregate.rssiMean = rssiMean[index];
+			aggregate.txPowerLevelMin = txPowerLevelMin[index];
+			aggregate.txPowerLevelMax = txPowerLevelMax[index];
+			aggregate.txPowerLevelMean = txPowerLevelMean[index];
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity <= counts.length) {
+				return;
+			}
+			int newCapacity = counts.length * 2;
+			ephIds = Arrays.copyOf(ephIds, 2 * newCapacity);
+			counts = Arrays.copyOf(counts, newCapacity);
+			firstSeen = Arrays.copyOf(firstSeen, newCapacity);
+			lastSeen = Arrays.copyOf(lastSeen, newCapacity);
+			rssiMin = Arrays.copyOf(rssiMin, newCapacity);
+			rssiMax = Arrays.copyOf(rssiMax, newCapacity);
+			rssiMean = Arrays.copyOf(rssiMean, newCapacity);
+			txPowerLevelMin = Arrays.copyOf(txPowerLevelMin, newCapacity);
+			txPowerLevelMax = Arrays.copyOf(txPowerLevelMax, newCapacity);
+			txPowerLevelMean = Arrays.copyOf(txPowerLevelMean, newCapacity);
+		}
+
+	}
+
+}
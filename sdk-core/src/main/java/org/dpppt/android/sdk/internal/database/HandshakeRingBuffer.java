@@ -0,0 +1,130 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoConstants;
+import org.dpppt.android.sdk.internal.crypto.EphId;
+
+/**
+ * Bounded lock-free queue of handshakes for any number of producers and a single consumer. Every slot carries a
+ * sequence number telling whether it is free for the producer of a given position or ready for the consumer, so
+ * neither side ever blocks. The handshake fields are stored in flat arrays, offering a handshake does not allocate.
+ */
+public class HandshakeRingBuffer {
+
+	private final int capacity;
+	private final int mask;
+
+	private final AtomicLongArray sequences;
+	private final byte[] ephIds;
+	private final long[] timestamps;
+	private final int[] txPowerLevels;
+	private final int[] rssis;
+
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * @param capacity the minimum number of handshakes the buffer can hold, rounded up to the next power of two
+	 */
+	public HandshakeRingBuffer(int capacity) {
+		if (capacity < 1 || capacity > (1 << 24)) {
+			throw new IllegalArgumentException("invalid capacity " + capacity);
+		}
+		int roundedCapacity = 1;
+		while (roundedCapacity < capacity) {
+			roundedCapacity <<= 1;
+		}
+		this.capacity = roundedCapacity;
+		this.mask = roundedCapacity - 1;
+		sequences = new AtomicLongArray(this.capacity);
+		for (int i = 0; i < this.capacity; i++) {
+			sequences.set(i, i);
+		}
+		ephIds = new byte[this.capacity * CryptoConstants.KEY_LENGTH];
+		timestamps = new long[this.capacity];
+		txPowerLevels = new int[this.capacity];
+		rssis = new int[this.capacity];
+	}
+
+	/**
+	 * Adds a handshake if there is a free slot.
+	 *
+	 * @return false if the buffer is full and the handshake was not added
+	 * @throws IllegalArgumentException if the EphId is not {@link CryptoConstants#KEY_LENGTH} bytes long
+	 */
+	public boolean offer(byte[] ephId, long timestamp, int txPowerLevel, int rssi) {
+		EphId.checkLength(ephId);
+		long position;
+		int index;
+		while (true) {
+			position = tail.get();
+			index = (int) position & mask;
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+			} else if (difference < 0) {
+				return false;
+			}
+		}
+		System.arraycopy(ephId, 0, ephIds, index * CryptoConstants.KEY_LENGTH, CryptoConstants.KEY_LENGTH);
+		timestamps[index] = timestamp;
+		txPowerLevels[index] = txPowerLevel;
+		rssis[index] = rssi;
+		sequences.lazySet(index, position + 1);
+		return true;
+	}
+
+	/**
+	 * Hands up to maxCount handshakes in insertion order to the consumer. Must only be called by one thread at a time.
+	 * The EphId buffer passed to the consumer is only valid during the callback. If the consumer throws, the handshake
+	 * it was handed counts as consumed and the exception is passed on.
+	 *
+	 * @return the number of handshakes consumed
+	 */
+	public int drain(HandshakeConsumer consumer, int maxCount) {
+		int count = 0;
+		long position = head.get();
+		while (count < maxCount) {
+			int index = (int) position & mask;
+			if (sequences.get(index) != position + 1) {
+				break;
+			}
+			try {
+				consumer.onHandshake(ephIds, index * CryptoConstants.KEY_LENGTH, timestamps[index], txPowerLevels[index],
+						rssis[index]);
+			} finally {
+				// release the slot even if the consumer throws, otherwise the queue would stay stuck on it
+				sequences.lazySet(index, position + capacity);
+				position++;
+				head.lazySet(position);
+			}
+			count++;
+		}
+		return count;
+	}
+
+	public int size() {
+		long size = tail.get() - head.get();
+		return (int) Math.max(0, Math.min(size, capacity));
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public interface HandshakeConsumer {
+
+		void onHandshake(byte[] ephIdBuffer, int offset, long timestamp, int txPowerLevel, int rssi);
+
+	}
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Single daemon thread shared by the short background tasks of the SDK that must not run on the calling thread, so
+ * that they do not each start a thread of their own. Tasks run one after the other in submission order.
+ */
+public class BackgroundExecutor {
+
+	private static ExecutorService executor;
+
+	public static synchronized ExecutorService getInstance() {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "BackgroundExecutor");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return executor;
+	}
+
+	private BackgroundExecutor() { }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+
+package org.dpppt.android.sdk.internal.util;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Objects;
+import java.util.TimeZone;
+
+import com.google.gson.annotations.JsonAdapter;
+
+/**
+ * A UTC day, represented by the timestamp of its start. UTC has no daylight saving time, so all days are
+ * {@link #MILLISECONDS_PER_DAY} long and days are numbered since 1970-01-01 by {@link #getEpochDay()}.
+ */
+@JsonAdapter(DayDateJsonAdapter.class)
+public class DayDate {
+
+	public static final long MILLISECONDS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+	private static SimpleDateFormat dayDateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+	static {
+		dayDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+	}
+
+	private long timestampRepresentation;
+
+	public DayDate() {
+		this(System.currentTimeMillis());
+	}
+
+	public DayDate(String dayDate) throws ParseException {
+		synchronized (dayDateFormat) {
+			timestampRepresentation = convertToDay(dayDateFormat.parse(dayDate).getTime());
+		}
+	}
+
+	public DayDate(long timestamp) {
+		timestampRepresentation = convertToDay(timestamp);
+	}
+
+	public static DayDate fromEpochDay(long epochDay) {
+		return new DayDate(epochDay * MILLISECONDS_PER_DAY);
+	}
+
+	/**
+	 * Parses a day in the yyyy-MM-dd format of {@link #formatAsString()} without going through the shared date format.
+	 *
+	 * @return the number of days since 1970-01-01
+	 */
+	public static long parseEpochDay(String dayDate) throws ParseException {
+		if (dayDate.length() != 10 || dayDate.charAt(4) != '-' || dayDate.charAt(7) != '-') {
+			throw new ParseException("Unparseable date: \"" + dayDate + "\"", 0);
+		}
+		int year = parseDigits(dayDate, 0, 4);
+		int month = parseDigits(dayDate, 5, 7);
+		int day = parseDigits(dayDate, 8, 10);
+		if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+			throw new ParseException("Unparseable date: \"" + dayDate + "\"", 0);
+		}
+		// days since 0000-03-01, counted in 400 year cycles, with the leap day at the end of each year
+		long shiftedYear = month <= 2 ? year - 1 : year;
+		long cycle = (shiftedYear >= 0 ? shiftedYear : shiftedYear - 399) / 400;
+		long yearOfCycle = shiftedYear - cycle * 400;
+		long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		long dayOfCycle = yearOfCycle * 365 + yearOfCycle / 4 - yearOfCycle / 100 + dayOfYear;
+		return cycle * 146097 + dayOfCycle - 719468;
+	}
+
+	public String formatAsString() {
+		synchronized (dayDateFormat) {
+			return dayDateFormat.format(new Date(timestampRepresentation));
+		}
+	}
+
+	public DayDate getNextDay() {
+		return new DayDate(timestampRepresentation + MILLISECONDS_PER_DAY);
+	}
+
+	public long getStartOfDayTimestamp() {
+		return timestampRepresentation;
+	}
+
+	/**
+	 * @return the number of days since 1970-01-01
+	 */
+	public long getEpochDay() {
+		return timestampRepresentation / MILLISECONDS_PER_DAY;
+	}
+
+	public boolean isBefore(DayDate other) {
+		return timestampRepresentation < other.timestampRepresentation;
+	}
+
+	public boolean isBeforeOrEquals(DayDate other) {
+		return timestampRepresentation <= other.timestampRepresentation;
+	}
+
+	private static int parseDigits(String value, int start, int end) throws ParseException {
+		int result = 0;
+		for (int i = start; i < end; i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new ParseException("Unparseable date: \"" + value + "\"", i);
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	private static int lengthOfMonth(int year, int month) {
+		switch (month) {
+			case 2:
+				boolean leapYear = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+				return leapYear ? 29 : 28;
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	private static long convertToDay(long time) {
+		long epochDay = time / MILLISECONDS_PER_DAY;
+		if (time % MILLISECONDS_PER_DAY < 0) {
+			epochDay--;
+		}
+		return epochDay * MILLISECONDS_PER_DAY;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		DayDate dayDate = (DayDate) o;
+		return timestampRepresentation == dayDate.timestampRepresentation;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(timestampRepresentation);
+	}
+
+	public DayDate subtractDays(int days) {
+		return new DayDate(timestampRepresentation - days * MILLISECONDS_PER_DAY);
+	}
+
+}
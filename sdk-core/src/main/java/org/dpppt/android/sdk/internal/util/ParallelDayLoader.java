@@ -0,0 +1,95 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads a range of days with a bounded number of loads in flight and hands every loaded day to a handler as soon as
+ * it arrives, so the handling of one day overlaps with the loading of the next ones. The handler runs on the calling
+ * thread, in the order the days complete. A day whose load or handling fails is recorded and does not stop the others.
+ */
+public class ParallelDayLoader<T> {
+
+	private final int maxConcurrentLoads;
+
+	public ParallelDayLoader(int maxConcurrentLoads) {
+		this.maxConcurrentLoads = maxConcurrentLoads;
+	}
+
+	/**
+	 * @return the failure of each day that could not be loaded or handled, empty if all days succeeded
+	 */
+	public Map<DayDate, Exception> load(List<DayDate> days, DayLoader<T> loader, DayHandler<T> handler)
+			throws InterruptedException {
+		Map<DayDate, Exception> failures = new LinkedHashMap<>();
+		if (days.isEmpty()) {
+			return failures;
+		}
+
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConcurrentLoads, days.size()), runnable -> {
+			Thread thread = new Thread(runnable, "DayLoader-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+			Map<Future<T>, DayDate> submitted = new HashMap<>();
+			for (DayDate day : days) {
+				submitted.put(completionService.submit(() -> loader.load(day)), day);
+			}
+			for (int i = 0; i < days.size(); i++) {
+				Future<T> future = completionService.take();
+				DayDate day = submitted.get(future);
+				T result;
+				try {
+					result = future.get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					failures.put(day, cause instanceof Exception ? (Exception) cause : e);
+					continue;
+				}
+				try {
+					handler.onDayLoaded(day, result);
+				} catch (RuntimeException e) {
+					failures.put(day, e);
+				}
+			}
+			return failures;
+		} finally {
+			// only does something if the calling thread was interrupted while loads were still running
+			executor.shutdownNow();
+		}
+	}
+
+	public interface DayLoader<T> {
+
+		/**
+		 * Loads one day. Called concurrently for different days.
+		 */
+		T load(DayDate day) throws Exception;
+
+	}
+
+
+	public interface DayHandler<T> {
+
+		void onDayLoaded(DayDate day, T result);
+
+	}
+
+}
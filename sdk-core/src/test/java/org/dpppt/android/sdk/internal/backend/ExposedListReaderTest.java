@@ -0,0 +1,115 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.backend;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoConstants;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ExposedListReaderTest {
+
+	@Test
+	public void testReadsExposeesInOrder() throws IOException {
+		byte[] first = key(1);
+		byte[] second = key(2);
+		String json = "{\"exposed\":[{\"key\":\"" + encode(first) + "\",\"onset\":\"2020-05-01\"}," +
+				"{\"onset\":\"1970-01-02\",\"extra\":{\"nested\":[1,2]},\"key\":\"" + encode(second) + "\"}]," +
+				"\"other\":true}";
+
+		List<byte[]> keys = new ArrayList<>();
+		List<Long> onsets = new ArrayList<>();
+		ExposedListReader reader = new ExposedListReader((key, onsetEpochDay) -> {
+			keys.add(key.clone());
+			onsets.add(onsetEpochDay);
+		});
+		reader.read(new StringReader(json));
+
+		assertEquals(2, reader.getExposeeCount());
+		assertEquals(0, reader.getSkippedCount());
+		assertArrayEquals(first, keys.get(0));
+		assertArrayEquals(second, keys.get(1));
+		assertEquals(18383, (long) onsets.get(0));
+		assertEquals(1, (long) onsets.get(1));
+	}
+
+	@Test
+	public void testSkipsInvalidKeys() throws IOException {
+		String shortKey = Base64.getEncoder().encodeToString(new byte[16]);
+		String longKey = Base64.getEncoder().encodeToString(new byte[33]);
+		String json = "{\"exposed\":[{\"key\":\"" + shortKey + "\",\"onset\":\"2020-05-01\"}," +
+				"{\"key\":\"" + longKey + "\",\"onset\":\"2020-05-01\"}," +
+				"{\"key\":\"not base64!\",\"onset\":\"2020-05-01\"}," +
+				"{\"key\":null,\"onset\":\"2020-05-01\"}," +
+				"{\"key\":\"" + encode(key(3)) + "\"}," +
+				"{\"key\":\"" + encode(key(4)) + "\",\"onset\":\"2020-05-01\"}]}";
+
+		ExposedListReader reader = new ExposedListReader((key, onsetEpochDay) -> assertArrayEquals(key(4), key));
+		reader.read(new StringReader(json));
+
+		assertEquals(1, reader.getExposeeCount());
+		assertEquals(5, reader.getSkippedCount());
+	}
+
+	@Test
+	public void testEmptyAndMissingLists() throws IOException {
+		for (String json : new String[] { "{\"exposed\":[]}", "{\"exposed\":null}", "{}" }) {
+			ExposedListReader reader = new ExposedListReader((key, onsetEpochDay) -> fail());
+			reader.read(new StringReader(json));
+			assertEquals(0, reader.getExposeeCount());
+		}
+	}
+
+	@Test
+	public void testMalformedOnsetFails() {
+		String json = "{\"exposed\":[{\"key\":\"" + encode(key(1)) + "\",\"onset\":\"01.05.2020\"}]}";
+		try {
+			new ExposedListReader((key, onsetEpochDay) -> fail()).read(new StringReader(json));
+			fail("read malformed onset");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testDecodeBase64MatchesJdk() {
+		byte[] buffer = new byte[CryptoConstants.SECRET_KEY_LENGTH];
+		for (int length = 0; length <= CryptoConstants.SECRET_KEY_LENGTH; length++) {
+			byte[] data = Arrays.copyOf(key(length), length);
+			String padded = Base64.getEncoder().encodeToString(data);
+			String unpadded = Base64.getEncoder().withoutPadding().encodeToString(data);
+			for (String encoded : new String[] { padded, unpadded }) {
+				assertEquals(length, ExposedListReader.decodeBase64(encoded, buffer));
+				assertArrayEquals(data, Arrays.copyOf(buffer, length));
+			}
+		}
+		assertEquals(-1, ExposedListReader.decodeBase64("QUJD===", buffer));
+		assertEquals(-1, ExposedListReader.decodeBase64("QUJDR", buffer));
+		assertEquals(-1, ExposedListReader.decodeBase64("QU-D", buffer));
+	}
+
+	private static byte[] key(int seed) {
+		byte[] key = new byte[CryptoConstants.SECRET_KEY_LENGTH];
+		for (int i = 0; i < key.length; i++) {
+			key[i] = (byte) (seed * 31 + i * 7 - 100);
+		}
+		return key;
+	}
+
+	private static String encode(byte[] key) {
+		return Base64.getEncoder().encodeToString(key);
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EphIdCollectionsTest {
+
+	private static final int NUMBER_OF_EPHIDS = 10000;
+
+	@Test
+	public void testEphIdRoundTrip() {
+		byte[] data = new byte[CryptoConstants.KEY_LENGTH];
+		new Random(1).nextBytes(data);
+		EphId ephId = new EphId(data);
+		assertArrayEquals(data, ephId.getData());
+		assertEquals(ephId, new EphId(Arrays.copyOf(data, data.length)));
+	}
+
+	@Test
+	public void testEphIdRejectsWrongLengths() {
+		for (int length : new int[] { 0, CryptoConstants.KEY_LENGTH - 1, CryptoConstants.KEY_LENGTH + 1 }) {
+			try {
+				new EphId(new byte[length]);
+				fail("accepted " + length + " bytes");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		try {
+			new EphId(new byte[2 * CryptoConstants.KEY_LENGTH], CryptoConstants.KEY_LENGTH + 1);
+			fail("accepted EphId past the end");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSetGrowsAndFindsAllIds() {
+		List<EphId> ephIds = createRandomEphIds();
+		EphIdSet set = new EphIdSet(1);
+		for (EphId ephId : ephIds) {
+			assertTrue(set.add(ephId));
+		}
+		for (EphId ephId : ephIds) {
+			assertFalse(set.add(ephId));
+			assertTrue(set.contains(ephId));
+		}
+		assertEquals(NUMBER_OF_EPHIDS, set.size());
+		assertFalse(set.contains(new EphId(new byte[CryptoConstants.KEY_LENGTH])));
+
+		set.clear();
+		assertFalse(set.contains(ephIds.get(0)));
+	}
+
+	@Test
+	public void testCountAndIndexMaps() {
+		List<EphId> ephIds = createRandomEphIds();
+		EphIdCountMap countMap = new EphIdCountMap(1);
+		EphIdIndexMap indexMap = new EphIdIndexMap(1);
+		for (int i = 0; i < ephIds.size(); i++) {
+			countMap.increment(ephIds.get(i));
+			countMap.increment(ephIds.get(i));
+			assertEquals(EphIdIndexMap.NO_INDEX, indexMap.putIfAbsent(ephIds.get(i), i));
+			assertEquals(i, indexMap.putIfAbsent(ephIds.get(i), -5));
+		}
+		for (int i = 0; i < ephIds.size(); i++) {
+			assertEquals(2, countMap.get(ephIds.get(i)));
+			assertEquals(i, indexMap.get(ephIds.get(i)));
+		}
+		EphId unknown = new EphId(new byte[CryptoConstants.KEY_LENGTH]);
+		assertEquals(0, countMap.get(unknown));
+		assertEquals(EphIdIndexMap.NO_INDEX, indexMap.get(unknown));
+	}
+
+	private List<EphId> createRandomEphIds() {
+		Random random = new Random(42);
+		List<EphId> ephIds = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_EPHIDS; i++) {
+			byte[] data = new byte[CryptoConstants.KEY_LENGTH];
+			random.nextBytes(data);
+			ephIds.add(new EphId(data));
+		}
+		return ephIds;
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.dpppt.android.sdk.internal.database.models.Contact;
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MatchingJobTest {
+
+	private static final int NUMBER_OF_DAYS = 10;
+
+	@Test
+	public void testLimitAndContinue() {
+		DayDate onset = DayDate.fromEpochDay(100);
+		MatchingJob job = new MatchingJob(1, new byte[32], onset, DayDate.fromEpochDay(109));
+
+		MatchingJob step = job.limitToDays(4);
+		assertEquals(onset, step.getFirstDayToMatch());
+		assertEquals(DayDate.fromEpochDay(103), step.getBucketDate());
+
+		MatchingJob rest = job.continueAfter(step.getBucketDate());
+		assertEquals(onset, rest.getOnsetDate());
+		assertEquals(DayDate.fromEpochDay(104), rest.getFirstDayToMatch());
+		assertEquals(job.getBucketDate(), rest.getBucketDate());
+
+		assertEquals(job.getBucketDate(), rest.limitToDays(100).getBucketDate());
+		assertNull(rest.continueAfter(job.getBucketDate()));
+	}
+
+	@Test
+	public void testMatchingInStepsFindsTheSameContacts() {
+		EphIdGenerator generator = new EphIdGenerator();
+		byte[] key = new byte[32];
+		new Random(1).nextBytes(key);
+		DayDate onset = DayDate.fromEpochDay(18000);
+
+		// one contact per day with an EphId of the key, in a different epoch each day
+		Map<DayDate, List<Contact>> contacts = new HashMap<>();
+		byte[] skForDay = key;
+		byte[] ephIds = new byte[EphIdGenerator.EPHIDS_PER_DAY_BUFFER_SIZE];
+		DayDate day = onset;
+		for (int i = 0; i < NUMBER_OF_DAYS; i++) {
+			generator.generateEphIds(skForDay, ephIds, 0);
+			EphId ephId = new EphId(ephIds, i * CryptoConstants.KEY_LENGTH);
+			contacts.put(day, Collections.singletonList(new Contact(i, day, ephId, 0)));
+			skForDay = generator.getSKt1(skForDay);
+			day = day.getNextDay();
+		}
+		ContactMatcher.GetContactsCallback callback =
+				date -> contacts.containsKey(date) ? contacts.get(date) : Collections.emptyList();
+
+		MatchingJob job = new MatchingJob(1, key, onset, DayDate.fromEpochDay(onset.getEpochDay() + NUMBER_OF_DAYS - 1));
+		List<Integer> matchedAtOnce = match(generator, job, callback);
+
+		List<Integer> matchedInSteps = new ArrayList<>();
+		int numberOfSteps = 0;
+		while (job != null) {
+			MatchingJob step = job.limitToDays(3);
+			matchedInSteps.addAll(match(generator, step, callback));
+			job = job.continueAfter(step.getBucketDate());
+			numberOfSteps++;
+		}
+
+		assertEquals(NUMBER_OF_DAYS, matchedAtOnce.size());
+		assertEquals(matchedAtOnce, matchedInSteps);
+		assertEquals(4, numberOfSteps);
+	}
+
+	private static List<Integer> match(EphIdGenerator generator, MatchingJob job,
+			ContactMatcher.GetContactsCallback callback) {
+		List<Integer> matched = new ArrayList<>();
+		ContactMatcher.checkContacts(generator, new EphIdSet(CryptoConstants.NUMBER_OF_EPOCHS_PER_DAY), job.getKey(),
+				job.getOnsetDate(), job.getFirstDayToMatch(), job.getBucketDate(), callback,
+				contact -> matched.add(contact.getId()));
+		return matched;
+	}
+
+}
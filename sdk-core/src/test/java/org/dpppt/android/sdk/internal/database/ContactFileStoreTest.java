@@ -0,0 +1,140 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoConstants;
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.crypto.EphIdGenerator;
+import org.dpppt.android.sdk.internal.crypto.MatchingJob;
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContactFileStoreTest {
+
+	private File directory;
+	private ContactFileStore store;
+	private DayDate today;
+
+	@Before
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("contacts").toFile();
+		store = new ContactFileStore(directory);
+		today = new DayDate();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testAddCompactAndLookup() throws IOException {
+		Random random = new Random(42);
+		List<EphId> ephIds = randomEphIds(random, 500);
+		store.add(today, ephIds.subList(0, 300));
+		assertEquals(300, store.count(today));
+		// overlapping and repeated contacts are stored once
+		store.add(today, ephIds.subList(200, 500));
+		store.add(today, ephIds.subList(450, 500));
+		assertEquals(500, store.count(today));
+
+		for (EphId ephId : ephIds) {
+			assertTrue(store.contains(today, ephId));
+			assertEquals(0, store.getAssociatedKnownCase(today, ephId));
+		}
+		for (EphId ephId : randomEphIds(random, 100)) {
+			assertFalse(store.contains(today, ephId));
+		}
+		assertFalse(store.contains(today.subtractDays(1), ephIds.get(0)));
+		assertEquals(0, store.count(today.subtractDays(1)));
+	}
+
+	@Test
+	public void testStateSurvivesReopening() throws IOException {
+		List<EphId> ephIds = randomEphIds(new Random(1), 10);
+		store.add(today, ephIds);
+		store.compact(today);
+		store.add(today, Collections.singletonList(new EphId(5, 5)));
+
+		ContactFileStore reopened = new ContactFileStore(directory);
+		assertEquals(11, reopened.count(today));
+		assertTrue(reopened.contains(today, new EphId(5, 5)));
+	}
+
+	@Test
+	public void testMatchMarksContactsOnce() throws IOException {
+		EphIdGenerator generator = new EphIdGenerator();
+		byte[] key = new byte[32];
+		new Random(7).nextBytes(key);
+		DayDate onsetDate = today.subtractDays(2);
+		byte[] ephIdsOfOnsetDay = new byte[EphIdGenerator.EPHIDS_PER_DAY_BUFFER_SIZE];
+		generator.generateEphIds(key, ephIdsOfOnsetDay, 0);
+		EphId infectedEphId = new EphId(ephIdsOfOnsetDay, 10 * CryptoConstants.KEY_LENGTH);
+		EphId otherEphId = new EphId(ephIdsOfOnsetDay, 20 * CryptoConstants.KEY_LENGTH);
+
+		List<EphId> contacts = randomEphIds(new Random(3), 100);
+		contacts.add(infectedEphId);
+		store.add(onsetDate, contacts);
+		// the same EphId seen on another day is no match
+		store.add(today, Collections.singletonList(otherEphId));
+
+		assertEquals(1, store.match(generator, new MatchingJob(17, key, onsetDate, today)));
+		assertEquals(17, store.getAssociatedKnownCase(onsetDate, infectedEphId));
+		assertEquals(0, store.getAssociatedKnownCase(today, otherEphId));
+		assertEquals(0, store.match(generator, new MatchingJob(18, key, onsetDate, today)));
+		assertEquals(17, store.getAssociatedKnownCase(onsetDate, infectedEphId));
+
+		// the match is kept when more contacts are merged into the day
+		store.add(onsetDate, randomEphIds(new Random(4), 100));
+		assertEquals(201, store.count(onsetDate));
+		assertEquals(17, store.getAssociatedKnownCase(onsetDate, infectedEphId));
+	}
+
+	@Test
+	public void testRetentionDeletesDays() throws IOException {
+		for (int i = 0; i < 5; i++) {
+			store.add(today.subtractDays(i), randomEphIds(new Random(i), 10));
+		}
+		store.compact(today.subtractDays(4));
+		assertEquals(Arrays.asList(today.subtractDays(4), today.subtractDays(3), today.subtractDays(2),
+				today.subtractDays(1), today), store.getDays());
+
+		assertEquals(3, store.deleteDaysBefore(today.subtractDays(1)));
+		assertEquals(Arrays.asList(today.subtractDays(1), today), store.getDays());
+		assertEquals(0, store.count(today.subtractDays(4)));
+		assertEquals(10, store.count(today));
+	}
+
+	private static List<EphId> randomEphIds(Random random, int count) {
+		List<EphId> ephIds = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			ephIds.add(new EphId(random.nextLong(), random.nextLong()));
+		}
+		return ephIds;
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.dpppt.android.sdk.internal.database.DatabaseExecutor.Lane;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DatabaseExecutorTest {
+
+	@Test
+	public void testMoreImportantLanesRunFirst() throws InterruptedException {
+		DatabaseExecutor executor = new DatabaseExecutor("test");
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch blocker = new CountDownLatch(1);
+		executor.post(Lane.BULK, () -> {
+			started.countDown();
+			await(blocker);
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		executor.post(Lane.BULK, () -> order.add("bulk 1"));
+		executor.post(Lane.INTERACTIVE, () -> order.add("interactive 1"));
+		executor.post(Lane.BULK, () -> order.add("bulk 2"));
+		executor.post(Lane.INGESTION, () -> order.add("ingestion 1"));
+		executor.post(Lane.INTERACTIVE, () -> order.add("interactive 2"));
+		assertEquals(2, executor.getStatistics(Lane.BULK).getQueueDepth());
+		assertEquals(2, executor.getStatistics(Lane.INTERACTIVE).getQueueDepth());
+		CountDownLatch done = new CountDownLatch(1);
+		executor.post(Lane.BULK, done::countDown);
+
+		blocker.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("ingestion 1", "interactive 1", "interactive 2", "bulk 1", "bulk 2"), order);
+	}
+
+	@Test
+	public void testBulkWorkYieldsToPriorityWork() throws InterruptedException {
+		DatabaseExecutor executor = new DatabaseExecutor("test");
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch stepOneDone = new CountDownLatch(1);
+		CountDownLatch priorityPosted = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(1);
+		executor.post(Lane.BULK, () -> {
+			order.add("step 1");
+			stepOneDone.countDown();
+			await(priorityPosted);
+			executor.yieldToPriorityWork(Lane.BULK);
+			order.add("step 2");
+		});
+		executor.post(Lane.BULK, () -> {
+			order.add("next bulk");
+			done.countDown();
+		});
+
+		assertTrue(stepOneDone.await(5, TimeUnit.SECONDS));
+		executor.post(Lane.INGESTION, () -> order.add("ingestion"));
+		executor.post(Lane.INTERACTIVE, () -> order.add("interactive"));
+		priorityPosted.countDown();
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("step 1", "ingestion", "interactive", "step 2", "next bulk"), order);
+	}
+
+	@Test
+	public void testYieldOutsideExecutorThreadDoesNothing() throws InterruptedException {
+		DatabaseExecutor executor = new DatabaseExecutor("test");
+		CountDownLatch blocker = new CountDownLatch(1);
+		executor.post(Lane.BULK, () -> await(blocker));
+		boolean[] ran = new boolean[1];
+		executor.post(Lane.INGESTION, () -> ran[0] = true);
+
+		executor.yieldToPriorityWork(Lane.BULK);
+		assertFalse(ran[0]);
+		assertFalse(executor.isExecutorThread());
+		blocker.countDown();
+	}
+
+	@Test
+	public void testDelayedTasksAndStatistics() throws InterruptedException {
+		DatabaseExecutor executor = new DatabaseExecutor("test");
+		long start = System.nanoTime();
+		CountDownLatch done = new CountDownLatch(1);
+		executor.postDelayed(Lane.INGESTION, done::countDown, 100);
+		executor.post(Lane.INTERACTIVE, () -> { });
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+		DatabaseExecutor.LaneStatistics ingestion = executor.getStatistics(Lane.INGESTION);
+		assertEquals(1, ingestion.getExecutedTasks());
+		assertEquals(0, ingestion.getQueueDepth());
+		assertEquals(1, ingestion.getMaxQueueDepth());
+		assertTrue(ingestion.getMaxWaitMillis() < 100);
+		assertEquals(0, executor.getStatistics(Lane.BULK).getExecutedTasks());
+	}
+
+	@Test
+	public void testThrowingTaskDoesNotStopTheExecutor() throws InterruptedException {
+		DatabaseExecutor executor = new DatabaseExecutor("test");
+		List<Lane> failedLanes = Collections.synchronizedList(new ArrayList<>());
+		executor.setErrorHandler((lane, e) -> failedLanes.add(lane));
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch done = new CountDownLatch(1);
+		executor.post(Lane.BULK, () -> {
+			order.add("step 1");
+			executor.post(Lane.INGESTION, () -> {
+				throw new StackOverflowError("ingestion failed");
+			});
+			executor.yieldToPriorityWork(Lane.BULK);
+			order.add("step 2");
+			throw new IllegalStateException("bulk failed");
+		});
+		executor.post(Lane.BULK, () -> {
+			order.add("next bulk");
+			done.countDown();
+		});
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("step 1", "step 2", "next bulk"), order);
+		assertEquals(Arrays.asList(Lane.INGESTION, Lane.BULK), failedLanes);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
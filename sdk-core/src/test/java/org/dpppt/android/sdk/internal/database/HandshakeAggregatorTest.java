@@ -0,0 +1,127 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoConstants;
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HandshakeAggregatorTest {
+
+	private static final long EPOCH = CryptoConstants.MILLISECONDS_PER_EPOCH;
+
+	@Test
+	public void testAggregatesPerEphIdAndEpoch() {
+		HandshakeAggregator aggregator = new HandshakeAggregator();
+		byte[] first = new EphId(1, 1).getData();
+		byte[] second = new EphId(2, 2).getData();
+		aggregator.add(first, 0, 10, 8, -60);
+		aggregator.add(first, 0, 30, 12, -40);
+		aggregator.add(first, 0, 20, 10, -50);
+		aggregator.add(second, 0, 15, 0, -70);
+		aggregator.add(first, 0, EPOCH + 5, 0, -90);
+		assertEquals(3, aggregator.size());
+
+		List<String> aggregates = new ArrayList<>();
+		assertEquals(3, aggregator.flushAll(aggregate -> aggregates.add(describe(aggregate))));
+		assertEquals(0, aggregator.size());
+
+		assertEquals(3, aggregates.size());
+		assertEquals("0 1 3 10-30 rssi -60/-40/-50.0 tx 8/12/10.0", aggregates.get(0));
+		assertEquals("0 2 1 15-15 rssi -70/-70/-70.0 tx 0/0/0.0", aggregates.get(1));
+		assertEquals(EPOCH + " 1 1 " + (EPOCH + 5) + "-" + (EPOCH + 5) + " rssi -90/-90/-90.0 tx 0/0/0.0",
+				aggregates.get(2));
+	}
+
+	@Test
+	public void testFlushOnlyCompletedEpochs() {
+		HandshakeAggregator aggregator = new HandshakeAggregator();
+		EphId expected = new EphId(7, 8);
+		byte[] ephId = expected.getData();
+		aggregator.add(ephId, 0, EPOCH - 1, 0, 0);
+		aggregator.add(ephId, 0, EPOCH, 0, 0);
+		aggregator.add(ephId, 0, 2 * EPOCH, 0, 0);
+
+		List<Long> epochs = new ArrayList<>();
+		assertEquals(2, aggregator.flush(2 * EPOCH, aggregate -> {
+			epochs.add(aggregate.getEpoch());
+			assertEquals(expected, aggregate.getEphId());
+		}));
+		assertEquals(2, epochs.size());
+		assertEquals(0, (long) epochs.get(0));
+		assertEquals(EPOCH, (long) epochs.get(1));
+		assertEquals(1, aggregator.size());
+
+		// adding to a flushed epoch starts a new partial aggregate
+		aggregator.add(ephId, 0, EPOCH + 1, 0, 0);
+		assertEquals(2, aggregator.size());
+		assertEquals(1, aggregator.flush(2 * EPOCH, aggregate -> assertEquals(1, aggregate.getCount())));
+	}
+
+	@Test
+	public void testVisitKeepsAggregatesUntilRemoved() {
+		HandshakeAggregator aggregator = new HandshakeAggregator();
+		byte[] ephId = new EphId(3, 4).getData();
+		aggregator.add(ephId, 0, 0, 0, 0);
+		aggregator.add(ephId, 0, EPOCH, 0, 0);
+
+		// a receiver failing halfway, e.g. in a rolled back transaction, loses nothing
+		try {
+			aggregator.visit(Long.MAX_VALUE, aggregate -> {
+				throw new IllegalStateException("write failed");
+			});
+			fail("consumer exception was swallowed");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(2, aggregator.size());
+
+		assertEquals(1, aggregator.visit(EPOCH, aggregate -> assertEquals(0, aggregate.getEpoch())));
+		assertEquals(2, aggregator.size());
+		assertEquals(1, aggregator.remove(EPOCH));
+		assertEquals(1, aggregator.size());
+
+		aggregator.add(ephId, 0, EPOCH + 1, 0, 0);
+		assertEquals(1, aggregator.flushAll(aggregate -> assertEquals(2, aggregate.getCount())));
+		assertEquals(0, aggregator.size());
+	}
+
+	@Test
+	public void testGrowsBeyondInitialCapacity() {
+		HandshakeAggregator aggregator = new HandshakeAggregator();
+		byte[] buffer = new byte[1000 * CryptoConstants.KEY_LENGTH];
+		for (int i = 0; i < 1000; i++) {
+			EphId.writeLong(i, buffer, i * CryptoConstants.KEY_LENGTH + 8);
+		}
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 1000; i++) {
+				aggregator.add(buffer, i * CryptoConstants.KEY_LENGTH, round, 0, round);
+			}
+		}
+		assertEquals(1000, aggregator.size());
+		long[] total = new long[1];
+		aggregator.flushAll(aggregate -> {
+			assertEquals(3, aggregate.getCount());
+			assertEquals(1.0, aggregate.getRssiMean(), 1e-9);
+			total[0] += aggregate.getCount();
+		});
+		assertEquals(3000, total[0]);
+	}
+
+	private static String describe(HandshakeAggregator.Aggregate aggregate) {
+		return aggregate.getEpoch() + " " + aggregate.getEphIdLow() + " " + aggregate.getCount() + " " + aggregate.getFirstSeen() +
+				"-" + aggregate.getLastSeen() + " rssi " + aggregate.getRssiMin() + "/" + aggregate.getRssiMax() + "/" +
+				aggregate.getRssiMean() + " tx " + aggregate.getTxPowerLevelMin() + "/" + aggregate.getTxPowerLevelMax() +
+				"/" + aggregate.getTxPowerLevelMean();
+	}
+
+}
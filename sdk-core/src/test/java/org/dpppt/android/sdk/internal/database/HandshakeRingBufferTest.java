@@ -0,0 +1,145 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoConstants;
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HandshakeRingBufferTest {
+
+	@Test
+	public void testCapacityIsRoundedAndBounded() {
+		HandshakeRingBuffer buffer = new HandshakeRingBuffer(5);
+		assertEquals(8, buffer.capacity());
+		for (int i = 0; i < 8; i++) {
+			assertTrue(buffer.offer(ephId(i), i, 0, 0));
+		}
+		assertFalse(buffer.offer(ephId(8), 8, 0, 0));
+		assertEquals(8, buffer.size());
+
+		assertEquals(3, buffer.drain((ephIdBuffer, offset, timestamp, txPowerLevel, rssi) -> { }, 3));
+		assertEquals(5, buffer.size());
+		assertTrue(buffer.offer(ephId(8), 8, 0, 0));
+	}
+
+	@Test
+	public void testRejectsMalformedEphIds() {
+		HandshakeRingBuffer buffer = new HandshakeRingBuffer(4);
+		try {
+			buffer.offer(new byte[CryptoConstants.KEY_LENGTH - 1], 0, 0, 0);
+			fail("accepted a short EphId");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(0, buffer.size());
+	}
+
+	@Test
+	public void testDrainKeepsOrderAndFields() {
+		HandshakeRingBuffer buffer = new HandshakeRingBuffer(4);
+		List<Long> timestamps = new ArrayList<>();
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 3; i++) {
+				int value = round * 3 + i;
+				assertTrue(buffer.offer(ephId(value), value, value + 1, -value));
+			}
+			buffer.drain((ephIdBuffer, offset, timestamp, txPowerLevel, rssi) -> {
+				int value = (int) timestamp;
+				assertArrayEquals(ephId(value), new EphId(ephIdBuffer, offset).getData());
+				assertEquals(value + 1, txPowerLevel);
+				assertEquals(-value, rssi);
+				timestamps.add(timestamp);
+			}, Integer.MAX_VALUE);
+		}
+		assertEquals(30, timestamps.size());
+		for (int i = 0; i < timestamps.size(); i++) {
+			assertEquals(i, (long) timestamps.get(i));
+		}
+	}
+
+	@Test
+	public void testThrowingConsumerDoesNotBlockTheQueue() {
+		HandshakeRingBuffer buffer = new HandshakeRingBuffer(4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer(ephId(i), i, 0, 0));
+		}
+		try {
+			buffer.drain((ephIdBuffer, offset, timestamp, txPowerLevel, rssi) -> {
+				if (timestamp == 1) {
+					throw new IllegalStateException("consumer failed");
+				}
+			}, Integer.MAX_VALUE);
+			fail("consumer exception was swallowed");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		// the handshake the consumer failed on is gone, the rest is still queued and the freed slots are usable
+		assertEquals(2, buffer.size());
+		assertTrue(buffer.offer(ephId(4), 4, 0, 0));
+		assertTrue(buffer.offer(ephId(5), 5, 0, 0));
+		List<Long> timestamps = new ArrayList<>();
+		buffer.drain((ephIdBuffer, offset, timestamp, txPowerLevel, rssi) -> timestamps.add(timestamp), Integer.MAX_VALUE);
+		assertEquals(4, timestamps.size());
+		for (int i = 0; i < timestamps.size(); i++) {
+			assertEquals(i + 2, (long) timestamps.get(i));
+		}
+		assertEquals(0, buffer.size());
+	}
+
+	@Test
+	public void testConcurrentProducersLoseNothingUnlessFull() throws InterruptedException {
+		int numberOfProducers = 4;
+		int handshakesPerProducer = 20000;
+		HandshakeRingBuffer buffer = new HandshakeRingBuffer(256);
+		int[] accepted = new int[numberOfProducers];
+		CountDownLatch done = new CountDownLatch(numberOfProducers);
+		for (int p = 0; p < numberOfProducers; p++) {
+			int producer = p;
+			new Thread(() -> {
+				for (int i = 0; i < handshakesPerProducer; i++) {
+					if (buffer.offer(ephId(i), producer, 0, 0)) {
+						accepted[producer]++;
+					}
+				}
+				done.countDown();
+			}).start();
+		}
+
+		int[] consumed = new int[numberOfProducers];
+		HandshakeRingBuffer.HandshakeConsumer consumer =
+				(ephIdBuffer, offset, timestamp, txPowerLevel, rssi) -> consumed[(int) timestamp]++;
+		while (done.getCount() > 0) {
+			buffer.drain(consumer, 64);
+		}
+		buffer.drain(consumer, Integer.MAX_VALUE);
+
+		assertEquals(0, buffer.size());
+		for (int p = 0; p < numberOfProducers; p++) {
+			assertEquals(accepted[p], consumed[p]);
+		}
+	}
+
+	private static byte[] ephId(int value) {
+		byte[] data = new byte[CryptoConstants.KEY_LENGTH];
+		data[0] = (byte) value;
+		data[1] = (byte) (value >> 8);
+		data[15] = (byte) (value >> 16);
+		return data;
+	}
+
+}
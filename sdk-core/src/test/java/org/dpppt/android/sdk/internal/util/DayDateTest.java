@@ -0,0 +1,68 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.util;
+
+import java.text.ParseException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class DayDateTest {
+
+	@Test
+	public void testEpochDay() throws ParseException {
+		DayDate day = new DayDate("2020-05-01");
+		assertEquals(18383, day.getEpochDay());
+		assertEquals(day, DayDate.fromEpochDay(18383));
+		assertEquals("2020-05-01", DayDate.fromEpochDay(18383).formatAsString());
+		assertEquals(0, new DayDate(0).getEpochDay());
+	}
+
+	@Test
+	public void testTimestampsWithinADayMapToItsStart() throws ParseException {
+		DayDate day = new DayDate("2020-05-01");
+		long start = day.getStartOfDayTimestamp();
+		assertEquals(day, new DayDate(start + DayDate.MILLISECONDS_PER_DAY - 1));
+		assertEquals(day.getNextDay(), new DayDate(start + DayDate.MILLISECONDS_PER_DAY));
+		assertEquals(-1, new DayDate(-1).getEpochDay());
+		assertEquals(-DayDate.MILLISECONDS_PER_DAY, new DayDate(-1).getStartOfDayTimestamp());
+	}
+
+	@Test
+	public void testDayArithmetic() throws ParseException {
+		DayDate day = new DayDate("2020-03-01");
+		assertEquals("2020-02-29", day.subtractDays(1).formatAsString());
+		assertEquals("2020-02-15", day.subtractDays(15).formatAsString());
+		assertEquals("2020-03-02", day.getNextDay().formatAsString());
+	}
+
+	@Test
+	public void testParseEpochDay() throws ParseException {
+		assertEquals(0, DayDate.parseEpochDay("1970-01-01"));
+		assertEquals(-1, DayDate.parseEpochDay("1969-12-31"));
+		assertEquals(18383, DayDate.parseEpochDay("2020-05-01"));
+		assertEquals(DayDate.parseEpochDay("2020-03-01") - 1, DayDate.parseEpochDay("2020-02-29"));
+		assertEquals(DayDate.parseEpochDay("2100-03-01") - 1, DayDate.parseEpochDay("2100-02-28"));
+		// every day of several years, including leap years and century years, agrees with the date format
+		DayDate day = new DayDate("1999-01-01");
+		while (day.isBefore(new DayDate("2002-01-01"))) {
+			assertEquals(day.getEpochDay(), DayDate.parseEpochDay(day.formatAsString()));
+			day = day.getNextDay();
+		}
+		for (String invalid : new String[] { "2020-5-01", "2020-02-30", "2021-02-29", "2020-13-01", "2020-00-10",
+				"2020-04-31", "2020/05/01", "2020-05-01T00:00", "20a0-05-01", "" }) {
+			try {
+				DayDate.parseEpochDay(invalid);
+				fail("parsed " + invalid);
+			} catch (ParseException e) {
+				// expected
+			}
+		}
+	}
+
+}
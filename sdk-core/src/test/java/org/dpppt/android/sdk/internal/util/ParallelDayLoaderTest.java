@@ -0,0 +1,108 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelDayLoaderTest {
+
+	@Test
+	public void testHandlesEveryDayOnCallingThreadWithBoundedConcurrency() throws InterruptedException {
+		List<DayDate> days = days(15);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		Thread callingThread = Thread.currentThread();
+		Set<DayDate> handled = new HashSet<>();
+
+		Map<DayDate, Exception> failures = new ParallelDayLoader<Long>(4).load(days, day -> {
+			int nowRunning = running.incrementAndGet();
+			maxRunning.accumulateAndGet(nowRunning, Math::max);
+			Thread.sleep(5);
+			running.decrementAndGet();
+			return day.getEpochDay();
+		}, (day, result) -> {
+			assertSame(callingThread, Thread.currentThread());
+			assertEquals(day.getEpochDay(), (long) result);
+			handled.add(day);
+		});
+
+		assertTrue(failures.isEmpty());
+		assertEquals(new HashSet<>(days), handled);
+		assertTrue(maxRunning.get() <= 4);
+		assertTrue(maxRunning.get() > 1);
+	}
+
+	@Test
+	public void testHandsOverDaysAsTheyComplete() throws InterruptedException {
+		List<DayDate> days = days(2);
+		CountDownLatch firstHandled = new CountDownLatch(1);
+		List<DayDate> handled = new ArrayList<>();
+
+		new ParallelDayLoader<DayDate>(2).load(days, day -> {
+			if (day.equals(days.get(0))) {
+				// the first day only completes once the second one was handled
+				assertTrue(firstHandled.await(5, TimeUnit.SECONDS));
+			}
+			return day;
+		}, (day, result) -> {
+			handled.add(day);
+			firstHandled.countDown();
+		});
+
+		assertEquals(days.get(1), handled.get(0));
+		assertEquals(days.get(0), handled.get(1));
+	}
+
+	@Test
+	public void testFailingDaysAreIsolated() throws InterruptedException {
+		List<DayDate> days = days(5);
+		IOException loadFailure = new IOException("offline");
+		IllegalStateException handleFailure = new IllegalStateException("broken");
+		Set<DayDate> handled = new HashSet<>();
+
+		Map<DayDate, Exception> failures = new ParallelDayLoader<DayDate>(2).load(days, day -> {
+			if (day.equals(days.get(1))) {
+				throw loadFailure;
+			}
+			return day;
+		}, (day, result) -> {
+			if (day.equals(days.get(3))) {
+				throw handleFailure;
+			}
+			handled.add(day);
+		});
+
+		assertEquals(2, failures.size());
+		assertSame(loadFailure, failures.get(days.get(1)));
+		assertSame(handleFailure, failures.get(days.get(3)));
+		assertEquals(3, handled.size());
+	}
+
+	private static List<DayDate> days(int count) {
+		List<DayDate> days = new ArrayList<>();
+		DayDate day = new DayDate().subtractDays(count - 1);
+		for (int i = 0; i < count; i++) {
+			days.add(day);
+			day = day.getNextDay();
+		}
+		return days;
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.dpppt.android.sdk.DP3T;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class BroadcastHelperTest {
+
+	@Test
+	public void testBurstIsMergedIntoOneBroadcast() throws InterruptedException {
+		Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+		AppConfigManager.getInstance(context).setUpdateBroadcastWindow(500);
+
+		List<Intent> received = new CopyOnWriteArrayList<>();
+		CountDownLatch firstBroadcast = new CountDownLatch(1);
+		BroadcastReceiver receiver = new BroadcastReceiver() {
+			@Override
+			public void onReceive(Context context, Intent intent) {
+				received.add(intent);
+				firstBroadcast.countDown();
+			}
+		};
+		context.registerReceiver(receiver, DP3T.getUpdateIntentFilter());
+		try {
+			for (int i = 0; i < 10; i++) {
+				BroadcastHelper.sendNewHandshakesBroadcast(context, 3);
+			}
+			BroadcastHelper.sendNewMatchesBroadcast(context, 1);
+			BroadcastHelper.sendSyncFinishedBroadcast(context);
+
+			assertTrue(firstBroadcast.await(5, TimeUnit.SECONDS));
+			Thread.sleep(1000);
+		} finally {
+			context.unregisterReceiver(receiver);
+			AppConfigManager.getInstance(context).setUpdateBroadcastWindow(AppConfigManager.DEFAULT_UPDATE_BROADCAST_WINDOW);
+		}
+
+		assertEquals(1, received.size());
+		Intent intent = received.get(0);
+		assertEquals(30, intent.getIntExtra(DP3T.UPDATE_EXTRA_NEW_HANDSHAKES, 0));
+		assertEquals(1, intent.getIntExtra(DP3T.UPDATE_EXTRA_NEW_MATCHES, 0));
+		assertTrue(intent.getBooleanExtra(DP3T.UPDATE_EXTRA_SYNC_FINISHED, false));
+		assertFalse(intent.getBooleanExtra(DP3T.UPDATE_EXTRA_ERROR_STATE_CHANGED, true));
+		assertFalse(intent.getBooleanExtra(DP3T.UPDATE_EXTRA_TRACING_STATE_CHANGED, true));
+	}
+
+}
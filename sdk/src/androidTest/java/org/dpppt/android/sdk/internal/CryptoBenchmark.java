@@ -11,9 +11,14 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.platform.app.InstrumentationRegistry;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import org.dpppt.android.sdk.internal.crypto.CryptoModule;
 import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.crypto.EphIdGenerator;
+import org.dpppt.android.sdk.internal.crypto.MatchCollector;
+import org.dpppt.android.sdk.internal.crypto.MatchingJob;
+import org.dpppt.android.sdk.internal.crypto.ParallelContactMatcher;
 import org.dpppt.android.sdk.internal.database.models.Contact;
 import org.dpppt.android.sdk.internal.util.DayDate;
 import org.junit.Rule;
@@ -25,6 +30,7 @@ public class CryptoBenchmark {
 
 	private static final int NUMBER_OF_DAYS_TO_TEST = 5;
 	private static final int NUMBER_OF_CONTACTS_PER_DAY = 50;
+	private static final int NUMBER_OF_KNOWN_CASES = 100;
 
 	@Rule
 	public BenchmarkRule benchmarkRule = new BenchmarkRule();
@@ -51,4 +57,43 @@ public class CryptoBenchmark {
 		}
 	}
 
+	@Test
+	public void parallel_key_matching_performance() {
+		final BenchmarkState state = benchmarkRule.getState();
+		List<Contact> contacts = new ArrayList<>();
+		for (int x = 0; x < NUMBER_OF_CONTACTS_PER_DAY; x++) {
+			contacts.add(new Contact(0, new DayDate(), new EphId(new byte[CryptoModule.KEY_LENGTH]), 0));
+		}
+		List<MatchingJob> jobs = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_KNOWN_CASES; i++) {
+			String key = "much longer key which is used for the hash functino but this should not have an influence" +
+					Integer.toHexString(i);
+			jobs.add(new MatchingJob(i, key.getBytes(), new DayDate().subtractDays(NUMBER_OF_DAYS_TO_TEST), new DayDate()));
+		}
+		while (state.keepRunning()) {
+			ParallelContactMatcher.match(jobs, date -> contacts, new MatchCollector());
+		}
+	}
+
+	@Test
+	public void ephid_generation_into_buffer() {
+		final BenchmarkState state = benchmarkRule.getState();
+		EphIdGenerator generator = EphIdGenerator.forCurrentThread();
+		byte[] sk = new byte[32];
+		byte[] ephIdBuffer = new byte[EphIdGenerator.EPHIDS_PER_DAY_BUFFER_SIZE];
+		while (state.keepRunning()) {
+			generator.generateEphIds(sk, ephIdBuffer, 0);
+		}
+	}
+
+	@Test
+	public void ephid_generation_as_list() {
+		final BenchmarkState state = benchmarkRule.getState();
+		EphIdGenerator generator = EphIdGenerator.forCurrentThread();
+		byte[] sk = new byte[32];
+		while (state.keepRunning()) {
+			generator.createEphIds(sk, false);
+		}
+	}
+
 }
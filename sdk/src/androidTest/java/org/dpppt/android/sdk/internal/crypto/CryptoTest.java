@@ -5,6 +5,7 @@
  */
 package org.dpppt.android.sdk.internal.crypto;
 
+import android.util.Pair;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.platform.app.InstrumentationRegistry;
 
@@ -20,8 +21,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import static org.dpppt.android.sdk.internal.util.Base64Util.fromBase64;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @RunWith(AndroidJUnit4.class)
 public class CryptoTest {
@@ -53,6 +57,15 @@ public class CryptoTest {
 		for (int i = 0; i < allEphIdsOfToday.size(); i++) {
 			assertTrue(allEphIdsOfToday.get(i).equals(allEphIdsOfToday2.get(i)));
 		}
+
+		// the returned list is the cached state and must not be modifiable
+		try {
+			allEphIdsOfToday.clear();
+			fail("cached EphIds were modified");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		assertEquals(allEphIdsOfToday2, module.getEphIdsForToday(new DayDate()));
 	}
 
 	@Test
@@ -132,4 +145,71 @@ public class CryptoTest {
 		assertTrue(infectedContacts.size() == 1);
 	}
 
+	@Test
+	public void testKeyStateFormatRoundTrip() {
+		CryptoModule module = CryptoModule.getInstance(InstrumentationRegistry.getInstrumentation().getContext());
+		module.reset();
+		module.init();
+
+		DayDate today = new DayDate();
+		SKList skList = new SKList();
+		skList.add(Pair.create(today, module.getCurrentSK(today)));
+		skList.add(Pair.create(today.subtractDays(1), fromBase64("n5N07F0UnZ3DLWCpZ6rmQbWVYS1TDF/ttHLT8SdaHRs=")));
+		SKList decodedSKList = KeyStateFormat.decodeSKList(KeyStateFormat.encodeSKList(skList));
+		assertEquals(skList.size(), decodedSKList.size());
+		for (int i = 0; i < skList.size(); i++) {
+			assertEquals(skList.get(i).first, decodedSKList.get(i).first);
+			assertArrayEquals(skList.get(i).second, decodedSKList.get(i).second);
+		}
+
+		EphIdsForDay ephIdsForDay = new EphIdsForDay();
+		ephIdsForDay.dayDate = today;
+		ephIdsForDay.ephIds = module.getEphIdsForToday(today);
+		EphIdsForDay decodedEphIds = KeyStateFormat.decodeEphIdsForDay(KeyStateFormat.encodeEphIdsForDay(ephIdsForDay));
+		assertEquals(today, decodedEphIds.dayDate);
+		assertEquals(ephIdsForDay.ephIds, decodedEphIds.ephIds);
+	}
+
+
+	@Test
+	public void testPrecomputedNextDay() {
+		CryptoModule module = CryptoModule.getInstance(InstrumentationRegistry.getInstrumentation().getContext());
+		module.reset();
+		module.init();
+
+		DayDate today = new DayDate();
+		DayDate tomorrow = today.getNextDay();
+		byte[] skToday = module.getCurrentSK(today);
+		module.precomputeDay(tomorrow);
+
+		List<EphId> precomputed = module.getEphIdsForToday(tomorrow);
+		byte[] skTomorrow = module.getCurrentSK(tomorrow);
+		assertArrayEquals(module.getSKt1(skToday), skTomorrow);
+		assertEquals(new HashSet<>(module.createEphIds(skTomorrow, false)), new HashSet<>(precomputed));
+	}
+
+	@Test
+	public void testPrecomputedNextDayOfOtherKeyIsDropped() {
+		CryptoModule module = CryptoModule.getInstance(InstrumentationRegistry.getInstrumentation().getContext());
+		module.reset();
+		module.init();
+
+		DayDate today = new DayDate();
+		DayDate tomorrow = today.getNextDay();
+		module.getCurrentSK(today);
+		module.precomputeDay(tomorrow);
+
+		// the key state changes after the precomputation, e.g. by a restored backup
+		byte[] otherSKToday = new byte[32];
+		Arrays.fill(otherSKToday, (byte) 7);
+		SKList otherSKList = new SKList();
+		otherSKList.add(Pair.create(today, otherSKToday));
+		module.storeSKList(otherSKList);
+
+		List<EphId> ephIds = module.getEphIdsForToday(tomorrow);
+		byte[] skTomorrow = module.getCurrentSK(tomorrow);
+		assertArrayEquals(module.getSKt1(otherSKToday), skTomorrow);
+		assertEquals(new HashSet<>(module.createEphIds(skTomorrow, false)), new HashSet<>(ephIds));
+	}
+
 }
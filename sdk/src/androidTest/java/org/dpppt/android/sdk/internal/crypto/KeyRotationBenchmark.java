@@ -0,0 +1,114 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Pair;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.Random;
+
+import com.bottlerocketstudios.vault.SharedPreferenceVaultFactory;
+
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.dpppt.android.sdk.internal.util.Json;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Compares catching up on two weeks of missed SK rotations in one step with rotating and persisting one day at a
+ * time, as done before. The baseline reproduces the earlier path on a vault of its own: every day decrypts and parses
+ * the JSON key list, derives one key and encodes and encrypts the list again, without any cache.
+ */
+@RunWith(AndroidJUnit4.class)
+public class KeyRotationBenchmark {
+
+	private static final int NUMBER_OF_OFFLINE_DAYS = 14;
+
+	private static final String BASELINE_PREF_FILE_NAME = "dp3t-benchmark-data";
+	private static final String BASELINE_KEY_FILE_NAME = "dp3t-benchmark-keys";
+	private static final String BASELINE_KEY_ALIAS = "dp3t-benchmark";
+	private static final int BASELINE_VAULT_ID = 3739;
+	private static final String BASELINE_KEY_SK_LIST_JSON = "SK_LIST_JSON";
+
+	@Rule
+	public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+	private CryptoModule module;
+	private SharedPreferences baselineVault;
+	private SKList outdatedSKList;
+
+	@Before
+	public void setup() throws GeneralSecurityException {
+		Context context = InstrumentationRegistry.getInstrumentation().getContext();
+		module = CryptoModule.getInstance(context);
+		module.reset();
+		module.init();
+
+		byte[] key = new byte[32];
+		new Random(0).nextBytes(key);
+		outdatedSKList = new SKList();
+		outdatedSKList.add(Pair.create(new DayDate().subtractDays(NUMBER_OF_OFFLINE_DAYS), key));
+
+		baselineVault = SharedPreferenceVaultFactory.getAppKeyedCompatAes256Vault(context, BASELINE_PREF_FILE_NAME,
+				BASELINE_KEY_FILE_NAME, BASELINE_KEY_ALIAS, BASELINE_VAULT_ID, "unused");
+	}
+
+	@Test
+	public void catch_up_rotation() {
+		final BenchmarkState state = benchmarkRule.getState();
+		DayDate today = new DayDate();
+		while (state.keepRunning()) {
+			state.pauseTiming();
+			module.storeSKList(outdatedSKList);
+			state.resumeTiming();
+
+			module.getCurrentSK(today);
+		}
+	}
+
+	@Test
+	public void day_by_day_rotation() {
+		final BenchmarkState state = benchmarkRule.getState();
+		DayDate today = new DayDate();
+		while (state.keepRunning()) {
+			state.pauseTiming();
+			baselineVault.edit().putString(BASELINE_KEY_SK_LIST_JSON, Json.toJson(outdatedSKList)).commit();
+			state.resumeTiming();
+
+			SKList skList = readBaselineSKList();
+			while (skList.get(0).first.isBefore(today)) {
+				rotateBaselineSK();
+				skList = readBaselineSKList();
+			}
+		}
+	}
+
+	private SKList readBaselineSKList() {
+		return Json.safeFromJson(baselineVault.getString(BASELINE_KEY_SK_LIST_JSON, null), SKList.class, SKList::new);
+	}
+
+	private void rotateBaselineSK() {
+		SKList skList = readBaselineSKList();
+		DayDate nextDay = skList.get(0).first.getNextDay();
+		byte[] SKt1 = module.getSKt1(skList.get(0).second);
+		skList.add(0, Pair.create(nextDay, SKt1));
+		List<Pair<DayDate, byte[]>> subList =
+				skList.subList(0, Math.min(CryptoModule.NUMBER_OF_DAYS_TO_KEEP_DATA, skList.size()));
+		SKList truncatedSKList = new SKList();
+		truncatedSKList.addAll(subList);
+		baselineVault.edit().putString(BASELINE_KEY_SK_LIST_JSON, Json.toJson(truncatedSKList)).apply();
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.dpppt.android.sdk.internal.crypto.ContactsFactory;
+import org.dpppt.android.sdk.internal.crypto.CryptoModule;
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.database.models.Contact;
+import org.dpppt.android.sdk.internal.database.models.Handshake;
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class ContactGenerationTest {
+
+	@Test
+	public void testSqlGenerationMatchesContactsFactory() {
+		SQLiteDatabase db = SQLiteDatabase.create(null);
+		new Transaction(db, DatabaseOpenHelper.recreateStatements()).run();
+
+		Random random = new Random(42);
+		List<EphId> ephIds = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			byte[] data = new byte[CryptoModule.KEY_LENGTH];
+			random.nextBytes(data);
+			ephIds.add(new EphId(data));
+		}
+		long start = new DayDate().subtractDays(3).getStartOfDayTimestamp();
+		List<Handshake> handshakes = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			EphId ephId = ephIds.get(random.nextInt(ephIds.size()));
+			// keep all handshakes of an EphId within one epoch, as EphIds rotate every epoch
+			long epochStart = start + (ephIds.indexOf(ephId) % 200) * CryptoModule.MILLISECONDS_PER_EPOCH;
+			long timestamp = epochStart + random.nextInt(CryptoModule.MILLISECONDS_PER_EPOCH);
+			handshakes.add(new Handshake(i, timestamp, ephId, 0, 0));
+			ContentValues values = new ContentValues();
+			values.put(Handshakes.EPHID_HIGH, ephId.getHigh());
+			values.put(Handshakes.EPHID_LOW, ephId.getLow());
+			values.put(Handshakes.TIMESTAMP, timestamp);
+			db.insert(Handshakes.TABLE_NAME, null, values);
+		}
+
+		db.execSQL(Database.GENERATE_CONTACTS, new Object[] { 0, Long.MAX_VALUE, CryptoModule.CONTACT_THRESHOLD });
+
+		Set<String> expected = new HashSet<>();
+		for (Contact contact : ContactsFactory.mergeHandshakesToContacts(handshakes)) {
+			expected.add(describe(contact.getDate().getEpochDay(), contact.getEphId()));
+		}
+		Set<String> generated = readContacts(db);
+		db.close();
+
+		assertEquals(expected, generated);
+	}
+
+
+	@Test
+	public void testAggregatesCountWithTheirSightings() {
+		SQLiteDatabase db = SQLiteDatabase.create(null);
+		new Transaction(db, DatabaseOpenHelper.recreateStatements()).run();
+		long epoch = new DayDate().subtractDays(1).getStartOfDayTimestamp() + 4 * CryptoModule.MILLISECONDS_PER_EPOCH;
+		EphId aggregatedOnly = new EphId(1, 1);
+		EphId aggregatedAndRaw = new EphId(2, 2);
+		EphId seenOnce = new EphId(3, 3);
+		insertAggregate(db, epoch, aggregatedOnly, CryptoModule.CONTACT_THRESHOLD + 1);
+		insertAggregate(db, epoch, aggregatedAndRaw, CryptoModule.CONTACT_THRESHOLD);
+		insertAggregate(db, epoch, seenOnce, 1);
+		ContentValues values = new ContentValues();
+		values.put(Handshakes.EPHID_HIGH, aggregatedAndRaw.getHigh());
+		values.put(Handshakes.EPHID_LOW, aggregatedAndRaw.getLow());
+		values.put(Handshakes.TIMESTAMP, epoch + 1000);
+		db.insert(Handshakes.TABLE_NAME, null, values);
+
+		db.execSQL(Database.GENERATE_CONTACTS, new Object[] { 0, Long.MAX_VALUE, CryptoModule.CONTACT_THRESHOLD });
+
+		Set<String> generated = readContacts(db);
+		db.close();
+
+		long day = new DayDate(epoch).getEpochDay();
+		Set<String> expected = new HashSet<>();
+		expected.add(describe(day, aggregatedOnly));
+		expected.add(describe(day, aggregatedAndRaw));
+		assertEquals(expected, generated);
+	}
+
+	private static void insertAggregate(SQLiteDatabase db, long epoch, EphId ephId, int count) {
+		ContentValues values = new ContentValues();
+		values.put(HandshakeAggregates.EPOCH, epoch);
+		values.put(HandshakeAggregates.EPHID_HIGH, ephId.getHigh());
+		values.put(HandshakeAggregates.EPHID_LOW, ephId.getLow());
+		values.put(HandshakeAggregates.COUNT, count);
+		values.put(HandshakeAggregates.FIRST_SEEN, epoch);
+		values.put(HandshakeAggregates.LAST_SEEN, epoch);
+		db.insert(HandshakeAggregates.TABLE_NAME, null, values);
+	}
+
+	private static Set<String> readContacts(SQLiteDatabase db) {
+		Set<String> contacts = new HashSet<>();
+		Cursor cursor = db.query(Contacts.TABLE_NAME, new String[] { Contacts.DAY, Contacts.EPHID_HIGH, Contacts.EPHID_LOW },
+				null, null, null, null, null);
+		while (cursor.moveToNext()) {
+			contacts.add(describe(cursor.getLong(0), new EphId(cursor.getLong(1), cursor.getLong(2))));
+		}
+		cursor.close();
+		return contacts;
+	}
+
+	private static String describe(long epochDay, EphId ephId) {
+		return epochDay + " " + ephId.getHigh() + " " + ephId.getLow();
+	}
+
+}
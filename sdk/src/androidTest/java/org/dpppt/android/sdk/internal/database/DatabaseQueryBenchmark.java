@@ -0,0 +1,151 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import java.util.Random;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoModule;
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Runs the hot queries of {@link Database} against 21 days of dense contact data, once on the bare tables and once
+ * with the indexes of the current schema.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseQueryBenchmark {
+
+	private static final int NUMBER_OF_CONTACTS_PER_DAY = 2000;
+	private static final int NUMBER_OF_HANDSHAKES = 20000;
+
+	@Rule
+	public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+	private SQLiteDatabase db;
+	private DayDate today;
+
+	@Before
+	public void setup() {
+		db = SQLiteDatabase.create(null);
+		db.execSQL(KnownCases.create());
+		db.execSQL(Handshakes.create());
+		db.execSQL(Contacts.create());
+		today = new DayDate();
+
+		Random random = new Random(42);
+		db.beginTransaction();
+		SQLiteStatement insertContact = db.compileStatement("INSERT INTO " + Contacts.TABLE_NAME + " (" + Contacts.DAY +
+				", " + Contacts.EPHID_HIGH + ", " + Contacts.EPHID_LOW + ") VALUES (?, ?, ?)");
+		for (int day = 0; day < CryptoModule.NUMBER_OF_DAYS_TO_KEEP_DATA; day++) {
+			long epochDay = today.subtractDays(day).getEpochDay();
+			for (int i = 0; i < NUMBER_OF_CONTACTS_PER_DAY; i++) {
+				insertContact.bindLong(1, epochDay);
+				insertContact.bindLong(2, random.nextLong());
+				insertContact.bindLong(3, random.nextLong());
+				insertContact.executeInsert();
+			}
+		}
+		SQLiteStatement insertHandshake = db.compileStatement("INSERT INTO " + Handshakes.TABLE_NAME + " (" +
+				Handshakes.TIMESTAMP + ", " + Handshakes.EPHID_HIGH + ", " + Handshakes.EPHID_LOW + ") VALUES (?, ?, ?)");
+		long start = today.getStartOfDayTimestamp();
+		for (int i = 0; i < NUMBER_OF_HANDSHAKES; i++) {
+			insertHandshake.bindLong(1, start + random.nextInt(24 * 60 * 60 * 1000));
+			insertHandshake.bindLong(2, random.nextLong());
+			insertHandshake.bindLong(3, random.nextLong());
+			insertHandshake.executeInsert();
+		}
+		db.setTransactionSuccessful();
+		db.endTransaction();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void contacts_of_day_unindexed() {
+		benchmarkContactsOfDay();
+	}
+
+	@Test
+	public void contacts_of_day_indexed() {
+		createIndexes();
+		benchmarkContactsOfDay();
+	}
+
+	@Test
+	public void handshakes_before_epoch_unindexed() {
+		benchmarkHandshakesBeforeEpoch();
+	}
+
+	@Test
+	public void handshakes_before_epoch_indexed() {
+		createIndexes();
+		benchmarkHandshakesBeforeEpoch();
+	}
+
+	@Test
+	public void exposed_contacts_unindexed() {
+		benchmarkExposedContacts();
+	}
+
+	@Test
+	public void exposed_contacts_indexed() {
+		createIndexes();
+		benchmarkExposedContacts();
+	}
+
+	private void createIndexes() {
+		db.execSQL(Handshakes.createTimestampIndex());
+		db.execSQL(Contacts.createDayIndex());
+		db.execSQL(Contacts.createAssociatedKnownCaseIndex());
+	}
+
+	private void benchmarkContactsOfDay() {
+		final BenchmarkState state = benchmarkRule.getState();
+		String[] args = { "" + today.subtractDays(7).getEpochDay() };
+		while (state.keepRunning()) {
+			consume(db.query(Contacts.TABLE_NAME, Contacts.PROJECTION, Contacts.DAY + "=?", args, null, null, null));
+		}
+	}
+
+	private void benchmarkHandshakesBeforeEpoch() {
+		final BenchmarkState state = benchmarkRule.getState();
+		String[] args = { "" + (today.getStartOfDayTimestamp() + CryptoModule.MILLISECONDS_PER_EPOCH) };
+		while (state.keepRunning()) {
+			consume(db.query(Handshakes.TABLE_NAME, Handshakes.PROJECTION, Handshakes.TIMESTAMP + " < ?", args, null, null,
+					null));
+		}
+	}
+
+	private void benchmarkExposedContacts() {
+		final BenchmarkState state = benchmarkRule.getState();
+		while (state.keepRunning()) {
+			consume(db.query(Contacts.TABLE_NAME, new String[] { Contacts.ID }, Contacts.ASSOCIATED_KNOWN_CASE + " > 0",
+					null, null, null, null, "1"));
+		}
+	}
+
+	private static void consume(Cursor cursor) {
+		while (cursor.moveToNext()) {
+			cursor.getLong(0);
+		}
+		cursor.close();
+	}
+
+}
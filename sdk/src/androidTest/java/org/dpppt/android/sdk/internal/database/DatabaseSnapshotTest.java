@@ -0,0 +1,167 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class DatabaseSnapshotTest {
+
+	private static final int NUMBER_OF_HANDSHAKES = 100;
+
+	private File directory;
+	private File databaseFile;
+	private SQLiteDatabase db;
+
+	@Before
+	public void setup() {
+		directory = new File(InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir(), "snapshot_test");
+		directory.mkdirs();
+		databaseFile = new File(directory, "snapshot_test.db");
+		SQLiteDatabase.deleteDatabase(databaseFile);
+		db = SQLiteDatabase.openOrCreateDatabase(databaseFile, null);
+		db.enableWriteAheadLogging();
+		// keep the transactions in the log to check that they are part of the snapshot
+		Cursor autoCheckpoint = db.rawQuery("PRAGMA wal_autocheckpoint = 0", null);
+		autoCheckpoint.moveToFirst();
+		autoCheckpoint.close();
+		new Transaction(db, DatabaseOpenHelper.recreateStatements()).run();
+		for (int i = 0; i < NUMBER_OF_HANDSHAKES; i++) {
+			ContentValues values = new ContentValues();
+			values.put(Handshakes.TIMESTAMP, i);
+			values.put(Handshakes.EPHID_HIGH, 0);
+			values.put(Handshakes.EPHID_LOW, i);
+			values.put(Handshakes.TX_POWER_LEVEL, 0);
+			values.put(Handshakes.RSSI, -50);
+			db.insert(Handshakes.TABLE_NAME, null, values);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+		SQLiteDatabase.deleteDatabase(databaseFile);
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testVacuumIntoVersions() {
+		assertFalse(DatabaseSnapshot.supportsVacuumInto("3.8.10.2"));
+		assertFalse(DatabaseSnapshot.supportsVacuumInto("3.22.0"));
+		assertTrue(DatabaseSnapshot.supportsVacuumInto("3.27.0"));
+		assertTrue(DatabaseSnapshot.supportsVacuumInto("3.32.2"));
+		assertFalse(DatabaseSnapshot.supportsVacuumInto(""));
+	}
+
+	@Test
+	public void testCopyFilesIncludesTheLog() throws IOException {
+		assertTrue(new File(databaseFile.getPath() + "-wal").length() > 0);
+		File target = new File(directory, "copy.db");
+		DatabaseSnapshot.copyFiles(databaseFile, target);
+
+		assertFalse(new File(target.getPath() + "-wal").exists());
+		assertEquals(NUMBER_OF_HANDSHAKES, countHandshakes(target));
+	}
+
+	@Test
+	public void testVacuumIntoFromReadOnlyConnection() {
+		assumeTrue(DatabaseSnapshot.supportsVacuumInto(db));
+		SQLiteDatabase reader = SQLiteDatabase.openDatabase(databaseFile.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+		File target = new File(directory, "vacuum.db");
+		try {
+			DatabaseSnapshot.vacuumInto(reader, target);
+		} finally {
+			reader.close();
+		}
+
+		assertEquals(NUMBER_OF_HANDSHAKES, countHandshakes(target));
+	}
+
+	@Test
+	public void testBundleHasManifestAndDatabases() throws IOException {
+		SnapshotBundle bundle = new SnapshotBundle();
+		bundle.add("first.db", 6, target -> {
+			DatabaseSnapshot.copyFiles(databaseFile, target);
+			return DatabaseSnapshot.METHOD_FILE_COPY;
+		});
+		bundle.add("second.db", 2, target -> {
+			DatabaseSnapshot.copyFiles(databaseFile, target);
+			return DatabaseSnapshot.METHOD_FILE_COPY;
+		});
+		File tempDirectory = new File(directory, "temp");
+		tempDirectory.mkdirs();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		bundle.writeTo(out, tempDirectory);
+
+		ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+		ZipEntry manifest = zipIn.getNextEntry();
+		assertEquals(SnapshotBundle.MANIFEST_NAME, manifest.getName());
+		String manifestJson = new String(readEntry(zipIn), "UTF-8");
+		assertTrue(manifestJson.contains("\"first.db\""));
+		assertTrue(manifestJson.contains("\"second.db\""));
+
+		for (String name : new String[] { "first.db", "second.db" }) {
+			assertEquals(name, zipIn.getNextEntry().getName());
+			File extracted = new File(directory, "extracted_" + name);
+			FileOutputStream extractedOut = new FileOutputStream(extracted);
+			extractedOut.write(readEntry(zipIn));
+			extractedOut.close();
+			assertEquals(NUMBER_OF_HANDSHAKES, countHandshakes(extracted));
+		}
+		assertNull(zipIn.getNextEntry());
+		assertEquals(0, tempDirectory.list().length);
+		tempDirectory.delete();
+	}
+
+	private static byte[] readEntry(ZipInputStream zipIn) throws IOException {
+		ByteArrayOutputStream entry = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = zipIn.read(buffer)) > 0) {
+			entry.write(buffer, 0, read);
+		}
+		return entry.toByteArray();
+	}
+
+	private static long countHandshakes(File file) {
+		SQLiteDatabase snapshot = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+		try {
+			return DatabaseUtils.queryNumEntries(snapshot, Handshakes.TABLE_NAME);
+		} finally {
+			snapshot.close();
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoConstants;
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class KnownCaseWriterTest {
+
+	// more cases than fit into all buffers at once, so the writer has to wait for insertions
+	private static final int NUMBER_OF_CASES = 5000;
+
+	private SQLiteDatabase db;
+	private DatabaseExecutor databaseExecutor;
+
+	@Before
+	public void setup() {
+		db = SQLiteDatabase.create(null);
+		new Transaction(db, DatabaseOpenHelper.recreateStatements()).run();
+		databaseExecutor = new DatabaseExecutor("KnownCaseWriterTest");
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testInsertsCasesWithJournalEntries() throws IOException, InterruptedException {
+		DayDate bucketDate = new DayDate();
+		long onset = bucketDate.subtractDays(3).getEpochDay();
+		KnownCaseWriter writer = new KnownCaseWriter(db, databaseExecutor, bucketDate);
+		byte[] key = new byte[CryptoConstants.SECRET_KEY_LENGTH];
+		for (int i = 0; i < NUMBER_OF_CASES; i++) {
+			writeKey(i, key);
+			writer.onExposee(key, onset);
+		}
+		// a key published again for the same day is ignored
+		writeKey(0, key);
+		writer.onExposee(key, onset);
+		writer.flush();
+		awaitExecutor();
+
+		assertEquals(NUMBER_OF_CASES, DatabaseUtils.queryNumEntries(db, KnownCases.TABLE_NAME));
+		assertEquals(NUMBER_OF_CASES, DatabaseUtils.queryNumEntries(db, MatchingJournal.TABLE_NAME));
+
+		Cursor cursor = db.rawQuery("SELECT k." + KnownCases.KEY + ", k." + KnownCases.ONSET + ", k." +
+				KnownCases.BUCKET_DAY + ", j." + MatchingJournal.PENDING_FROM + ", j." + MatchingJournal.PENDING_UNTIL +
+				" FROM " + KnownCases.TABLE_NAME + " k INNER JOIN " + MatchingJournal.TABLE_NAME + " j ON j." +
+				MatchingJournal.KNOWN_CASE_ID + " = k." + KnownCases.ID + " ORDER BY k." + KnownCases.ID, null);
+		try {
+			int i = 0;
+			while (cursor.moveToNext()) {
+				writeKey(i++, key);
+				assertArrayEquals(key, cursor.getBlob(0));
+				assertEquals(onset, cursor.getLong(1));
+				assertEquals(bucketDate.getEpochDay(), cursor.getLong(2));
+				assertEquals(onset, cursor.getLong(3));
+				assertEquals(bucketDate.getEpochDay(), cursor.getLong(4));
+			}
+			assertEquals(NUMBER_OF_CASES, i);
+		} finally {
+			cursor.close();
+		}
+	}
+
+	@Test
+	public void testFlushWithoutCasesDoesNothing() throws InterruptedException {
+		KnownCaseWriter writer = new KnownCaseWriter(db, databaseExecutor, new DayDate());
+		writer.flush();
+		awaitExecutor();
+		assertEquals(0, DatabaseUtils.queryNumEntries(db, KnownCases.TABLE_NAME));
+	}
+
+	private void awaitExecutor() throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(1);
+		databaseExecutor.post(DatabaseExecutor.Lane.BULK, done::countDown);
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+	}
+
+	private static void writeKey(int i, byte[] key) {
+		Arrays.fill(key, (byte) 0);
+		key[0] = (byte) (i >> 8);
+		key[1] = (byte) i;
+		key[key.length - 1] = (byte) (i * 31);
+	}
+
+}
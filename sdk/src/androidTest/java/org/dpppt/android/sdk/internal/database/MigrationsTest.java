@@ -0,0 +1,162 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.dpppt.android.sdk.internal.util.Base64Util.fromBase64;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class MigrationsTest {
+
+	@Test
+	public void testMigrationsAreOrdered() {
+		int expectedVersion = 2;
+		for (Migrations.Migration migration : Migrations.MIGRATIONS) {
+			assertEquals(expectedVersion, migration.toVersion);
+			expectedVersion++;
+		}
+		assertEquals(expectedVersion - 1, Migrations.LATEST_VERSION);
+	}
+
+	@Test
+	public void testMigratedSchemaEqualsFreshSchema() {
+		SQLiteDatabase migrated = SchemaVersion1.createDatabase();
+		Migrations.migrate(migrated, 1, Migrations.LATEST_VERSION);
+
+		SQLiteDatabase fresh = SQLiteDatabase.create(null);
+		new Transaction(fresh, DatabaseOpenHelper.recreateStatements()).run();
+
+		assertEquals(getSchema(fresh), getSchema(migrated));
+		migrated.close();
+		fresh.close();
+	}
+
+	@Test
+	public void testEveryStepKeepsData() {
+		DayDate day = new DayDate().subtractDays(3);
+		EphId ephId = new EphId(-2, 3);
+		for (int version = 1; version < Migrations.LATEST_VERSION; version++) {
+			SQLiteDatabase db = SchemaVersion1.createDatabase();
+			SchemaVersion1.insertContact(db, day.getStartOfDayTimestamp(), ephId.getData(), null);
+
+			Migrations.migrate(db, 1, version);
+			Migrations.migrate(db, version, Migrations.LATEST_VERSION);
+
+			Cursor cursor = db.query(Contacts.TABLE_NAME, new String[] { Contacts.DAY, Contacts.EPHID_HIGH,
+					Contacts.EPHID_LOW }, null, null, null, null, null);
+			assertEquals(1, cursor.getCount());
+			cursor.moveToFirst();
+			assertEquals(day.getEpochDay(), cursor.getLong(0));
+			assertEquals(ephId, new EphId(cursor.getLong(1), cursor.getLong(2)));
+			cursor.close();
+			db.close();
+		}
+	}
+
+	@Test
+	public void testBinaryColumnsAreConverted() {
+		SQLiteDatabase db = SchemaVersion1.createDatabase();
+		Migrations.migrate(db, 1, 6);
+		DayDate onset = new DayDate().subtractDays(5);
+		DayDate bucket = new DayDate().subtractDays(1);
+		String key = "n5N07F0UnZ3DLWCpZ6rmQbWVYS1TDF/ttHLT8SdaHRs=";
+		byte[] ephId = new byte[16];
+		for (int i = 0; i < ephId.length; i++) {
+			ephId[i] = (byte) (0xf0 + i);
+		}
+		long epoch = bucket.getStartOfDayTimestamp() + 3 * 15 * 60 * 1000;
+		SchemaVersion1.insertKnownCase(db, 7, onset.getStartOfDayTimestamp(), bucket.getStartOfDayTimestamp(), key);
+		SchemaVersion1.insertKnownCase(db, 8, onset.getStartOfDayTimestamp(), bucket.getStartOfDayTimestamp(), "not*base64");
+		db.execSQL("INSERT INTO matching_journal (known_case_id, pending_from, pending_until) VALUES (7, ?, ?)",
+				new Object[] { onset.getStartOfDayTimestamp(), bucket.getStartOfDayTimestamp() });
+		SchemaVersion1.insertContact(db, bucket.getStartOfDayTimestamp(), ephId, 7L);
+		SchemaVersion1.insertContact(db, bucket.getStartOfDayTimestamp(), new byte[16], null);
+		SchemaVersion1.insertHandshake(db, epoch + 1000, ephId, 12, -60);
+		db.execSQL("INSERT INTO handshake_aggregates (epoch, ephid, count, first_seen, last_seen, rssi_min, rssi_max, " +
+				"rssi_mean, tx_power_level_min, tx_power_level_max, tx_power_level_mean) VALUES (?, ?, 3, ?, ?, -70, -50, " +
+				"-60.0, 0, 12, 4.0)", new Object[] { epoch, ephId, epoch, epoch + 5000 });
+
+		Migrations.migrate(db, 6, 7);
+
+		EphId expected = new EphId(ephId);
+		assertTrue(expected.getHigh() < 0);
+		Cursor knownCases = db.query(KnownCases.TABLE_NAME, KnownCases.PROJECTION, null, null, null, null, KnownCases.ID);
+		assertTrue(knownCases.moveToNext());
+		assertEquals(7, knownCases.getLong(0));
+		assertEquals(onset.getEpochDay(), knownCases.getLong(1));
+		assertEquals(bucket.getEpochDay(), knownCases.getLong(2));
+		assertArrayEquals(fromBase64(key), knownCases.getBlob(3));
+		assertTrue(knownCases.moveToNext());
+		assertArrayEquals("not*base64".getBytes(), knownCases.getBlob(3));
+		knownCases.close();
+
+		Cursor journal = db.query(MatchingJournal.TABLE_NAME, MatchingJournal.PROJECTION, null, null, null, null, null);
+		assertTrue(journal.moveToFirst());
+		assertEquals(7, journal.getLong(0));
+		assertEquals(onset.getEpochDay(), journal.getLong(1));
+		assertEquals(bucket.getEpochDay(), journal.getLong(2));
+		journal.close();
+
+		Cursor contacts = db.query(Contacts.TABLE_NAME, Contacts.PROJECTION, null, null, null, null, Contacts.ID);
+		assertTrue(contacts.moveToNext());
+		assertEquals(bucket.getEpochDay(), contacts.getLong(1));
+		assertEquals(expected, new EphId(contacts.getLong(2), contacts.getLong(3)));
+		assertEquals(7, contacts.getLong(4));
+		assertTrue(contacts.moveToNext());
+		assertEquals(0, contacts.getLong(2));
+		assertEquals(0, contacts.getLong(3));
+		assertFalse(contacts.moveToNext());
+		contacts.close();
+
+		Cursor handshakes = db.query(Handshakes.TABLE_NAME, Handshakes.PROJECTION, null, null, null, null, null);
+		assertTrue(handshakes.moveToFirst());
+		assertEquals(epoch + 1000, handshakes.getLong(1));
+		assertEquals(expected, new EphId(handshakes.getLong(2), handshakes.getLong(3)));
+		assertEquals(12, handshakes.getInt(4));
+		assertEquals(-60, handshakes.getInt(5));
+		handshakes.close();
+
+		Cursor aggregates = db.query(HandshakeAggregates.TABLE_NAME, HandshakeAggregates.PROJECTION, null, null, null, null,
+				null);
+		assertTrue(aggregates.moveToFirst());
+		assertEquals(epoch, aggregates.getLong(0));
+		assertEquals(expected, new EphId(aggregates.getLong(1), aggregates.getLong(2)));
+		assertEquals(3, aggregates.getInt(3));
+		assertEquals(-60.0, aggregates.getDouble(8), 0.0001);
+		aggregates.close();
+
+		assertEquals(2, Database.getMetadata(db, Metadata.KEY_CONTACT_COUNT, -1));
+		assertEquals(1, Database.getMetadata(db, Metadata.KEY_EXPOSED_CONTACT_COUNT, -1));
+		db.close();
+	}
+
+	private static List<String> getSchema(SQLiteDatabase db) {
+		Cursor cursor = db.rawQuery("SELECT type, name, tbl_name, sql FROM sqlite_master WHERE name NOT LIKE 'sqlite_%' " +
+				"ORDER BY type, name", null);
+		List<String> schema = new ArrayList<>();
+		while (cursor.moveToNext()) {
+			schema.add(cursor.getString(0) + " " + cursor.getString(1) + " " + cursor.getString(2) + " " + cursor.getString(3));
+		}
+		cursor.close();
+		return schema;
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.io.File;
+import java.util.Random;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoModule;
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the status queries while another thread keeps the writer busy with long insert transactions, as during
+ * ingestion and matching: once on a single connection in rollback journal mode, once through the read-only pool of a
+ * database in WAL mode.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MixedLoadBenchmark {
+
+	private static final int NUMBER_OF_CONTACTS_PER_DAY = 500;
+	private static final int ROWS_PER_WRITE_TRANSACTION = 5000;
+
+	@Rule
+	public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+	private File databaseFile;
+	private SQLiteDatabase db;
+	private Thread writer;
+	private volatile boolean writing;
+
+	@After
+	public void tearDown() throws InterruptedException {
+		writing = false;
+		if (writer != null) {
+			writer.join();
+		}
+		db.close();
+		SQLiteDatabase.deleteDatabase(databaseFile);
+	}
+
+	@Test
+	public void status_query_rollback_journal_under_write_load() {
+		setup(false);
+		final BenchmarkState state = benchmarkRule.getState();
+		while (state.keepRunning()) {
+			queryStatus(db);
+		}
+	}
+
+	@Test
+	public void status_query_wal_read_pool_under_write_load() {
+		setup(true);
+		ReadConnectionPool readConnectionPool = new ReadConnectionPool(databaseFile, StorageProfile.DEFAULT);
+		final BenchmarkState state = benchmarkRule.getState();
+		while (state.keepRunning()) {
+			readConnectionPool.read(db -> {
+				queryStatus(db);
+				return null;
+			});
+		}
+	}
+
+	private void setup(boolean writeAheadLogging) {
+		databaseFile = new File(InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir(),
+				"mixed_load_benchmark.db");
+		SQLiteDatabase.deleteDatabase(databaseFile);
+		db = SQLiteDatabase.openOrCreateDatabase(databaseFile, null);
+		if (writeAheadLogging) {
+			db.enableWriteAheadLogging();
+			StorageProfile.DEFAULT.applyToWriter(db);
+		}
+		for (String statement : DatabaseOpenHelper.recreateStatements()) {
+			db.execSQL(statement);
+		}
+
+		Random random = new Random(42);
+		DayDate today = new DayDate();
+		db.beginTransaction();
+		SQLiteStatement insertContact = db.compileStatement("INSERT INTO " + Contacts.TABLE_NAME + " (" + Contacts.DAY +
+				", " + Contacts.EPHID_HIGH + ", " + Contacts.EPHID_LOW + ") VALUES (?, ?, ?)");
+		for (int day = 0; day < CryptoModule.NUMBER_OF_DAYS_TO_KEEP_DATA; day++) {
+			for (int i = 0; i < NUMBER_OF_CONTACTS_PER_DAY; i++) {
+				insertContact.bindLong(1, today.subtractDays(day).getEpochDay());
+				insertContact.bindLong(2, random.nextLong());
+				insertContact.bindLong(3, random.nextLong());
+				insertContact.executeInsert();
+			}
+		}
+		db.setTransactionSuccessful();
+		db.endTransaction();
+
+		writing = true;
+		writer = new Thread(() -> {
+			SQLiteStatement insertHandshake = db.compileStatement("INSERT INTO " + Handshakes.TABLE_NAME + " (" +
+					Handshakes.TIMESTAMP + ", " + Handshakes.EPHID_HIGH + ", " + Handshakes.EPHID_LOW + ") VALUES (?, ?, ?)");
+			while (writing) {
+				db.beginTransaction();
+				try {
+					for (int i = 0; i < ROWS_PER_WRITE_TRANSACTION; i++) {
+						insertHandshake.bindLong(1, System.currentTimeMillis());
+						insertHandshake.bindLong(2, random.nextLong());
+						insertHandshake.bindLong(3, random.nextLong());
+						insertHandshake.executeInsert();
+					}
+					db.setTransactionSuccessful();
+				} finally {
+					db.endTransaction();
+				}
+				db.delete(Handshakes.TABLE_NAME, null, null);
+			}
+		}, "BenchmarkWriter");
+		writer.start();
+	}
+
+	private static void queryStatus(SQLiteDatabase db) {
+		Cursor contacts = db.query(Contacts.TABLE_NAME, new String[] { Contacts.ID }, null, null, null, null, null);
+		contacts.getCount();
+		contacts.close();
+		Cursor exposed = db.query(Contacts.TABLE_NAME, new String[] { Contacts.ID }, Contacts.ASSOCIATED_KNOWN_CASE + " > 0",
+				null, null, null, null, "1");
+		exposed.moveToFirst();
+		exposed.close();
+	}
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoModule;
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RetentionTaskTest {
+
+	private SQLiteDatabase db;
+	private long now;
+	private DayDate today;
+
+	@Before
+	public void setup() {
+		db = SQLiteDatabase.create(null);
+		new Transaction(db, DatabaseOpenHelper.recreateStatements()).run();
+		now = System.currentTimeMillis();
+		today = new DayDate(now);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testDeletesExpiredRowsInChunks() {
+		DayDate expiredDay = today.subtractDays(CryptoModule.NUMBER_OF_DAYS_TO_KEEP_DATA + 1);
+		int expiredContacts = 3 * RetentionTask.ROWS_PER_CHUNK + 10;
+		db.beginTransaction();
+		for (int i = 0; i < expiredContacts; i++) {
+			insertContact(expiredDay, i);
+		}
+		for (int i = 0; i < 10; i++) {
+			insertContact(today, i);
+		}
+		insertKnownCase(1, expiredDay);
+		insertKnownCase(2, today);
+		ContentValues journalEntry = new ContentValues();
+		journalEntry.put(MatchingJournal.KNOWN_CASE_ID, 1);
+		journalEntry.put(MatchingJournal.PENDING_FROM, expiredDay.getEpochDay());
+		journalEntry.put(MatchingJournal.PENDING_UNTIL, expiredDay.getEpochDay());
+		db.insert(MatchingJournal.TABLE_NAME, null, journalEntry);
+		db.setTransactionSuccessful();
+		db.endTransaction();
+
+		int chunks = runToCompletion(new RetentionTask(db, null, false, now));
+
+		assertTrue(chunks > 3);
+		assertEquals(10, DatabaseUtils.queryNumEntries(db, Contacts.TABLE_NAME));
+		assertEquals(1, DatabaseUtils.queryNumEntries(db, KnownCases.TABLE_NAME));
+		assertEquals(0, DatabaseUtils.queryNumEntries(db, MatchingJournal.TABLE_NAME));
+	}
+
+	@Test
+	public void testDownsamplesConvertedCalibrationHandshakes() {
+		long oldEpoch = today.subtractDays(RetentionTask.RAW_HANDSHAKE_DAYS_TO_KEEP + 1).getStartOfDayTimestamp();
+		long recentEpoch = today.getStartOfDayTimestamp();
+		byte[] ephId = new byte[CryptoModule.KEY_LENGTH];
+		db.beginTransaction();
+		for (int i = 0; i < 4; i++) {
+			insertHandshake(oldEpoch + i * 1000, ephId, -60 - 10 * i, 1 + i);
+		}
+		insertHandshake(oldEpoch + CryptoModule.MILLISECONDS_PER_EPOCH, ephId, -50, 0);
+		insertHandshake(recentEpoch, ephId, -50, 0);
+		ContentValues watermark = new ContentValues();
+		watermark.put(Metadata.KEY, Metadata.KEY_CONTACTS_WATERMARK);
+		watermark.put(Metadata.VALUE, now);
+		db.insert(Metadata.TABLE_NAME, null, watermark);
+		db.setTransactionSuccessful();
+		db.endTransaction();
+
+		runToCompletion(new RetentionTask(db, null, true, now));
+
+		assertEquals(1, DatabaseUtils.queryNumEntries(db, Handshakes.TABLE_NAME));
+		assertEquals(2, DatabaseUtils.queryNumEntries(db, HandshakeAggregates.TABLE_NAME));
+		Cursor cursor = db.query(HandshakeAggregates.TABLE_NAME, HandshakeAggregates.PROJECTION, null, null, null, null,
+				HandshakeAggregates.EPOCH);
+		assertTrue(cursor.moveToFirst());
+		assertEquals(oldEpoch, cursor.getLong(cursor.getColumnIndexOrThrow(HandshakeAggregates.EPOCH)));
+		assertEquals(4, cursor.getInt(cursor.getColumnIndexOrThrow(HandshakeAggregates.COUNT)));
+		assertEquals(oldEpoch, cursor.getLong(cursor.getColumnIndexOrThrow(HandshakeAggregates.FIRST_SEEN)));
+		assertEquals(oldEpoch + 3000, cursor.getLong(cursor.getColumnIndexOrThrow(HandshakeAggregates.LAST_SEEN)));
+		assertEquals(-90, cursor.getInt(cursor.getColumnIndexOrThrow(HandshakeAggregates.RSSI_MIN)));
+		assertEquals(-60, cursor.getInt(cursor.getColumnIndexOrThrow(HandshakeAggregates.RSSI_MAX)));
+		assertEquals(-75.0, cursor.getDouble(cursor.getColumnIndexOrThrow(HandshakeAggregates.RSSI_MEAN)), 0.0001);
+		assertEquals(2.5, cursor.getDouble(cursor.getColumnIndexOrThrow(HandshakeAggregates.TX_POWER_LEVEL_MEAN)), 0.0001);
+		cursor.close();
+	}
+
+	@Test
+	public void testDownsamplingMergesIntoExistingAggregates() {
+		long oldEpoch = today.subtractDays(RetentionTask.RAW_HANDSHAKE_DAYS_TO_KEEP + 1).getStartOfDayTimestamp();
+		byte[] ephId = new byte[CryptoModule.KEY_LENGTH];
+		db.beginTransaction();
+		// written by the aggregating ingestion before switching to raw handshakes
+		ContentValues aggregate = new ContentValues();
+		aggregate.put(HandshakeAggregates.EPOCH, oldEpoch);
+		aggregate.put(HandshakeAggregates.EPHID_HIGH, 0);
+		aggregate.put(HandshakeAggregates.EPHID_LOW, 0);
+		aggregate.put(HandshakeAggregates.COUNT, 2);
+		aggregate.put(HandshakeAggregates.FIRST_SEEN, oldEpoch + 5000);
+		aggregate.put(HandshakeAggregates.LAST_SEEN, oldEpoch + 6000);
+		aggregate.put(HandshakeAggregates.RSSI_MIN, -40);
+		aggregate.put(HandshakeAggregates.RSSI_MAX, -40);
+		aggregate.put(HandshakeAggregates.RSSI_MEAN, -40.0);
+		aggregate.put(HandshakeAggregates.TX_POWER_LEVEL_MIN, 10);
+		aggregate.put(HandshakeAggregates.TX_POWER_LEVEL_MAX, 10);
+		aggregate.put(HandshakeAggregates.TX_POWER_LEVEL_MEAN, 10.0);
+		db.insert(HandshakeAggregates.TABLE_NAME, null, aggregate);
+		insertHandshake(oldEpoch + 1000, ephId, -60, 0);
+		insertHandshake(oldEpoch + 2000, ephId, -80, 4);
+		ContentValues watermark = new ContentValues();
+		watermark.put(Metadata.KEY, Metadata.KEY_CONTACTS_WATERMARK);
+		watermark.put(Metadata.VALUE, now);
+		db.insert(Metadata.TABLE_NAME, null, watermark);
+		db.setTransactionSuccessful();
+		db.endTransaction();
+
+		runToCompletion(new RetentionTask(db, null, true, now));
+
+		assertEquals(0, DatabaseUtils.queryNumEntries(db, Handshakes.TABLE_NAME));
+		assertEquals(1, DatabaseUtils.queryNumEntries(db, HandshakeAggregates.TABLE_NAME));
+		Cursor cursor = db.query(HandshakeAggregates.TABLE_NAME, HandshakeAggregates.PROJECTION, null, null, null, null,
+				null);
+		assertTrue(cursor.moveToFirst());
+		assertEquals(4, cursor.getInt(cursor.getColumnIndexOrThrow(HandshakeAggregates.COUNT)));
+		assertEquals(oldEpoch + 1000, cursor.getLong(cursor.getColumnIndexOrThrow(HandshakeAggregates.FIRST_SEEN)));
+		assertEquals(oldEpoch + 6000, cursor.getLong(cursor.getColumnIndexOrThrow(HandshakeAggregates.LAST_SEEN)));
+		assertEquals(-80, cursor.getInt(cursor.getColumnIndexOrThrow(HandshakeAggregates.RSSI_MIN)));
+		assertEquals(-40, cursor.getInt(cursor.getColumnIndexOrThrow(HandshakeAggregates.RSSI_MAX)));
+		assertEquals(-55.0, cursor.getDouble(cursor.getColumnIndexOrThrow(HandshakeAggregates.RSSI_MEAN)), 0.0001);
+		assertEquals(0, cursor.getInt(cursor.getColumnIndexOrThrow(HandshakeAggregates.TX_POWER_LEVEL_MIN)));
+		assertEquals(6.0, cursor.getDouble(cursor.getColumnIndexOrThrow(HandshakeAggregates.TX_POWER_LEVEL_MEAN)),
+				0.0001);
+		cursor.close();
+	}
+
+	@Test
+	public void testKeepsHandshakesNotYetConverted() {
+		long oldEpoch = today.subtractDays(RetentionTask.RAW_HANDSHAKE_DAYS_TO_KEEP + 1).getStartOfDayTimestamp();
+		insertHandshake(oldEpoch, new byte[CryptoModule.KEY_LENGTH], -50, 0);
+
+		runToCompletion(new RetentionTask(db, null, true, now));
+
+		assertEquals(1, DatabaseUtils.queryNumEntries(db, Handshakes.TABLE_NAME));
+		assertEquals(0, DatabaseUtils.queryNumEntries(db, HandshakeAggregates.TABLE_NAME));
+	}
+
+	private static int runToCompletion(RetentionTask task) {
+		int chunks = 1;
+		while (task.runChunk()) {
+			chunks++;
+		}
+		return chunks;
+	}
+
+	private void insertContact(DayDate day, int value) {
+		ContentValues values = new ContentValues();
+		values.put(Contacts.DAY, day.getEpochDay());
+		values.put(Contacts.EPHID_HIGH, value);
+		values.put(Contacts.EPHID_LOW, 0);
+		db.insert(Contacts.TABLE_NAME, null, values);
+	}
+
+	private void insertKnownCase(long id, DayDate day) {
+		ContentValues values = new ContentValues();
+		values.put(KnownCases.ID, id);
+		values.put(KnownCases.ONSET, day.getEpochDay());
+		values.put(KnownCases.BUCKET_DAY, day.getEpochDay());
+		values.put(KnownCases.KEY, new byte[] { (byte) id });
+		db.insert(KnownCases.TABLE_NAME, null, values);
+	}
+
+	private void insertHandshake(long timestamp, byte[] ephId, int rssi, int txPowerLevel) {
+		ContentValues values = new ContentValues();
+		values.put(Handshakes.TIMESTAMP, timestamp);
+		values.put(Handshakes.EPHID_HIGH, EphId.readLong(ephId, 0));
+		values.put(Handshakes.EPHID_LOW, EphId.readLong(ephId, 8));
+		values.put(Handshakes.RSSI, rssi);
+		values.put(Handshakes.TX_POWER_LEVEL, txPowerLevel);
+		db.insert(Handshakes.TABLE_NAME, null, values);
+	}
+
+}
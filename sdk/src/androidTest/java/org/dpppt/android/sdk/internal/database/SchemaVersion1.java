@@ -0,0 +1,61 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * The tables of the first released database version, as a starting point for the migrations. The table specs describe
+ * the latest version, so the statements and column names are kept here as they were.
+ */
+final class SchemaVersion1 {
+
+	static final String CREATE_KNOWN_CASES = "CREATE TABLE IF NOT EXISTS known_cases (id INTEGER PRIMARY KEY NOT NULL, " +
+			"onset INTEGER NOT NULL,day INTEGER NOT NULL, key TEXT NOT NULL, CONSTRAINT no_duplicates UNIQUE (day, key) )";
+	static final String CREATE_HANDSHAKES = "CREATE TABLE IF NOT EXISTS handshakes (id INTEGER PRIMARY KEY AUTOINCREMENT " +
+			"NOT NULL, timestamp INTEGER NOT NULL, ephid BLOB NOT NULL, tx_power_level INTEGER, rssi INTEGER)";
+	static final String CREATE_CONTACTS = "CREATE TABLE IF NOT EXISTS contacts (id INTEGER PRIMARY KEY AUTOINCREMENT " +
+			"NOT NULL, date INTEGER NOT NULL, ephid BLOB NOT NULL, associated_known_case INTEGER, CONSTRAINT no_duplicates " +
+			"UNIQUE (date, ephid), FOREIGN KEY (associated_known_case) REFERENCES known_cases (id) ON DELETE SET NULL)";
+
+	private SchemaVersion1() { }
+
+	static SQLiteDatabase createDatabase() {
+		SQLiteDatabase db = SQLiteDatabase.create(null);
+		db.execSQL(CREATE_KNOWN_CASES);
+		db.execSQL(CREATE_HANDSHAKES);
+		db.execSQL(CREATE_CONTACTS);
+		return db;
+	}
+
+	static void insertKnownCase(SQLiteDatabase db, long id, long onset, long day, String key) {
+		ContentValues values = new ContentValues();
+		values.put("id", id);
+		values.put("onset", onset);
+		values.put("day", day);
+		values.put("key", key);
+		db.insertOrThrow("known_cases", null, values);
+	}
+
+	static void insertHandshake(SQLiteDatabase db, long timestamp, byte[] ephId, int txPowerLevel, int rssi) {
+		ContentValues values = new ContentValues();
+		values.put("timestamp", timestamp);
+		values.put("ephid", ephId);
+		values.put("tx_power_level", txPowerLevel);
+		values.put("rssi", rssi);
+		db.insertOrThrow("handshakes", null, values);
+	}
+
+	static void insertContact(SQLiteDatabase db, long date, byte[] ephId, Long associatedKnownCase) {
+		ContentValues values = new ContentValues();
+		values.put("date", date);
+		values.put("ephid", ephId);
+		values.put("associated_known_case", associatedKnownCase);
+		db.insertOrThrow("contacts", null, values);
+	}
+
+}
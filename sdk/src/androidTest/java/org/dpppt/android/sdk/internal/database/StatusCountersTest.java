@@ -0,0 +1,96 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoModule;
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class StatusCountersTest {
+
+	private SQLiteDatabase db;
+
+	@Before
+	public void setup() {
+		db = SQLiteDatabase.create(null);
+		new Transaction(db, DatabaseOpenHelper.recreateStatements()).run();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testCountersFollowInsertsMatchesAndDeletes() {
+		assertCounters(0, 0);
+
+		DayDate today = new DayDate();
+		for (int i = 0; i < 10; i++) {
+			insertContact(today.subtractDays(i % 2), i);
+		}
+		// duplicates are ignored and must not be counted
+		insertContact(today, 0);
+		assertCounters(10, 0);
+
+		ContentValues match = new ContentValues();
+		match.put(Contacts.ASSOCIATED_KNOWN_CASE, 7);
+		db.update(Contacts.TABLE_NAME, match, Contacts.ID + " IN (1, 2, 3)", null);
+		// matching an exposed contact again does not count it twice
+		match.put(Contacts.ASSOCIATED_KNOWN_CASE, 8);
+		db.update(Contacts.TABLE_NAME, match, Contacts.ID + " = 1", null);
+		assertCounters(10, 3);
+
+		db.delete(Contacts.TABLE_NAME, Contacts.DAY + " = ?", new String[] { "" + today.subtractDays(1).getEpochDay() });
+		assertCounters(5, 2);
+	}
+
+	@Test
+	public void testCountersAreRolledBackWithTheirTransaction() {
+		db.beginTransaction();
+		insertContact(new DayDate(), 1);
+		db.endTransaction();
+		assertCounters(0, 0);
+	}
+
+	@Test
+	public void testMigrationInitializesCounters() {
+		SQLiteDatabase migrated = SchemaVersion1.createDatabase();
+		SchemaVersion1.insertContact(migrated, 1234L, new byte[CryptoModule.KEY_LENGTH], 1L);
+
+		Migrations.migrate(migrated, 1, Migrations.LATEST_VERSION);
+
+		assertEquals(1, Database.getMetadata(migrated, Metadata.KEY_CONTACT_COUNT, -1));
+		assertEquals(1, Database.getMetadata(migrated, Metadata.KEY_EXPOSED_CONTACT_COUNT, -1));
+		migrated.close();
+	}
+
+	private void insertContact(DayDate day, int value) {
+		ContentValues values = new ContentValues();
+		values.put(Contacts.DAY, day.getEpochDay());
+		values.put(Contacts.EPHID_HIGH, value);
+		values.put(Contacts.EPHID_LOW, 0);
+		db.insertWithOnConflict(Contacts.TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+	}
+
+	private void assertCounters(long contacts, long exposedContacts) {
+		assertEquals(DatabaseUtils.queryNumEntries(db, Contacts.TABLE_NAME), contacts);
+		assertEquals(contacts, Database.getMetadata(db, Metadata.KEY_CONTACT_COUNT, -1));
+		assertEquals(exposedContacts, Database.getMetadata(db, Metadata.KEY_EXPOSED_CONTACT_COUNT, -1));
+	}
+
+}
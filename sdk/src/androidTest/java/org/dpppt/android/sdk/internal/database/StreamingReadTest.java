@@ -0,0 +1,125 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.CancellationSignal;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoModule;
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.database.models.Contact;
+import org.dpppt.android.sdk.internal.util.DayDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class StreamingReadTest {
+
+	private static final int NUMBER_OF_CONTACTS = 50;
+
+	private SQLiteDatabase db;
+	private DayDate today;
+
+	@Before
+	public void setup() {
+		db = SQLiteDatabase.create(null);
+		new Transaction(db, DatabaseOpenHelper.recreateStatements()).run();
+		today = new DayDate();
+		for (int i = 0; i < NUMBER_OF_CONTACTS; i++) {
+			ContentValues values = new ContentValues();
+			values.put(Contacts.DAY, today.subtractDays(i % 5).getEpochDay());
+			values.put(Contacts.EPHID_HIGH, EphId.readLong(ephId(i), 0));
+			values.put(Contacts.EPHID_LOW, EphId.readLong(ephId(i), 8));
+			values.put(Contacts.ASSOCIATED_KNOWN_CASE, i % 7);
+			db.insert(Contacts.TABLE_NAME, null, values);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testVisitsAllRowsWithReusedRow() {
+		List<Contact> contacts = new ArrayList<>();
+		ContactRow[] firstRow = new ContactRow[1];
+		boolean completed = Database.visitContacts(db, null, null, row -> {
+			if (firstRow[0] == null) {
+				firstRow[0] = row;
+			}
+			assertSame(firstRow[0], row);
+			contacts.add(row.toContact());
+			return true;
+		});
+
+		assertTrue(completed);
+		assertEquals(NUMBER_OF_CONTACTS, contacts.size());
+		for (int i = 0; i < NUMBER_OF_CONTACTS; i++) {
+			Contact contact = contacts.get(i);
+			assertEquals(i + 1, contact.getId());
+			assertEquals(today.subtractDays(i % 5), contact.getDate());
+			assertArrayEquals(ephId(i), contact.getEphId().getData());
+			assertEquals(i % 7, contact.getAssociatedKnownCase());
+		}
+	}
+
+	@Test
+	public void testFirstDayFilter() {
+		int[] count = new int[1];
+		assertTrue(Database.visitContacts(db, today.subtractDays(1), null, row -> {
+			assertTrue(row.getDateTimestamp() >= today.subtractDays(1).getStartOfDayTimestamp());
+			count[0]++;
+			return true;
+		}));
+		assertEquals(2 * NUMBER_OF_CONTACTS / 5, count[0]);
+	}
+
+	@Test
+	public void testVisitorStopsRead() {
+		int[] count = new int[1];
+		assertFalse(Database.visitContacts(db, null, null, row -> ++count[0] < 10));
+		assertEquals(10, count[0]);
+	}
+
+	@Test
+	public void testCancellation() {
+		CancellationSignal cancellationSignal = new CancellationSignal();
+		int[] count = new int[1];
+		assertFalse(Database.visitContacts(db, null, cancellationSignal, row -> {
+			if (++count[0] == 5) {
+				cancellationSignal.cancel();
+			}
+			return true;
+		}));
+		assertEquals(5, count[0]);
+
+		count[0] = 0;
+		assertFalse(Database.visitContacts(db, null, cancellationSignal, row -> ++count[0] > 0));
+		assertEquals(0, count[0]);
+	}
+
+	private static byte[] ephId(int value) {
+		byte[] data = new byte[CryptoModule.KEY_LENGTH];
+		data[0] = (byte) value;
+		data[15] = (byte) ~value;
+		return data;
+	}
+
+}
@@ -6,7 +6,8 @@ import java.io.OutputStream;
 
 import org.dpppt.android.sdk.internal.AppConfigManager;
 import org.dpppt.android.sdk.internal.database.Database;
-import org.dpppt.android.sdk.internal.database.LogDatabaseHelper;
+import org.dpppt.android.sdk.internal.database.SnapshotBundle;
+import org.dpppt.android.sdk.internal.logger.Logger;
 
 public class DP3TCalibrationHelper {
 
@@ -22,12 +23,13 @@ public class DP3TCalibrationHelper {
 		AppConfigManager.getInstance(context).setCalibrationTestDeviceName(null);
 	}
 
+	/**
+	 * Writes a zip file with consistent snapshots of the tracing database and the log database to the target.
+	 */
 	public static void exportDb(Context context, OutputStream targetOut, Runnable onExportedListener) {
-		new Thread(() -> {
-			LogDatabaseHelper.copyLogDatabase(context);
-			Database db = new Database(context);
-			db.exportTo(context, targetOut, response -> onExportedListener.run());
-		}).start();
+		SnapshotBundle bundle = new SnapshotBundle();
+		Logger.addToSnapshot(bundle);
+		new Database(context).exportTo(context, bundle, targetOut, response -> onExportedListener.run());
 	}
 
 	public static void start(Context context, boolean advertise, boolean receive) {
@@ -12,10 +12,13 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.provider.BaseColumns;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.dpppt.android.sdk.BuildConfig;
+import org.dpppt.android.sdk.internal.database.DatabaseSnapshot;
 
 public class LogDatabase {
 
@@ -109,6 +112,28 @@ public class LogDatabase {
 		return tags;
 	}
 
+	/**
+	 * Writes a consistent copy of the log into the target file.
+	 *
+	 * @return the snapshot method used
+	 */
+	String snapshotTo(File target) throws IOException {
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		DatabaseSnapshot.deleteIfExists(target);
+		if (DatabaseSnapshot.supportsVacuumInto(db)) {
+			DatabaseSnapshot.vacuumInto(db, target);
+			return DatabaseSnapshot.METHOD_VACUUM_INTO;
+		}
+		// the exclusive transaction keeps log writes out while the files are copied
+		db.beginTransaction();
+		try {
+			DatabaseSnapshot.copyFiles(new File(db.getPath()), target);
+		} finally {
+			db.endTransaction();
+		}
+		return DatabaseSnapshot.METHOD_FILE_COPY;
+	}
+
 	void clear() {
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
 		db.execSQL("delete from " + LogSpec.TABLE_NAME);
@@ -136,7 +161,7 @@ public class LogDatabase {
 	public static class LogDatabaseHelper extends SQLiteOpenHelper {
 
 		public static final int DATABASE_VERSION = 2;
-		private static final String DATABASE_NAME = "dp3t_sdk_log.db";
+		static final String DATABASE_NAME = "dp3t_sdk_log.db";
 
 		private static final String SQL_CREATE_ENTRIES =
 				"CREATE TABLE " + LogSpec.TABLE_NAME + " (" +
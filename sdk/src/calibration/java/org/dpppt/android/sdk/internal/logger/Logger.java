@@ -13,6 +13,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.dpppt.android.sdk.internal.database.SnapshotBundle;
+
 public class Logger {
 
 	private static Logger instance = null;
@@ -73,6 +75,16 @@ public class Logger {
 		}
 	}
 
+	/**
+	 * Adds a snapshot of the log database to the bundle, if logging was initialized.
+	 */
+	public static void addToSnapshot(SnapshotBundle bundle) {
+		if (instance != null) {
+			bundle.add(LogDatabase.LogDatabaseHelper.DATABASE_NAME, LogDatabase.LogDatabaseHelper.DATABASE_VERSION,
+					instance.database::snapshotTo);
+		}
+	}
+
 	public static List<String> getTags() {
 		if (instance != null) {
 			return instance.database.getTags();
@@ -30,6 +30,9 @@ import org.dpppt.android.sdk.internal.backend.models.ExposeeAuthData;
 import org.dpppt.android.sdk.internal.backend.models.ExposeeRequest;
 import org.dpppt.android.sdk.internal.crypto.CryptoModule;
 import org.dpppt.android.sdk.internal.database.Database;
+import org.dpppt.android.sdk.internal.database.DatabaseExecutor;
+import org.dpppt.android.sdk.internal.database.DatabaseStatistics;
+import org.dpppt.android.sdk.internal.database.StorageProfile;
 import org.dpppt.android.sdk.internal.logger.Logger;
 import org.dpppt.android.sdk.internal.util.DayDate;
 import org.dpppt.android.sdk.internal.util.ProcessUtil;
@@ -39,6 +42,17 @@ public class DP3T {
 	private static final String TAG = "DP3T Interface";
 
 	public static final String UPDATE_INTENT_ACTION = "org.dpppt.android.sdk.UPDATE_ACTION";
+	/** Number of handshakes stored since the last update broadcast (int). */
+	public static final String UPDATE_EXTRA_NEW_HANDSHAKES = "org.dpppt.android.sdk.UPDATE_EXTRA_NEW_HANDSHAKES";
+	/** Number of contacts matched with a known case since the last update broadcast (int). */
+	public static final String UPDATE_EXTRA_NEW_MATCHES = "org.dpppt.android.sdk.UPDATE_EXTRA_NEW_MATCHES";
+	/** Whether a sync with the backend finished since the last update broadcast (boolean). */
+	public static final String UPDATE_EXTRA_SYNC_FINISHED = "org.dpppt.android.sdk.UPDATE_EXTRA_SYNC_FINISHED";
+	/** Whether the error states may have changed since the last update broadcast (boolean). */
+	public static final String UPDATE_EXTRA_ERROR_STATE_CHANGED = "org.dpppt.android.sdk.UPDATE_EXTRA_ERROR_STATE_CHANGED";
+	/** Whether tracing was started or stopped since the last update broadcast (boolean). */
+	public static final String UPDATE_EXTRA_TRACING_STATE_CHANGED =
+			"org.dpppt.android.sdk.UPDATE_EXTRA_TRACING_STATE_CHANGED";
 
 	private static String appId;
 
@@ -69,6 +83,7 @@ public class DP3T {
 	}
 
 	private static void executeInit(Context context) {
+		DatabaseExecutor.getInstance().setErrorHandler((lane, e) -> Logger.e(TAG, e));
 		CryptoModule.getInstance(context).init();
 
 		AppConfigManager appConfigManager = AppConfigManager.getInstance(context);
@@ -103,7 +118,7 @@ public class DP3T {
 		intent.putExtra(TracingService.EXTRA_SCAN_DURATION, scanDuration);
 		ContextCompat.startForegroundService(context, intent);
 		SyncWorker.startSyncWorker(context);
-		BroadcastHelper.sendUpdateBroadcast(context);
+		BroadcastHelper.sendTracingStateChangedBroadcast(context);
 	}
 
 	public static boolean isStarted(Context context) {
@@ -116,10 +131,16 @@ public class DP3T {
 		checkInit();
 		try {
 			SyncWorker.doSync(context);
-			AppConfigManager.getInstance(context).setLastSyncNetworkSuccess(true);
+			setLastSyncNetworkSuccess(context, true);
 		} catch (IOException | ResponseException e) {
 			e.printStackTrace();
-			AppConfigManager.getInstance(context).setLastSyncNetworkSuccess(false);
+			setLastSyncNetworkSuccess(context, false);
+		}
+	}
+
+	private static void setLastSyncNetworkSuccess(Context context, boolean success) {
+		if (AppConfigManager.getInstance(context).setLastSyncNetworkSuccess(success)) {
+			BroadcastHelper.sendErrorStateChangedBroadcast(context);
 		}
 	}
 
@@ -129,7 +150,7 @@ public class DP3T {
 		AppConfigManager appConfigManager = AppConfigManager.getInstance(context);
 		ArrayList<TracingStatus.ErrorState> errorStates = checkTracingStatus(context);
 		return new TracingStatus(
-				database.getContacts().size(),
+				database.getContactCount(),
 				appConfigManager.isAdvertisingEnabled(),
 				appConfigManager.isReceivingEnabled(),
 				database.wasContactExposed(),
@@ -208,7 +229,29 @@ public class DP3T {
 		Intent intent = new Intent(context, TracingService.class).setAction(TracingService.ACTION_STOP);
 		context.startService(intent);
 		SyncWorker.stopSyncWorker(context);
-		BroadcastHelper.sendUpdateBroadcast(context);
+		BroadcastHelper.sendTracingStateChangedBroadcast(context);
+	}
+
+	/**
+	 * Sets the window in which changes are merged into a single update broadcast.
+	 */
+	public static void setUpdateBroadcastWindow(Context context, long windowMillis) {
+		AppConfigManager.getInstance(context).setUpdateBroadcastWindow(windowMillis);
+	}
+
+	/**
+	 * Sets the connection settings of the tracing database. They take effect the next time the process opens it.
+	 */
+	public static void setStorageProfile(Context context, StorageProfile storageProfile) {
+		AppConfigManager.getInstance(context).setStorageProfile(storageProfile);
+	}
+
+	/**
+	 * Returns the size of the tracing database and its number of rows per table. Must not be called on the main thread.
+	 */
+	public static DatabaseStatistics getDatabaseStatistics(Context context) {
+		checkInit();
+		return new Database(context).getStatistics();
 	}
 
 	public static IntentFilter getUpdateIntentFilter() {
@@ -15,6 +15,7 @@ import org.dpppt.android.sdk.internal.backend.CallbackListener;
 import org.dpppt.android.sdk.internal.backend.DiscoveryRepository;
 import org.dpppt.android.sdk.internal.backend.models.ApplicationInfo;
 import org.dpppt.android.sdk.internal.backend.models.ApplicationsList;
+import org.dpppt.android.sdk.internal.database.StorageProfile;
 import org.dpppt.android.sdk.internal.util.Json;
 
 public class AppConfigManager {
@@ -32,6 +33,7 @@ public class AppConfigManager {
 
 	public static final long DEFAULT_SCAN_INTERVAL = 2 * 60 * 1000L;
 	public static final long DEFAULT_SCAN_DURATION = 30 * 1000L;
+	public static final long DEFAULT_UPDATE_BROADCAST_WINDOW = 1000L;
 	private static final int DEFAULT_BLUETOOTH_POWER_LEVEL = BluetoothTxPowerLevel.ADVERTISE_TX_POWER_LOW.getValue();
 	private static final int DEFAULT_BLUETOOTH_ADVERTISE_MODE = BluetoothAdvertiseMode.ADVERTISE_MODE_LOW_POWER.getValue();
 
@@ -47,6 +49,11 @@ public class AppConfigManager {
 	private static final String PREF_SCAN_DURATION = "scanDuration";
 	private static final String PREF_ADVERTISEMENT_POWER_LEVEL = "advertisementPowerLevel";
 	private static final String PREF_ADVERTISEMENT_MODE = "advertisementMode";
+	private static final String PREF_UPDATE_BROADCAST_WINDOW = "updateBroadcastWindow";
+	private static final String PREF_STORAGE_SYNCHRONOUS = "storageSynchronous";
+	private static final String PREF_STORAGE_CACHE_SIZE = "storageCacheSize";
+	private static final String PREF_STORAGE_MMAP_SIZE = "storageMmapSize";
+	private static final String PREF_STORAGE_READ_CONNECTIONS = "storageReadConnections";
 
 	private String appId;
 	private boolean useDiscovery;
@@ -130,8 +137,13 @@ public class AppConfigManager {
 		return sharedPrefs.getLong(PREF_LAST_SYNC_DATE, 0);
 	}
 
-	public void setLastSyncNetworkSuccess(boolean success) {
+	/**
+	 * @return whether the value changed
+	 */
+	public boolean setLastSyncNetworkSuccess(boolean success) {
+		boolean changed = getLastSyncNetworkSuccess() != success;
 		sharedPrefs.edit().putBoolean(PREF_LAST_SYNC_NET_SUCCESS, success).apply();
+		return changed;
 	}
 
 	public boolean getLastSyncNetworkSuccess() {
@@ -184,6 +196,37 @@ public class AppConfigManager {
 		return sharedPrefs.getLong(PREF_SCAN_INTERVAL, DEFAULT_SCAN_INTERVAL);
 	}
 
+	public void setUpdateBroadcastWindow(long window) {
+		sharedPrefs.edit().putLong(PREF_UPDATE_BROADCAST_WINDOW, window).apply();
+	}
+
+	public long getUpdateBroadcastWindow() {
+		return sharedPrefs.getLong(PREF_UPDATE_BROADCAST_WINDOW, DEFAULT_UPDATE_BROADCAST_WINDOW);
+	}
+
+	public void setStorageProfile(StorageProfile storageProfile) {
+		sharedPrefs.edit()
+				.putString(PREF_STORAGE_SYNCHRONOUS, storageProfile.getSynchronous().name())
+				.putInt(PREF_STORAGE_CACHE_SIZE, storageProfile.getCacheSizeKiB())
+				.putLong(PREF_STORAGE_MMAP_SIZE, storageProfile.getMmapSize())
+				.putInt(PREF_STORAGE_READ_CONNECTIONS, storageProfile.getReadConnections())
+				.apply();
+	}
+
+	public StorageProfile getStorageProfile() {
+		StorageProfile defaultProfile = StorageProfile.DEFAULT;
+		try {
+			return new StorageProfile(
+					StorageProfile.Synchronous.valueOf(
+							sharedPrefs.getString(PREF_STORAGE_SYNCHRONOUS, defaultProfile.getSynchronous().name())),
+					sharedPrefs.getInt(PREF_STORAGE_CACHE_SIZE, defaultProfile.getCacheSizeKiB()),
+					sharedPrefs.getLong(PREF_STORAGE_MMAP_SIZE, defaultProfile.getMmapSize()),
+					sharedPrefs.getInt(PREF_STORAGE_READ_CONNECTIONS, defaultProfile.getReadConnections()));
+		} catch (IllegalArgumentException e) {
+			return defaultProfile;
+		}
+	}
+
 	public void setBluetoothPowerLevel(BluetoothTxPowerLevel powerLevel) {
 		sharedPrefs.edit().putInt(PREF_ADVERTISEMENT_POWER_LEVEL, powerLevel.ordinal()).apply();
 	}
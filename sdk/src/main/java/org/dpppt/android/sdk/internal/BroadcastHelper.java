@@ -8,14 +8,92 @@ package org.dpppt.android.sdk.internal;
 
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 
 import org.dpppt.android.sdk.DP3T;
 
+/**
+ * Dispatches the update broadcast. Changes reported within the window configured in
+ * {@link AppConfigManager#getUpdateBroadcastWindow()} are merged into a single broadcast whose extras describe what
+ * changed, see {@link DP3T#UPDATE_EXTRA_NEW_HANDSHAKES} and the following.
+ */
 public class BroadcastHelper {
 
-	public static void sendUpdateBroadcast(Context context) {
+	private static Handler handler;
+
+	// pending changes, guarded by BroadcastHelper.class
+	private static boolean dispatchScheduled = false;
+	private static int newHandshakes = 0;
+	private static int newMatches = 0;
+	private static boolean syncFinished = false;
+	private static boolean errorStateChanged = false;
+	private static boolean tracingStateChanged = false;
+
+	public static void sendTracingStateChangedBroadcast(Context context) {
+		synchronized (BroadcastHelper.class) {
+			tracingStateChanged = true;
+			scheduleDispatch(context);
+		}
+	}
+
+	public static void sendNewHandshakesBroadcast(Context context, int count) {
+		synchronized (BroadcastHelper.class) {
+			newHandshakes += count;
+			scheduleDispatch(context);
+		}
+	}
+
+	public static void sendNewMatchesBroadcast(Context context, int count) {
+		synchronized (BroadcastHelper.class) {
+			newMatches += count;
+			scheduleDispatch(context);
+		}
+	}
+
+	public static void sendSyncFinishedBroadcast(Context context) {
+		synchronized (BroadcastHelper.class) {
+			syncFinished = true;
+			scheduleDispatch(context);
+		}
+	}
+
+	public static void sendErrorStateChangedBroadcast(Context context) {
+		synchronized (BroadcastHelper.class) {
+			errorStateChanged = true;
+			scheduleDispatch(context);
+		}
+	}
+
+	private static void scheduleDispatch(Context context) {
+		if (dispatchScheduled) {
+			return;
+		}
+		dispatchScheduled = true;
+		if (handler == null) {
+			handler = new Handler(Looper.getMainLooper());
+		}
+		Context applicationContext = context.getApplicationContext();
+		long window = AppConfigManager.getInstance(context).getUpdateBroadcastWindow();
+		handler.postDelayed(() -> dispatch(applicationContext), window);
+	}
+
+	private static void dispatch(Context context) {
 		Intent intent = new Intent();
 		intent.setAction(DP3T.UPDATE_INTENT_ACTION);
+		synchronized (BroadcastHelper.class) {
+			intent.putExtra(DP3T.UPDATE_EXTRA_NEW_HANDSHAKES, newHandshakes);
+			intent.putExtra(DP3T.UPDATE_EXTRA_NEW_MATCHES, newMatches);
+			intent.putExtra(DP3T.UPDATE_EXTRA_SYNC_FINISHED, syncFinished);
+			intent.putExtra(DP3T.UPDATE_EXTRA_ERROR_STATE_CHANGED, errorStateChanged);
+			intent.putExtra(DP3T.UPDATE_EXTRA_TRACING_STATE_CHANGED, tracingStateChanged);
+			newHandshakes = 0;
+			newMatches = 0;
+			syncFinished = false;
+			errorStateChanged = false;
+			tracingStateChanged = false;
+			dispatchScheduled = false;
+		}
 		context.sendBroadcast(intent);
 	}
 
@@ -0,0 +1,52 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal;
+
+import android.content.Context;
+import android.os.Build;
+import androidx.annotation.NonNull;
+import androidx.work.*;
+
+import org.dpppt.android.sdk.internal.database.Database;
+
+/**
+ * Runs database maintenance too expensive for the regular sync, currently the one-time rebuild of databases created
+ * before incremental vacuum was enabled. Only runs while the device is charging and, where supported, idle.
+ */
+public class MaintenanceWorker extends Worker {
+
+	private static final String TAG = "org.dpppt.android.sdk.internal.MaintenanceWorker";
+
+	public static void scheduleIfNeeded(Context context) {
+		if (new Database(context).isIncrementalVacuumEnabled()) {
+			return;
+		}
+		Constraints.Builder constraints = new Constraints.Builder()
+				.setRequiresCharging(true);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+			constraints.setRequiresDeviceIdle(true);
+		}
+
+		OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(MaintenanceWorker.class)
+				.setConstraints(constraints.build())
+				.build();
+
+		WorkManager workManager = WorkManager.getInstance(context);
+		workManager.enqueueUniqueWork(TAG, ExistingWorkPolicy.KEEP, workRequest);
+	}
+
+	public MaintenanceWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+		super(context, workerParams);
+	}
+
+	@NonNull
+	@Override
+	public Result doWork() {
+		new Database(getApplicationContext()).enableIncrementalVacuum();
+		return Result.success();
+	}
+
+}
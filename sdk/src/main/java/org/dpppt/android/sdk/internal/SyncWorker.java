@@ -10,21 +10,30 @@ import androidx.annotation.NonNull;
 import androidx.work.*;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.dpppt.android.sdk.internal.backend.BackendRepository;
+import org.dpppt.android.sdk.internal.backend.ExposedListReader;
 import org.dpppt.android.sdk.internal.backend.ResponseException;
 import org.dpppt.android.sdk.internal.backend.models.ApplicationInfo;
-import org.dpppt.android.sdk.internal.backend.models.CachedResult;
-import org.dpppt.android.sdk.internal.backend.models.ExposedList;
-import org.dpppt.android.sdk.internal.backend.models.Exposee;
 import org.dpppt.android.sdk.internal.database.Database;
+import org.dpppt.android.sdk.internal.database.KnownCaseMatching;
+import org.dpppt.android.sdk.internal.database.KnownCaseWriter;
+import org.dpppt.android.sdk.internal.logger.Logger;
 import org.dpppt.android.sdk.internal.util.DayDate;
+import org.dpppt.android.sdk.internal.util.ParallelDayLoader;
 
 public class SyncWorker extends Worker {
 
 	private static final String TAG = "org.dpppt.android.sdk.internal.SyncWorker";
 
+	private static final int NUMBER_OF_DAYS_TO_SYNC = 15;
+	private static final int MAX_CONCURRENT_DOWNLOADS = 4;
+
 	public static void startSyncWorker(Context context) {
 		Constraints constraints = new Constraints.Builder()
 				.setRequiredNetworkType(NetworkType.CONNECTED)
@@ -58,15 +67,27 @@ public class SyncWorker extends Worker {
 
 		try {
 			doSync(context);
-			AppConfigManager.getInstance(context).setLastSyncNetworkSuccess(true);
+			if (AppConfigManager.getInstance(context).setLastSyncNetworkSuccess(true)) {
+				BroadcastHelper.sendErrorStateChangedBroadcast(context);
+			}
 		} catch (IOException | ResponseException e) {
-			AppConfigManager.getInstance(context).setLastSyncNetworkSuccess(false);
+			if (AppConfigManager.getInstance(context).setLastSyncNetworkSuccess(false)) {
+				BroadcastHelper.sendErrorStateChangedBroadcast(context);
+			}
 			return Result.retry();
 		}
 
 		return Result.success();
 	}
 
+	/**
+	 * Downloads the known cases of the last {@link #NUMBER_OF_DAYS_TO_SYNC} days, up to
+	 * {@link #MAX_CONCURRENT_DOWNLOADS} days at a time. The cases of a day are decoded and inserted while its response is
+	 * read, and matched on the database thread as soon as the day is complete while the next days are still
+	 * loading; all days share one snapshot of the contacts, see {@link KnownCaseMatching}. A day that fails does not
+	 * stop the other days; once all days are handled, the first failure is thrown. Days already inserted are served
+	 * from the HTTP cache the next time, so a retry only loads the failed days again.
+	 */
 	public static void doSync(Context context) throws IOException, ResponseException {
 		AppConfigManager appConfigManager = AppConfigManager.getInstance(context);
 		appConfigManager.updateFromDiscoverySynchronous();
@@ -78,33 +99,70 @@ public class SyncWorker extends Worker {
 		BackendRepository backendRepository =
 				new BackendRepository(context, appConfig.getBackendBaseUrl());
 
-		DayDate dateToLoad = new DayDate();
-		dateToLoad = dateToLoad.subtractDays(14);
+		List<DayDate> daysToLoad = new ArrayList<>();
+		DayDate dateToLoad = new DayDate().subtractDays(NUMBER_OF_DAYS_TO_SYNC - 1);
+		for (int i = 0; i < NUMBER_OF_DAYS_TO_SYNC; i++) {
+			daysToLoad.add(dateToLoad);
+			dateToLoad = dateToLoad.getNextDay();
+		}
 
-		for (int i = 0; i <= 14; i++) {
+		KnownCaseMatching knownCaseMatching = database.startKnownCaseMatching(context);
+		Map<DayDate, Exception> failures;
+		try {
+			failures = new ParallelDayLoader<ExposedListReader>(MAX_CONCURRENT_DOWNLOADS).load(daysToLoad, day -> {
+				//the cases are inserted while the response is read, cached responses were already inserted
+				KnownCaseWriter knownCaseWriter = database.createKnownCaseWriter(day);
+				ExposedListReader reader = new ExposedListReader(knownCaseWriter);
+				try {
+					return backendRepository.readExposees(day, reader) ? reader : null;
+				} finally {
+					knownCaseWriter.flush();
+				}
+			}, (day, reader) -> {
+				if (reader == null) {
+					return;
+				}
+				if (reader.getSkippedCount() > 0) {
+					Logger.w(TAG, "skipped " + reader.getSkippedCount() + " invalid exposees of " +
+							day.formatAsString());
+				}
+				if (reader.getExposeeCount() > 0) {
+					//the cases of this day are matched while the next days are loaded
+					knownCaseMatching.matchInsertedCases();
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("sync interrupted");
+		} finally {
+			//matches what is left, including work left over by an earlier sync
+			knownCaseMatching.finish();
+		}
 
-			CachedResult<ExposedList> result = backendRepository.getExposees(dateToLoad);
-			if (result.isFromCache()) {
-				//ignore if result comes from cache, we already added it to database
-				continue;
-			}
-			for (Exposee exposee : result.getData().getExposed()) {
-				database.addKnownCase(
-						context,
-						exposee.getKey(),
-						exposee.getOnset(),
-						dateToLoad
-				);
-			}
+		database.applyRetention();
+		MaintenanceWorker.scheduleIfNeeded(context);
 
-			dateToLoad = dateToLoad.getNextDay();
+		if (!failures.isEmpty()) {
+			for (Map.Entry<DayDate, Exception> failure : failures.entrySet()) {
+				Logger.e(TAG, "loading " + failure.getKey().formatAsString() + " failed: " + failure.getValue());
+			}
+			throwSyncFailure(failures.values().iterator().next());
 		}
 
-		database.removeOldKnownCases();
-
 		appConfigManager.setLastSyncDate(System.currentTimeMillis());
 
-		BroadcastHelper.sendUpdateBroadcast(context);
+		BroadcastHelper.sendSyncFinishedBroadcast(context);
+	}
+
+	private static void throwSyncFailure(Exception failure) throws IOException, ResponseException {
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		} else if (failure instanceof ResponseException) {
+			throw (ResponseException) failure;
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		throw new IllegalStateException(failure);
 	}
 
 }
@@ -219,6 +219,7 @@ public class TracingService extends Service {
 	private void restartServer() {
 		startServer();
 		scheduleNextServerRestart(this);
+		CryptoModule.getInstance(this).precomputeNextDayIfDue();
 	}
 
 	public static void scheduleNextClientRestart(Context context, long scanInterval) {
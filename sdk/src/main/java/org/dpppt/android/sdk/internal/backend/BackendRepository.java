@@ -10,11 +10,10 @@ import androidx.annotation.NonNull;
 
 import java.io.IOException;
 
-import org.dpppt.android.sdk.internal.backend.models.CachedResult;
-import org.dpppt.android.sdk.internal.backend.models.ExposedList;
 import org.dpppt.android.sdk.internal.backend.models.ExposeeRequest;
 import org.dpppt.android.sdk.internal.util.DayDate;
 
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
@@ -36,12 +35,28 @@ public class BackendRepository implements Repository {
 		backendService = retrofit.create(BackendService.class);
 	}
 
-	public CachedResult<ExposedList> getExposees(@NonNull DayDate dayDate) throws IOException, ResponseException {
-		Response<ExposedList> response = backendService.getExposees(dayDate.formatAsString()).execute();
-		if (response.isSuccessful()) {
-			return new CachedResult<>(response.body(), response.raw().networkResponse() == null);
+	/**
+	 * Streams the exposees of the given day into the reader while the response is downloaded. A response served from the
+	 * HTTP cache was read by an earlier sync and is not read again.
+	 *
+	 * @return false if the response came from the cache
+	 */
+	public boolean readExposees(@NonNull DayDate dayDate, @NonNull ExposedListReader reader)
+			throws IOException, ResponseException {
+		Response<ResponseBody> response = backendService.getExposees(dayDate.formatAsString()).execute();
+		if (!response.isSuccessful()) {
+			throw new ResponseException(response.raw());
+		}
+		ResponseBody body = response.body();
+		try {
+			if (response.raw().networkResponse() == null) {
+				return false;
+			}
+			reader.read(body.charStream());
+			return true;
+		} finally {
+			body.close();
 		}
-		throw new ResponseException(response.raw());
 	}
 
 	public void addExposee(@NonNull ExposeeRequest exposeeRequest, @NonNull CallbackListener<Void> callbackListener) {
@@ -5,20 +5,21 @@
  */
 package org.dpppt.android.sdk.internal.backend;
 
-import org.dpppt.android.sdk.internal.backend.models.ExposedList;
-import org.dpppt.android.sdk.internal.backend.models.Exposee;
 import org.dpppt.android.sdk.internal.backend.models.ExposeeRequest;
 
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.GET;
 import retrofit2.http.POST;
 import retrofit2.http.Path;
+import retrofit2.http.Streaming;
 
 interface BackendService {
 
+	@Streaming
 	@GET("v1/exposed/{dayDate}")
-	Call<ExposedList> getExposees(@Path("dayDate") String dayDate);
+	Call<ResponseBody> getExposees(@Path("dayDate") String dayDate);
 
 	@POST("v1/exposed")
 	Call<Void> addExposee(@Body ExposeeRequest exposeeRequest);
@@ -1,19 +0,0 @@
-/*
- * Created by Ubique Innovation AG
- * https://www.ubique.ch
- * Copyright (c) 2020. All rights reserved.
- */
-
-package org.dpppt.android.sdk.internal.backend.models;
-
-import java.util.List;
-
-public class ExposedList {
-
-	private List<Exposee> exposed;
-
-	public List<Exposee> getExposed() {
-		return exposed;
-	}
-
-}
@@ -10,39 +10,35 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Pair;
 
-import java.security.*;
-import java.util.ArrayList;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import javax.crypto.Cipher;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.crypto.KeyGenerator;
-import javax.crypto.Mac;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 
 import com.bottlerocketstudios.vault.SharedPreferenceVault;
 import com.bottlerocketstudios.vault.SharedPreferenceVaultFactory;
 
 import org.dpppt.android.sdk.internal.backend.models.ExposeeAuthData;
 import org.dpppt.android.sdk.internal.backend.models.ExposeeRequest;
-import org.dpppt.android.sdk.internal.database.models.Contact;
+import org.dpppt.android.sdk.internal.util.BackgroundExecutor;
 import org.dpppt.android.sdk.internal.util.DayDate;
 import org.dpppt.android.sdk.internal.util.Json;
 
+import static org.dpppt.android.sdk.internal.util.Base64Util.fromBase64;
 import static org.dpppt.android.sdk.internal.util.Base64Util.toBase64;
 
 public class CryptoModule {
 
-	public static final int KEY_LENGTH = 16;
+	public static final int KEY_LENGTH = CryptoConstants.KEY_LENGTH;
 
-	public static final int NUMBER_OF_DAYS_TO_KEEP_DATA = 21;
-	private static final int NUMBER_OF_EPOCHS_PER_DAY = 24 * 4;
-	public static final int MILLISECONDS_PER_EPOCH = 24 * 60 * 60 * 1000 / NUMBER_OF_EPOCHS_PER_DAY;
-	public static final int CONTACT_THRESHOLD = 1;
-	private static final byte[] BROADCAST_KEY = "broadcast key".getBytes();
+	public static final int NUMBER_OF_DAYS_TO_KEEP_DATA = CryptoConstants.NUMBER_OF_DAYS_TO_KEEP_DATA;
+	static final int NUMBER_OF_EPOCHS_PER_DAY = CryptoConstants.NUMBER_OF_EPOCHS_PER_DAY;
+	public static final int MILLISECONDS_PER_EPOCH = CryptoConstants.MILLISECONDS_PER_EPOCH;
+	public static final int CONTACT_THRESHOLD = CryptoConstants.CONTACT_THRESHOLD;
 
 	private static final String PREF_FILE_NAME = "dp3t-data";
 	private static final String KEY_FILE_NAME = "dp3t-keys";
@@ -50,6 +46,11 @@ public class CryptoModule {
 	private static final int VAULT_ID = 3738; // DP3T on a phone keyboard
 	private static final String PRESHARED_SECRET = "This secret will never be used because API 18 is not targeted";
 
+	private static final String KEY_SK_LIST = "SK_LIST_BIN";
+	private static final String KEY_EPHIDS_TODAY = "EPHIDS_TODAY_BIN";
+	private static final String KEY_NEXT_DAY_SK = "NEXT_DAY_SK_BIN";
+	private static final String KEY_NEXT_DAY_EPHIDS = "NEXT_DAY_EPHIDS_BIN";
+	// JSON encoded key state of earlier versions, migrated to the binary format on first read
 	private static final String KEY_SK_LIST_JSON = "SK_LIST_JSON";
 	private static final String KEY_EPHIDS_TODAY_JSON = "EPHIDS_TODAY_JSON";
 
@@ -57,7 +58,18 @@ public class CryptoModule {
 
 	private SharedPreferences esp;
 
-	public static CryptoModule getInstance(Context context) {
+	// write-through cache of the decrypted key state, guarded by this
+	private SKList skList;
+	private EphIdsForDay ephIdsForToday;
+	// key and shuffled EphIds of the next day, derived ahead of the day rollover
+	private SKList nextDaySK;
+	private EphIdsForDay ephIdsForNextDay;
+	// bumped by reset(), so that a precomputation started for the old key state is dropped
+	private int keyStateGeneration;
+
+	private final AtomicBoolean precomputingNextDay = new AtomicBoolean(false);
+
+	public static synchronized CryptoModule getInstance(Context context) {
 		if (instance == null) {
 			instance = new CryptoModule();
 
@@ -79,10 +91,9 @@ public class CryptoModule {
 		return instance;
 	}
 
-	public boolean init() {
+	public synchronized boolean init() {
 		try {
-			String stringKey = esp.getString(KEY_SK_LIST_JSON, null);
-			if (stringKey != null) return true; //key already exists
+			if (skList != null || esp.contains(KEY_SK_LIST) || esp.contains(KEY_SK_LIST_JSON)) return true; //key already exists
 
 			KeyGenerator keyGenerator = KeyGenerator.getInstance("HmacSHA256");
 			SecretKey secretKey = keyGenerator.generateKey();
@@ -97,69 +108,68 @@ public class CryptoModule {
 	}
 
 	private SKList getSKList() {
-		String skListJson = esp.getString(KEY_SK_LIST_JSON, null);
-		return Json.safeFromJson(skListJson, SKList.class, SKList::new);
+		if (skList == null) {
+			String skListBinary = esp.getString(KEY_SK_LIST, null);
+			if (skListBinary != null) {
+				skList = KeyStateFormat.decodeSKList(fromBase64(skListBinary));
+			} else if (esp.contains(KEY_SK_LIST_JSON)) {
+				String skListJson = esp.getString(KEY_SK_LIST_JSON, null);
+				skList = Json.safeFromJson(skListJson, SKList.class, SKList::new);
+				esp.edit()
+						.putString(KEY_SK_LIST, toBase64(KeyStateFormat.encodeSKList(skList)))
+						.remove(KEY_SK_LIST_JSON)
+						.apply();
+			}
+			if (skList == null) {
+				skList = new SKList();
+			}
+		}
+		return skList;
 	}
 
-	private void storeSKList(SKList skList) {
-		esp.edit().putString(KEY_SK_LIST_JSON, Json.toJson(skList)).apply();
+	synchronized void storeSKList(SKList skList) {
+		this.skList = skList;
+		esp.edit().putString(KEY_SK_LIST, toBase64(KeyStateFormat.encodeSKList(skList))).apply();
 	}
 
 	protected byte[] getSKt1(byte[] SKt0) {
-		try {
-			MessageDigest digest = MessageDigest.getInstance("SHA-256");
-			byte[] SKt1 = digest.digest(SKt0);
-			return SKt1;
-		} catch (NoSuchAlgorithmException e) {
-			throw new IllegalStateException("SHA-256 algorithm must be present!");
-		}
+		return EphIdGenerator.forCurrentThread().getSKt1(SKt0);
 	}
 
-	private void rotateSK() {
-		SKList skList = getSKList();
-		DayDate nextDay = skList.get(0).first.getNextDay();
-		byte[] SKt1 = getSKt1(skList.get(0).second);
-		skList.add(0, Pair.create(nextDay, SKt1));
-		List<Pair<DayDate, byte[]>> subList = skList.subList(0, Math.min(NUMBER_OF_DAYS_TO_KEEP_DATA, skList.size()));
-		skList = new SKList();
-		skList.addAll(subList);
-		storeSKList(skList);
+	/**
+	 * Derives the keys of all days between the newest stored key and the given day in memory and returns the list
+	 * truncated to {@link #NUMBER_OF_DAYS_TO_KEEP_DATA} days, so that catching up after a long offline period needs a
+	 * single write.
+	 */
+	static SKList rotateSKList(SKList skList, DayDate day, EphIdGenerator generator) {
+		ArrayDeque<Pair<DayDate, byte[]>> newKeys = new ArrayDeque<>();
+		Pair<DayDate, byte[]> newest = skList.get(0);
+		while (newest.first.isBefore(day)) {
+			newest = Pair.create(newest.first.getNextDay(), generator.getSKt1(newest.second));
+			newKeys.addFirst(newest);
+			if (newKeys.size() > NUMBER_OF_DAYS_TO_KEEP_DATA) {
+				newKeys.removeLast();
+			}
+		}
+		SKList rotatedSKList = new SKList();
+		rotatedSKList.addAll(newKeys);
+		int numberOfOldKeysToKeep = Math.min(NUMBER_OF_DAYS_TO_KEEP_DATA - rotatedSKList.size(), skList.size());
+		rotatedSKList.addAll(skList.subList(0, numberOfOldKeysToKeep));
+		return rotatedSKList;
 	}
 
-	protected byte[] getCurrentSK(DayDate day) {
+	protected synchronized byte[] getCurrentSK(DayDate day) {
 		SKList SKList = getSKList();
-		while (SKList.get(0).first.isBefore(day)) {
-			rotateSK();
-			SKList = getSKList();
+		if (SKList.get(0).first.isBefore(day)) {
+			SKList = rotateSKList(SKList, day, EphIdGenerator.forCurrentThread());
+			storeSKList(SKList);
 		}
 		assert SKList.get(0).first.equals(day);
 		return SKList.get(0).second;
 	}
 
 	protected List<EphId> createEphIds(byte[] SK, boolean shuffle) {
-		try {
-			Mac mac = Mac.getInstance("HmacSHA256");
-			mac.init(new SecretKeySpec(SK, "HmacSHA256"));
-			mac.update(BROADCAST_KEY);
-			byte[] prf = mac.doFinal();
-
-			//generate EphIDs
-			SecretKeySpec keySpec = new SecretKeySpec(prf, "AES");
-			Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
-			byte[] counter = new byte[16];
-			cipher.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(counter));
-			ArrayList<EphId> ephIds = new ArrayList<>();
-			byte[] emptyArray = new byte[KEY_LENGTH];
-			for (int i = 0; i < NUMBER_OF_EPOCHS_PER_DAY; i++) {
-				ephIds.add(new EphId(cipher.update(emptyArray)));
-			}
-			if (shuffle) {
-				Collections.shuffle(ephIds, new SecureRandom());
-			}
-			return ephIds;
-		} catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException e) {
-			throw new IllegalStateException("HmacSHA256 and AES algorithms must be present!", e);
-		}
+		return EphIdGenerator.forCurrentThread().createEphIds(SK, shuffle);
 	}
 
 	private int getEpochCounter(long time) {
@@ -174,16 +184,33 @@ public class CryptoModule {
 	}
 
 	private EphIdsForDay getStoredEphIdsForToday() {
-		String ephIdsJson = esp.getString(KEY_EPHIDS_TODAY_JSON, "null");
-		return Json.safeFromJson(ephIdsJson, EphIdsForDay.class, () -> null);
+		if (ephIdsForToday == null) {
+			String ephIdsBinary = esp.getString(KEY_EPHIDS_TODAY, null);
+			if (ephIdsBinary != null) {
+				ephIdsForToday = KeyStateFormat.decodeEphIdsForDay(fromBase64(ephIdsBinary));
+			} else if (esp.contains(KEY_EPHIDS_TODAY_JSON)) {
+				String ephIdsJson = esp.getString(KEY_EPHIDS_TODAY_JSON, "null");
+				ephIdsForToday = Json.safeFromJson(ephIdsJson, EphIdsForDay.class, () -> null);
+				SharedPreferences.Editor editor = esp.edit().remove(KEY_EPHIDS_TODAY_JSON);
+				if (ephIdsForToday != null) {
+					editor.putString(KEY_EPHIDS_TODAY, toBase64(KeyStateFormat.encodeEphIdsForDay(ephIdsForToday)));
+				}
+				editor.apply();
+			}
+		}
+		return ephIdsForToday;
 	}
 
 	private void storeEphIdsForToday(EphIdsForDay ephIdsForDay) {
-		esp.edit().putString(KEY_EPHIDS_TODAY_JSON, Json.toJson(ephIdsForDay)).apply();
+		this.ephIdsForToday = ephIdsForDay;
+		esp.edit().putString(KEY_EPHIDS_TODAY, toBase64(KeyStateFormat.encodeEphIdsForDay(ephIdsForDay))).apply();
 	}
 
-	protected List<EphId> getEphIdsForToday(DayDate currentDay) {
+	protected synchronized List<EphId> getEphIdsForToday(DayDate currentDay) {
 		EphIdsForDay ephIdsForDay = getStoredEphIdsForToday();
+		if (ephIdsForDay == null || !ephIdsForDay.dayDate.equals(currentDay)) {
+			ephIdsForDay = switchToPrecomputedDay(currentDay);
+		}
 		if (ephIdsForDay == null || !ephIdsForDay.dayDate.equals(currentDay)) {
 			byte[] SK = getCurrentSK(currentDay);
 			ephIdsForDay = new EphIdsForDay();
@@ -191,40 +218,127 @@ public class CryptoModule {
 			ephIdsForDay.ephIds = createEphIds(SK, true);
 			storeEphIdsForToday(ephIdsForDay);
 		}
-		return ephIdsForDay.ephIds;
+		// the list is the cached state, callers must not be able to change it
+		return Collections.unmodifiableList(ephIdsForDay.ephIds);
 	}
 
-	public EphId getCurrentEphId() {
+	/**
+	 * Starts deriving the key and EphIds of the next day in the background if the current epoch is the last one of the
+	 * day, so that the rollover at midnight does not need any crypto on the advertising path.
+	 */
+	public void precomputeNextDayIfDue() {
 		long now = System.currentTimeMillis();
-		DayDate currentDay = new DayDate(now);
-		return getEphIdsForToday(currentDay).get(getEpochCounter(now));
+		if (getEpochCounter(now) < NUMBER_OF_EPOCHS_PER_DAY - 1) {
+			return;
+		}
+		DayDate nextDay = new DayDate(now).getNextDay();
+		synchronized (this) {
+			loadNextDay();
+			if (ephIdsForNextDay != null && ephIdsForNextDay.dayDate.equals(nextDay)) {
+				return;
+			}
+		}
+		if (!precomputingNextDay.compareAndSet(false, true)) {
+			return;
+		}
+		BackgroundExecutor.getInstance().execute(() -> {
+			try {
+				precomputeDay(nextDay);
+			} finally {
+				precomputingNextDay.set(false);
+			}
+		});
 	}
 
-	public void checkContacts(byte[] sk, DayDate onsetDate, DayDate bucketDate, GetContactsCallback contactCallback,
-			MatchCallback matchCallback) {
-		DayDate dayToTest = onsetDate;
-		byte[] skForDay = sk;
-		while (dayToTest.isBeforeOrEquals(bucketDate)) {
-			List<Contact> contactsOnDay = contactCallback.getContacts(dayToTest);
-			if (contactsOnDay.size() > 0) {
-				//generate all ephIds for day
-				HashSet<EphId> ephIdHashSet = new HashSet<>(createEphIds(skForDay, false));
-
-				//check all contacts if they match any of the ephIds
-				for (Contact contact : contactsOnDay) {
-					if (ephIdHashSet.contains(contact.getEphId())) {
-						matchCallback.contactMatched(contact);
-					}
-				}
+	void precomputeDay(DayDate nextDay) {
+		int generation;
+		byte[] currentSK;
+		synchronized (this) {
+			generation = keyStateGeneration;
+			currentSK = getCurrentSK(nextDay.subtractDays(1));
+		}
+		EphIdGenerator generator = EphIdGenerator.forCurrentThread();
+		byte[] SK = generator.getSKt1(currentSK);
+		EphIdsForDay ephIds = new EphIdsForDay();
+		ephIds.dayDate = nextDay;
+		ephIds.ephIds = generator.createEphIds(SK, true);
+
+		SKList sk = new SKList();
+		sk.add(Pair.create(nextDay, SK));
+		synchronized (this) {
+			if (generation != keyStateGeneration) {
+				return;
 			}
+			nextDaySK = sk;
+			ephIdsForNextDay = ephIds;
+			esp.edit()
+					.putString(KEY_NEXT_DAY_SK, toBase64(KeyStateFormat.encodeSKList(sk)))
+					.putString(KEY_NEXT_DAY_EPHIDS, toBase64(KeyStateFormat.encodeEphIdsForDay(ephIds)))
+					.apply();
+		}
+	}
 
-			//update day to next day and rotate sk accordingly
-			dayToTest = dayToTest.getNextDay();
-			skForDay = getSKt1(skForDay);
+	private void loadNextDay() {
+		if (ephIdsForNextDay == null && esp.contains(KEY_NEXT_DAY_EPHIDS)) {
+			nextDaySK = KeyStateFormat.decodeSKList(fromBase64(esp.getString(KEY_NEXT_DAY_SK, "")));
+			ephIdsForNextDay = KeyStateFormat.decodeEphIdsForDay(fromBase64(esp.getString(KEY_NEXT_DAY_EPHIDS, "")));
 		}
 	}
 
-	public ExposeeRequest getSecretKeyForPublishing(DayDate date, ExposeeAuthData exposeeAuthData) {
+	/**
+	 * Makes the precomputed day the current one if it was derived for the given day from the current key state.
+	 *
+	 * @return the precomputed EphIds, or null if there are none for the given day
+	 */
+	private EphIdsForDay switchToPrecomputedDay(DayDate currentDay) {
+		loadNextDay();
+		if (ephIdsForNextDay == null || nextDaySK == null || nextDaySK.isEmpty() ||
+				!ephIdsForNextDay.dayDate.equals(currentDay)) {
+			return null;
+		}
+		Pair<DayDate, byte[]> precomputedSK = nextDaySK.get(0);
+		EphIdsForDay precomputedEphIds = ephIdsForNextDay;
+		nextDaySK = null;
+		ephIdsForNextDay = null;
+
+		SKList currentSKList = getSKList();
+		Pair<DayDate, byte[]> newestSK = currentSKList.get(0);
+		SKList newSKList;
+		if (newestSK.first.getNextDay().equals(currentDay) &&
+				Arrays.equals(precomputedSK.second, getSKt1(newestSK.second))) {
+			newSKList = new SKList();
+			newSKList.add(precomputedSK);
+			newSKList.addAll(currentSKList.subList(0, Math.min(NUMBER_OF_DAYS_TO_KEEP_DATA - 1, currentSKList.size())));
+		} else if (newestSK.first.equals(currentDay) && Arrays.equals(newestSK.second, precomputedSK.second)) {
+			newSKList = currentSKList;
+		} else {
+			esp.edit().remove(KEY_NEXT_DAY_SK).remove(KEY_NEXT_DAY_EPHIDS).apply();
+			return null;
+		}
+
+		skList = newSKList;
+		ephIdsForToday = precomputedEphIds;
+		esp.edit()
+				.putString(KEY_SK_LIST, toBase64(KeyStateFormat.encodeSKList(newSKList)))
+				.putString(KEY_EPHIDS_TODAY, toBase64(KeyStateFormat.encodeEphIdsForDay(precomputedEphIds)))
+				.remove(KEY_NEXT_DAY_SK)
+				.remove(KEY_NEXT_DAY_EPHIDS)
+				.apply();
+		return precomputedEphIds;
+	}
+
+	public synchronized EphId getCurrentEphId() {
+		long now = System.currentTimeMillis();
+		DayDate currentDay = new DayDate(now);
+		return getEphIdsForToday(currentDay).get(getEpochCounter(now));
+	}
+
+	public void checkContacts(byte[] sk, DayDate onsetDate, DayDate bucketDate,
+			ContactMatcher.GetContactsCallback contactCallback, ContactMatcher.MatchCallback matchCallback) {
+		ContactMatcher.checkContacts(sk, onsetDate, bucketDate, contactCallback, matchCallback);
+	}
+
+	public synchronized ExposeeRequest getSecretKeyForPublishing(DayDate date, ExposeeAuthData exposeeAuthData) {
 		SKList skList = getSKList();
 		for (Pair<DayDate, byte[]> daySKPair : skList) {
 			if (daySKPair.first.equals(date)) {
@@ -244,8 +358,13 @@ public class CryptoModule {
 	}
 
 	@SuppressLint("ApplySharedPref")
-	public void reset() {
+	public synchronized void reset() {
 		try {
+			keyStateGeneration++;
+			skList = null;
+			ephIdsForToday = null;
+			nextDaySK = null;
+			ephIdsForNextDay = null;
 			esp.edit().clear().commit();
 			init();
 		} catch (Exception ex) {
@@ -253,17 +372,4 @@ public class CryptoModule {
 		}
 	}
 
-	public interface GetContactsCallback {
-
-		List<Contact> getContacts(DayDate date);
-
-	}
-
-
-	public interface MatchCallback {
-
-		void contactMatched(Contact contact);
-
-	}
-
 }
@@ -0,0 +1,104 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.crypto;
+
+import android.util.Pair;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import org.dpppt.android.sdk.internal.util.DayDate;
+
+/**
+ * Versioned fixed-layout binary encoding of the key state, replacing the Gson encoding where every byte of a key
+ * was written as a decimal number.
+ * <pre>
+ * SKList:      version (1) | count (4) | key length (4) | count * (start of day (8) | key)
+ * EphIdsForDay: version (1) | start of day (8) | count (4) | count * ephId (16)
+ * </pre>
+ * Decoding returns null for unknown versions or truncated data.
+ */
+class KeyStateFormat {
+
+	private static final byte VERSION_1 = 1;
+
+	static byte[] encodeSKList(SKList skList) {
+		int keyLength = skList.isEmpty() ? 0 : skList.get(0).second.length;
+		ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + skList.size() * (8 + keyLength));
+		buffer.put(VERSION_1);
+		buffer.putInt(skList.size());
+		buffer.putInt(keyLength);
+		for (Pair<DayDate, byte[]> daySKPair : skList) {
+			if (daySKPair.second.length != keyLength) {
+				throw new IllegalArgumentException("all keys must have the same length");
+			}
+			buffer.putLong(daySKPair.first.getStartOfDayTimestamp());
+			buffer.put(daySKPair.second);
+		}
+		return buffer.array();
+	}
+
+	static SKList decodeSKList(byte[] data) {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			if (buffer.get() != VERSION_1) {
+				return null;
+			}
+			int count = buffer.getInt();
+			int keyLength = buffer.getInt();
+			if (count < 0 || keyLength < 0 || (long) count * (8 + keyLength) != buffer.remaining()) {
+				return null;
+			}
+			SKList skList = new SKList();
+			for (int i = 0; i < count; i++) {
+				DayDate day = new DayDate(buffer.getLong());
+				byte[] key = new byte[keyLength];
+				buffer.get(key);
+				skList.add(Pair.create(day, key));
+			}
+			return skList;
+		} catch (BufferUnderflowException e) {
+			return null;
+		}
+	}
+
+	static byte[] encodeEphIdsForDay(EphIdsForDay ephIdsForDay) {
+		ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 4 + ephIdsForDay.ephIds.size() * CryptoModule.KEY_LENGTH);
+		buffer.put(VERSION_1);
+		buffer.putLong(ephIdsForDay.dayDate.getStartOfDayTimestamp());
+		buffer.putInt(ephIdsForDay.ephIds.size());
+		for (EphId ephId : ephIdsForDay.ephIds) {
+			buffer.putLong(ephId.getHigh());
+			buffer.putLong(ephId.getLow());
+		}
+		return buffer.array();
+	}
+
+	static EphIdsForDay decodeEphIdsForDay(byte[] data) {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			if (buffer.get() != VERSION_1) {
+				return null;
+			}
+			DayDate day = new DayDate(buffer.getLong());
+			int count = buffer.getInt();
+			if (count < 0 || (long) count * CryptoModule.KEY_LENGTH != buffer.remaining()) {
+				return null;
+			}
+			EphIdsForDay ephIdsForDay = new EphIdsForDay();
+			ephIdsForDay.dayDate = day;
+			ephIdsForDay.ephIds = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				ephIdsForDay.ephIds.add(new EphId(buffer.getLong(), buffer.getLong()));
+			}
+			return ephIdsForDay;
+		} catch (BufferUnderflowException e) {
+			return null;
+		}
+	}
+
+}
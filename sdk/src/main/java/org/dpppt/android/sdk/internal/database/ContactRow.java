@@ -0,0 +1,65 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.database.models.Contact;
+import org.dpppt.android.sdk.internal.util.DayDate;
+
+/**
+ * Mutable view of a row of the contacts table, reused for all rows of a {@link Database#visitContacts} read.
+ */
+public class ContactRow {
+
+	int id;
+	long day;
+	long ephIdHigh;
+	long ephIdLow;
+	int associatedKnownCase;
+
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return the start of the contact's day in milliseconds since the epoch
+	 */
+	public long getDateTimestamp() {
+		return day * DayDate.MILLISECONDS_PER_DAY;
+	}
+
+	/**
+	 * @return the contact's day as days since 1970-01-01
+	 */
+	public long getEpochDay() {
+		return day;
+	}
+
+	public DayDate getDate() {
+		return DayDate.fromEpochDay(day);
+	}
+
+	public long getEphIdHigh() {
+		return ephIdHigh;
+	}
+
+	public long getEphIdLow() {
+		return ephIdLow;
+	}
+
+	public EphId getEphId() {
+		return new EphId(ephIdHigh, ephIdLow);
+	}
+
+	public int getAssociatedKnownCase() {
+		return associatedKnownCase;
+	}
+
+	public Contact toContact() {
+		return new Contact(id, getDate(), getEphId(), associatedKnownCase);
+	}
+
+}
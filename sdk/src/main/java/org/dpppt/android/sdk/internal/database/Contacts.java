@@ -10,26 +10,79 @@ interface Contacts {
 	String TABLE_NAME = "contacts";
 
 	String ID = "id";
-	String DATE = "date";
-	String EPHID = "ephid";
+	/**
+	 * Days since 1970-01-01, see {@link org.dpppt.android.sdk.internal.util.DayDate#getEpochDay()}.
+	 */
+	String DAY = "day";
+	/**
+	 * First 8 bytes of the EphId, read as a big-endian long.
+	 */
+	String EPHID_HIGH = "ephid_high";
+	/**
+	 * Last 8 bytes of the EphId, read as a big-endian long.
+	 */
+	String EPHID_LOW = "ephid_low";
 	String ASSOCIATED_KNOWN_CASE = "associated_known_case";
 
 	String[] PROJECTION = {
 			ID,
-			DATE,
-			EPHID,
+			DAY,
+			EPHID_HIGH,
+			EPHID_LOW,
 			ASSOCIATED_KNOWN_CASE
 	};
 
 	static String create() {
 		return "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" + ID + " INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
-				DATE + " INTEGER NOT NULL, " + EPHID + " BLOB NOT NULL, " +
+				DAY + " INTEGER NOT NULL, " + EPHID_HIGH + " INTEGER NOT NULL, " + EPHID_LOW + " INTEGER NOT NULL, " +
 				ASSOCIATED_KNOWN_CASE + " INTEGER, " +
-				"CONSTRAINT no_duplicates UNIQUE (" + DATE + ", " + EPHID + "), " +
+				"CONSTRAINT no_duplicates UNIQUE (" + DAY + ", " + EPHID_HIGH + ", " + EPHID_LOW + "), " +
 				"FOREIGN KEY (" + ASSOCIATED_KNOWN_CASE + ") REFERENCES " +
 				KnownCases.TABLE_NAME + " (" + KnownCases.ID + ") ON DELETE SET NULL)";
 	}
 
+	/**
+	 * Covers the per-day queries, so contacts of a day are read from the index without touching the table.
+	 */
+	static String createDayIndex() {
+		return "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_" + DAY + " ON " + TABLE_NAME + " (" + DAY + ", " +
+				EPHID_HIGH + ", " + EPHID_LOW + ", " + ASSOCIATED_KNOWN_CASE + ")";
+	}
+
+	static String createAssociatedKnownCaseIndex() {
+		return "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_" + ASSOCIATED_KNOWN_CASE + " ON " + TABLE_NAME + " (" +
+				ASSOCIATED_KNOWN_CASE + ")";
+	}
+
+	/**
+	 * Initializes {@link Metadata#KEY_CONTACT_COUNT} and {@link Metadata#KEY_EXPOSED_CONTACT_COUNT} and keeps them up to
+	 * date with triggers, which run in the transaction of every write to the table.
+	 */
+	static String[] createCounters() {
+		String updateContactCount = "UPDATE " + Metadata.TABLE_NAME + " SET " + Metadata.VALUE + " = " + Metadata.VALUE +
+				" %s WHERE " + Metadata.KEY + " = '" + Metadata.KEY_CONTACT_COUNT + "';";
+		String updateExposedCount = "UPDATE " + Metadata.TABLE_NAME + " SET " + Metadata.VALUE + " = " + Metadata.VALUE +
+				" %s WHERE " + Metadata.KEY + " = '" + Metadata.KEY_EXPOSED_CONTACT_COUNT + "';";
+		String exposedOld = "(CASE WHEN OLD." + ASSOCIATED_KNOWN_CASE + " > 0 THEN 1 ELSE 0 END)";
+		String exposedNew = "(CASE WHEN NEW." + ASSOCIATED_KNOWN_CASE + " > 0 THEN 1 ELSE 0 END)";
+		return new String[] {
+				"INSERT OR REPLACE INTO " + Metadata.TABLE_NAME + " (" + Metadata.KEY + ", " + Metadata.VALUE + ") SELECT '" +
+						Metadata.KEY_CONTACT_COUNT + "', count(*) FROM " + TABLE_NAME,
+				"INSERT OR REPLACE INTO " + Metadata.TABLE_NAME + " (" + Metadata.KEY + ", " + Metadata.VALUE + ") SELECT '" +
+						Metadata.KEY_EXPOSED_CONTACT_COUNT + "', count(*) FROM " + TABLE_NAME + " WHERE " +
+						ASSOCIATED_KNOWN_CASE + " > 0",
+				"CREATE TRIGGER IF NOT EXISTS " + TABLE_NAME + "_count_insert AFTER INSERT ON " + TABLE_NAME + " BEGIN " +
+						String.format(updateContactCount, "+ 1") + " " +
+						String.format(updateExposedCount, "+ " + exposedNew) + " END",
+				"CREATE TRIGGER IF NOT EXISTS " + TABLE_NAME + "_count_delete AFTER DELETE ON " + TABLE_NAME + " BEGIN " +
+						String.format(updateContactCount, "- 1") + " " +
+						String.format(updateExposedCount, "- " + exposedOld) + " END",
+				"CREATE TRIGGER IF NOT EXISTS " + TABLE_NAME + "_count_update AFTER UPDATE OF " + ASSOCIATED_KNOWN_CASE +
+						" ON " + TABLE_NAME + " BEGIN " +
+						String.format(updateExposedCount, "+ " + exposedNew + " - " + exposedOld) + " END"
+		};
+	}
+
 	static String drop() {
 		return "DROP TABLE IF EXISTS " + TABLE_NAME;
 	}
@@ -0,0 +1,40 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.dpppt.android.sdk.internal.crypto.ContactMatcher;
+import org.dpppt.android.sdk.internal.database.models.Contact;
+import org.dpppt.android.sdk.internal.util.DayDate;
+
+/**
+ * In-memory per-day view of the contacts table, loaded once so that a whole batch of known cases can be matched
+ * without querying the database for every case and day.
+ */
+class ContactsIndex implements ContactMatcher.GetContactsCallback {
+
+	private final HashMap<DayDate, List<Contact>> contactsByDay = new HashMap<>();
+
+	void add(Contact contact) {
+		List<Contact> contactsOnDay = contactsByDay.get(contact.getDate());
+		if (contactsOnDay == null) {
+			contactsOnDay = new ArrayList<>();
+			contactsByDay.put(contact.getDate(), contactsOnDay);
+		}
+		contactsOnDay.add(contact);
+	}
+
+	@Override
+	public List<Contact> getContacts(DayDate date) {
+		List<Contact> contactsOnDay = contactsByDay.get(date);
+		return contactsOnDay != null ? contactsOnDay : Collections.emptyList();
+	}
+
+}
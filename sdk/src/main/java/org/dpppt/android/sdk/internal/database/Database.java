@@ -8,208 +8,456 @@ package org.dpppt.android.sdk.internal.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.OperationCanceledException;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import org.dpppt.android.sdk.BuildConfig;
-import org.dpppt.android.sdk.internal.BroadcastHelper;
-import org.dpppt.android.sdk.internal.crypto.ContactsFactory;
 import org.dpppt.android.sdk.internal.crypto.CryptoModule;
 import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.crypto.MatchingJob;
 import org.dpppt.android.sdk.internal.database.models.Contact;
 import org.dpppt.android.sdk.internal.database.models.Handshake;
+import org.dpppt.android.sdk.internal.logger.Logger;
+import org.dpppt.android.sdk.internal.util.BackgroundExecutor;
 import org.dpppt.android.sdk.internal.util.DayDate;
 
-import static android.database.sqlite.SQLiteDatabase.CONFLICT_IGNORE;
-import static org.dpppt.android.sdk.internal.util.Base64Util.fromBase64;
+import static android.database.sqlite.SQLiteDatabase.CONFLICT_REPLACE;
 
 public class Database {
 
+	private static final String TAG = "Database";
+
+	private static final long MILLISECONDS_PER_DAY = DayDate.MILLISECONDS_PER_DAY;
+
+	// handshakes are grouped by EphId and UTC day like in ContactsFactory, an aggregate counts for all its sightings
+	static final String GENERATE_CONTACTS = "INSERT OR IGNORE INTO " + Contacts.TABLE_NAME + " (" +
+			Contacts.DAY + ", " + Contacts.EPHID_HIGH + ", " + Contacts.EPHID_LOW + ") SELECT day, high, low FROM (SELECT " +
+			Handshakes.TIMESTAMP + " / " + MILLISECONDS_PER_DAY + " AS day, " + Handshakes.EPHID_HIGH + " AS high, " +
+			Handshakes.EPHID_LOW + " AS low, 1 AS n FROM " + Handshakes.TABLE_NAME + " WHERE " + Handshakes.TIMESTAMP +
+			" >= ?1 AND " + Handshakes.TIMESTAMP + " < ?2 UNION ALL SELECT " + HandshakeAggregates.EPOCH + " / " +
+			MILLISECONDS_PER_DAY + " AS day, " + HandshakeAggregates.EPHID_HIGH + " AS high, " +
+			HandshakeAggregates.EPHID_LOW + " AS low, " + HandshakeAggregates.COUNT + " AS n FROM " +
+			HandshakeAggregates.TABLE_NAME + " WHERE " + HandshakeAggregates.EPOCH + " >= ?1 AND " +
+			HandshakeAggregates.EPOCH + " < ?2) GROUP BY high, low, day HAVING sum(n) > ?3";
+
 	private DatabaseOpenHelper databaseOpenHelper;
-	private DatabaseThread databaseThread;
+	private DatabaseExecutor databaseExecutor;
+	private HandshakeIngestion handshakeIngestion;
+	private Handler mainHandler;
 
 	public Database(@NonNull Context context) {
 		databaseOpenHelper = DatabaseOpenHelper.getInstance(context);
-		databaseThread = DatabaseThread.getInstance(context);
+		databaseExecutor = DatabaseExecutor.getInstance();
+		handshakeIngestion = HandshakeIngestion.getInstance(context);
+		mainHandler = new Handler(context.getMainLooper());
+	}
+
+	/**
+	 * Creates a writer that inserts the known cases of the given day as they are decoded, see {@link KnownCaseWriter}.
+	 * The cases are matched by the next {@link #matchPendingKnownCases} or {@link KnownCaseMatching} run.
+	 */
+	public KnownCaseWriter createKnownCaseWriter(@NonNull DayDate bucketDate) {
+		return new KnownCaseWriter(databaseOpenHelper.getWritableDatabase(), databaseExecutor, bucketDate);
 	}
 
-	public void addKnownCase(Context context, @NonNull String key, @NonNull DayDate onsetDate, @NonNull DayDate bucketDate) {
+	/**
+	 * Starts matching known cases that are inserted by {@link KnownCaseWriter}s in the meantime, see
+	 * {@link KnownCaseMatching}.
+	 */
+	public KnownCaseMatching startKnownCaseMatching(Context context) {
 		SQLiteDatabase db = databaseOpenHelper.getWritableDatabase();
-		ContentValues values = new ContentValues();
-		values.put(KnownCases.KEY, key);
-		values.put(KnownCases.ONSET, onsetDate.getStartOfDayTimestamp());
-		values.put(KnownCases.BUCKET_DAY, bucketDate.getStartOfDayTimestamp());
-		databaseThread.post(() -> {
+		return new KnownCaseMatching(databaseExecutor, new MatchingTransaction(context, this, databaseExecutor, db));
+	}
 
-			long idOfAddedCase = db.insertWithOnConflict(KnownCases.TABLE_NAME, null, values, CONFLICT_IGNORE);
+	/**
+	 * Matches all known cases inserted but not yet matched against the stored contacts, after the insertions queued so
+	 * far. Matching work left unfinished by an earlier run is resumed as well.
+	 */
+	public void matchPendingKnownCases(Context context) {
+		startKnownCaseMatching(context).finish();
+	}
 
-			if (idOfAddedCase == -1) {
-				//key was already in the database, so we can ignore it
-				return;
-			}
+	/**
+	 * @return false if the database was created before incremental vacuum was enabled and has to be rebuilt once by
+	 * {@link #enableIncrementalVacuum()} for {@link RetentionTask} to return free pages to the file system
+	 */
+	public boolean isIncrementalVacuumEnabled() {
+		return databaseOpenHelper.getReadConnectionPool().read(db ->
+				DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) == RetentionTask.AUTO_VACUUM_INCREMENTAL);
+	}
 
-			CryptoModule cryptoModule = CryptoModule.getInstance(context);
-			cryptoModule.checkContacts(fromBase64(key), onsetDate, bucketDate, (date) -> getContacts(date), (contact) -> {
-				ContentValues updateValues = new ContentValues();
-				updateValues.put(Contacts.ASSOCIATED_KNOWN_CASE, idOfAddedCase);
-				db.update(Contacts.TABLE_NAME, updateValues, Contacts.ID + "=" + contact.getId(), null);
-				BroadcastHelper.sendUpdateBroadcast(context);
-			});
+	/**
+	 * Rebuilds a database created before incremental vacuum was enabled. This rewrites the whole file and blocks all
+	 * lanes of the database thread meanwhile, so it is only run as maintenance while the device is idle, see
+	 * {@link org.dpppt.android.sdk.internal.MaintenanceWorker}. Blocks until the rebuild is done.
+	 */
+	public void enableIncrementalVacuum() {
+		CountDownLatch done = new CountDownLatch(1);
+		databaseExecutor.post(DatabaseExecutor.Lane.BULK, () -> {
+			try {
+				SQLiteDatabase db = databaseOpenHelper.getWritableDatabase();
+				long autoVacuum = DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null);
+				if (autoVacuum != RetentionTask.AUTO_VACUUM_INCREMENTAL) {
+					Logger.i(TAG, "enabling incremental vacuum");
+					db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+					db.execSQL("VACUUM");
+				}
+			} finally {
+				done.countDown();
+			}
 		});
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 	}
 
-	public void removeOldKnownCases() {
-		databaseThread.post(() -> {
+	/**
+	 * Starts the removal of all data past its retention period, see {@link RetentionTask}.
+	 */
+	public void applyRetention() {
+		databaseExecutor.post(DatabaseExecutor.Lane.BULK, () -> {
 			SQLiteDatabase db = databaseOpenHelper.getWritableDatabase();
-			DayDate lastDayToKeep = new DayDate().subtractDays(CryptoModule.NUMBER_OF_DAYS_TO_KEEP_DATA);
-			db.delete(KnownCases.TABLE_NAME, KnownCases.BUCKET_DAY + " < ?",
-					new String[] { "" + lastDayToKeep.getStartOfDayTimestamp() });
+			boolean downsampleHandshakes = BuildConfig.FLAVOR.equals("calibration");
+			new RetentionTask(db, databaseExecutor, downsampleHandshakes, System.currentTimeMillis()).run();
+		});
+	}
+
+	/**
+	 * Reads the size of the database and the number of rows per table from a read connection.
+	 */
+	public DatabaseStatistics getStatistics() {
+		return databaseOpenHelper.getReadConnectionPool().read(db -> {
+			Map<String, Long> rowCounts = new LinkedHashMap<>();
+			for (String table : new String[] { KnownCases.TABLE_NAME, MatchingJournal.TABLE_NAME, Handshakes.TABLE_NAME,
+					HandshakeAggregates.TABLE_NAME, Contacts.TABLE_NAME, Metadata.TABLE_NAME }) {
+				rowCounts.put(table, DatabaseUtils.queryNumEntries(db, table));
+			}
+			long pageSize = DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+			long pageCount = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+			long freePages = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+			return new DatabaseStatistics(pageCount * pageSize, freePages * pageSize, rowCounts);
 		});
 	}
 
+	List<MatchingJob> getPendingMatchingJobs() {
+		return databaseOpenHelper.getReadConnectionPool().read(db -> {
+			Cursor cursor = db.rawQuery("SELECT j." + MatchingJournal.KNOWN_CASE_ID + ", k." + KnownCases.KEY + ", k." +
+					KnownCases.ONSET + ", j." + MatchingJournal.PENDING_FROM + ", j." + MatchingJournal.PENDING_UNTIL +
+					" FROM " + MatchingJournal.TABLE_NAME + " j INNER JOIN " + KnownCases.TABLE_NAME + " k ON k." +
+					KnownCases.ID + " = j." + MatchingJournal.KNOWN_CASE_ID + " ORDER BY j." +
+					MatchingJournal.KNOWN_CASE_ID, null);
+			List<MatchingJob> jobs = new ArrayList<>();
+			try {
+				while (cursor.moveToNext()) {
+					jobs.add(new MatchingJob(
+							cursor.getLong(0),
+							cursor.getBlob(1),
+							DayDate.fromEpochDay(cursor.getLong(2)),
+							DayDate.fromEpochDay(cursor.getLong(3)),
+							DayDate.fromEpochDay(cursor.getLong(4))));
+				}
+			} finally {
+				cursor.close();
+			}
+			return jobs;
+		});
+	}
+
+	/**
+	 * Queues the handshake for the next group commit of the {@link HandshakeIngestion}.
+	 *
+	 * @throws IllegalArgumentException if star is not an EphId of {@link CryptoModule#KEY_LENGTH} bytes
+	 */
 	public ContentValues addHandshake(Context context, byte[] star, int txPowerLevel, int rssi, long timestamp) {
-		SQLiteDatabase db = databaseOpenHelper.getWritableDatabase();
+		EphId ephId = new EphId(star);
 		ContentValues values = new ContentValues();
-		values.put(Handshakes.EPHID, star);
+		values.put(Handshakes.EPHID_HIGH, ephId.getHigh());
+		values.put(Handshakes.EPHID_LOW, ephId.getLow());
 		values.put(Handshakes.TIMESTAMP, timestamp);
 		values.put(Handshakes.TX_POWER_LEVEL, txPowerLevel);
 		values.put(Handshakes.RSSI, rssi);
-		databaseThread.post(() -> {
-			db.insert(Handshakes.TABLE_NAME, null, values);
-			BroadcastHelper.sendUpdateBroadcast(context);
-		});
+		handshakeIngestion.ingest(star, timestamp, txPowerLevel, rssi);
 		return values;
 	}
 
+	/**
+	 * Reads all handshakes ingested so far. Blocks until the pending ones are committed if not called on the database
+	 * thread.
+	 */
 	public List<Handshake> getHandshakes() {
-		SQLiteDatabase db = databaseOpenHelper.getReadableDatabase();
-		Cursor cursor = db.query(Handshakes.TABLE_NAME, Handshakes.PROJECTION, null, null, null, null, Handshakes.ID);
-		return getHandshakesFromCursor(cursor);
+		commitPendingHandshakes();
+		List<Handshake> handshakes = new ArrayList<>();
+		visitHandshakes(null, row -> handshakes.add(row.toHandshake()));
+		return handshakes;
 	}
 
-
+	/**
+	 * Reads all handshakes ingested so far that are older than maxTime, see {@link #getHandshakes()}.
+	 */
 	public List<Handshake> getHandshakes(long maxTime) {
-		SQLiteDatabase db = databaseOpenHelper.getReadableDatabase();
-		Cursor cursor = db.query(Handshakes.TABLE_NAME, Handshakes.PROJECTION, Handshakes.TIMESTAMP + " < ?",
-				new String[] { "" + maxTime }, null, null, Handshakes.ID);
-		return getHandshakesFromCursor(cursor);
+		commitPendingHandshakes();
+		List<Handshake> handshakes = new ArrayList<>();
+		databaseOpenHelper.getReadConnectionPool().read(db ->
+				readHandshakes(db, Handshakes.TIMESTAMP + " < ?", new String[] { "" + maxTime }, null,
+						row -> handshakes.add(row.toHandshake())));
+		return handshakes;
 	}
 
 	public void getHandshakes(@NonNull ResultListener<List<Handshake>> resultListener) {
-		databaseThread.post(new Runnable() {
-			List<Handshake> handshakes = new ArrayList<>();
+		databaseExecutor.post(DatabaseExecutor.Lane.INTERACTIVE, () -> {
+			List<Handshake> handshakes = getHandshakes();
+			mainHandler.post(() -> resultListener.onResult(handshakes));
+		});
+	}
 
-			@Override
-			public void run() {
-				handshakes = getHandshakes();
-				databaseThread.onResult(() -> resultListener.onResult(handshakes));
+	private void commitPendingHandshakes() {
+		if (databaseExecutor.isExecutorThread()) {
+			handshakeIngestion.commitPending();
+			return;
+		}
+		CountDownLatch committed = new CountDownLatch(1);
+		databaseExecutor.post(DatabaseExecutor.Lane.INGESTION, () -> {
+			try {
+				handshakeIngestion.commitPending();
+			} finally {
+				committed.countDown();
 			}
 		});
+		try {
+			committed.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 	}
 
-	private List<Handshake> getHandshakesFromCursor(Cursor cursor) {
-		List<Handshake> handshakes = new ArrayList<>();
-		while (cursor.moveToNext()) {
-			int id = cursor.getInt(cursor.getColumnIndexOrThrow(Handshakes.ID));
-			long timestamp = cursor.getLong(cursor.getColumnIndexOrThrow(Handshakes.TIMESTAMP));
-			EphId ephId = new EphId(cursor.getBlob(cursor.getColumnIndexOrThrow(Handshakes.EPHID)));
-			int txPowerLevel = cursor.getInt(cursor.getColumnIndexOrThrow(Handshakes.TX_POWER_LEVEL));
-			int rssi = cursor.getInt(cursor.getColumnIndexOrThrow(Handshakes.RSSI));
-			Handshake handShake = new Handshake(id, timestamp, ephId, txPowerLevel, rssi);
-			handshakes.add(handShake);
+	/**
+	 * Streams all handshakes ordered by id to the visitor on the calling thread, holding a read connection for the
+	 * duration of the read.
+	 *
+	 * @return true if all rows were visited, false if the visitor stopped or the read was cancelled
+	 */
+	public boolean visitHandshakes(@Nullable CancellationSignal cancellationSignal,
+			@NonNull RowVisitor<HandshakeRow> visitor) {
+		return databaseOpenHelper.getReadConnectionPool().read(db ->
+				readHandshakes(db, null, null, cancellationSignal, visitor));
+	}
+
+	private static boolean readHandshakes(SQLiteDatabase db, String selection, String[] selectionArgs,
+			CancellationSignal cancellationSignal, RowVisitor<HandshakeRow> visitor) {
+		Cursor cursor;
+		try {
+			cursor = db.query(false, Handshakes.TABLE_NAME, Handshakes.PROJECTION, selection, selectionArgs, null, null,
+					Handshakes.ID, null, cancellationSignal);
+		} catch (OperationCanceledException e) {
+			return false;
+		}
+		try {
+			int idIndex = cursor.getColumnIndexOrThrow(Handshakes.ID);
+			int timestampIndex = cursor.getColumnIndexOrThrow(Handshakes.TIMESTAMP);
+			int ephIdHighIndex = cursor.getColumnIndexOrThrow(Handshakes.EPHID_HIGH);
+			int ephIdLowIndex = cursor.getColumnIndexOrThrow(Handshakes.EPHID_LOW);
+			int txPowerLevelIndex = cursor.getColumnIndexOrThrow(Handshakes.TX_POWER_LEVEL);
+			int rssiIndex = cursor.getColumnIndexOrThrow(Handshakes.RSSI);
+			HandshakeRow row = new HandshakeRow();
+			while (cursor.moveToNext()) {
+				if (cancellationSignal != null && cancellationSignal.isCanceled()) {
+					return false;
+				}
+				row.id = cursor.getInt(idIndex);
+				row.timestamp = cursor.getLong(timestampIndex);
+				row.ephIdHigh = cursor.getLong(ephIdHighIndex);
+				row.ephIdLow = cursor.getLong(ephIdLowIndex);
+				row.txPowerLevel = cursor.getInt(txPowerLevelIndex);
+				row.rssi = cursor.getInt(rssiIndex);
+				if (!visitor.visit(row)) {
+					return false;
+				}
+			}
+			return true;
+		} catch (OperationCanceledException e) {
+			return false;
+		} finally {
+			cursor.close();
 		}
-		cursor.close();
-		return handshakes;
 	}
 
+	/**
+	 * Converts the handshakes and aggregates of all completed epochs since the last run into contacts. The grouping runs
+	 * in SQLite in a single transaction, which also advances the watermark, so every handshake is only scanned once.
+	 * Contacts past their retention period are removed by {@link #applyRetention()}.
+	 */
 	public void generateContactsFromHandshakes(Context context) {
-		databaseThread.post(() -> {
+		databaseExecutor.post(DatabaseExecutor.Lane.BULK, () -> {
+			handshakeIngestion.commitPending();
 
 			long currentEpochStart = CryptoModule.getInstance(context).getCurrentEpochStart();
 
-			List<Handshake> handshakes = getHandshakes(currentEpochStart);
-			List<Contact> contacts = ContactsFactory.mergeHandshakesToContacts(handshakes);
-			for (Contact contact : contacts) {
-				addContact(contact);
-			}
-
 			SQLiteDatabase db = databaseOpenHelper.getWritableDatabase();
-			if (!BuildConfig.FLAVOR.equals("calibration")) {
-				//unless in calibration mode, delete handshakes after converting them to contacts
-				db.delete(Handshakes.TABLE_NAME, Handshakes.TIMESTAMP + " < ?",
-						new String[] { "" + currentEpochStart });
+			db.beginTransaction();
+			try {
+				long watermark = getMetadata(db, Metadata.KEY_CONTACTS_WATERMARK, 0);
+				if (watermark < currentEpochStart) {
+					db.execSQL(GENERATE_CONTACTS, new Object[] { watermark, currentEpochStart, CryptoModule.CONTACT_THRESHOLD });
+					setMetadata(db, Metadata.KEY_CONTACTS_WATERMARK, currentEpochStart);
+				}
+				if (!BuildConfig.FLAVOR.equals("calibration")) {
+					//unless in calibration mode, delete handshakes after converting them to contacts
+					db.delete(Handshakes.TABLE_NAME, Handshakes.TIMESTAMP + " < ?",
+							new String[] { "" + currentEpochStart });
+					db.delete(HandshakeAggregates.TABLE_NAME, HandshakeAggregates.EPOCH + " < ?",
+							new String[] { "" + currentEpochStart });
+				}
+				db.setTransactionSuccessful();
+			} finally {
+				db.endTransaction();
 			}
-			DayDate lastDayToKeep = new DayDate().subtractDays(CryptoModule.NUMBER_OF_DAYS_TO_KEEP_DATA);
-			db.delete(Contacts.TABLE_NAME, Contacts.DATE + " < ?", new String[] { "" + lastDayToKeep.getStartOfDayTimestamp() });
 		});
 	}
 
-	private void addContact(Contact contact) {
-		SQLiteDatabase db = databaseOpenHelper.getWritableDatabase();
+	static long getMetadata(SQLiteDatabase db, String key, long defaultValue) {
+		Cursor cursor = db.query(Metadata.TABLE_NAME, new String[] { Metadata.VALUE }, Metadata.KEY + "=?",
+				new String[] { key }, null, null, null);
+		long value = cursor.moveToFirst() ? cursor.getLong(0) : defaultValue;
+		cursor.close();
+		return value;
+	}
+
+	private static void setMetadata(SQLiteDatabase db, String key, long value) {
 		ContentValues values = new ContentValues();
-		values.put(Contacts.EPHID, contact.getEphId().getData());
-		values.put(Contacts.DATE, contact.getDate().getStartOfDayTimestamp());
-		db.insertWithOnConflict(Contacts.TABLE_NAME, null, values, CONFLICT_IGNORE);
+		values.put(Metadata.KEY, key);
+		values.put(Metadata.VALUE, value);
+		db.insertWithOnConflict(Metadata.TABLE_NAME, null, values, CONFLICT_REPLACE);
 	}
 
 	public List<Contact> getContacts() {
-		SQLiteDatabase db = databaseOpenHelper.getReadableDatabase();
-		Cursor cursor = db
-				.query(Contacts.TABLE_NAME, Contacts.PROJECTION, null, null, null, null, Contacts.ID);
-		return getContactsFromCursor(cursor);
+		List<Contact> contacts = new ArrayList<>();
+		visitContacts(null, null, row -> contacts.add(row.toContact()));
+		return contacts;
 	}
 
 	public List<Contact> getContacts(DayDate dayDate) {
-		SQLiteDatabase db = databaseOpenHelper.getReadableDatabase();
-		Cursor cursor = db
-				.query(Contacts.TABLE_NAME, Contacts.PROJECTION, Contacts.DATE + "=?",
-						new String[] { "" + dayDate.getStartOfDayTimestamp() }, null, null, Contacts.ID);
-		return getContactsFromCursor(cursor);
+		List<Contact> contacts = new ArrayList<>();
+		databaseOpenHelper.getReadConnectionPool().read(db ->
+				readContacts(db, Contacts.DAY + "=?", new String[] { "" + dayDate.getEpochDay() }, null,
+						row -> contacts.add(row.toContact())));
+		return contacts;
 	}
 
-	private List<Contact> getContactsFromCursor(Cursor cursor) {
-		List<Contact> contacts = new ArrayList<>();
-		while (cursor.moveToNext()) {
-			int id = cursor.getInt(cursor.getColumnIndexOrThrow(Contacts.ID));
-			DayDate date = new DayDate(cursor.getLong(cursor.getColumnIndexOrThrow(Contacts.DATE)));
-			EphId ephid = new EphId(cursor.getBlob(cursor.getColumnIndexOrThrow(Contacts.EPHID)));
-			int associatedKnownCase = cursor.getInt(cursor.getColumnIndexOrThrow(Contacts.ASSOCIATED_KNOWN_CASE));
-			Contact contact = new Contact(id, date, ephid, associatedKnownCase);
-			contacts.add(contact);
+	/**
+	 * Reads the counter maintained with every write to the contacts table, without scanning it.
+	 */
+	public int getContactCount() {
+		return databaseOpenHelper.getReadConnectionPool().read(db ->
+				(int) getMetadata(db, Metadata.KEY_CONTACT_COUNT, 0));
+	}
+
+	/**
+	 * Streams the contacts ordered by id to the visitor on the calling thread, holding a read connection for the
+	 * duration of the read.
+	 *
+	 * @param firstDay the first day to read, or null to read all contacts
+	 * @return true if all rows were visited, false if the visitor stopped or the read was cancelled
+	 */
+	public boolean visitContacts(@Nullable DayDate firstDay, @Nullable CancellationSignal cancellationSignal,
+			@NonNull RowVisitor<ContactRow> visitor) {
+		return databaseOpenHelper.getReadConnectionPool().read(db -> visitContacts(db, firstDay, cancellationSignal, visitor));
+	}
+
+	static boolean visitContacts(SQLiteDatabase db, @Nullable DayDate firstDay, @Nullable CancellationSignal cancellationSignal,
+			@NonNull RowVisitor<ContactRow> visitor) {
+		if (firstDay == null) {
+			return readContacts(db, null, null, cancellationSignal, visitor);
 		}
-		cursor.close();
-		return contacts;
+		return readContacts(db, Contacts.DAY + ">=?", new String[] { "" + firstDay.getEpochDay() },
+				cancellationSignal, visitor);
 	}
 
-	public boolean wasContactExposed() {
-		for (Contact contact : getContacts()) {
-			if (contact.getAssociatedKnownCase() != 0) {
-				return true;
+	private static boolean readContacts(SQLiteDatabase db, String selection, String[] selectionArgs,
+			CancellationSignal cancellationSignal, RowVisitor<ContactRow> visitor) {
+		Cursor cursor;
+		try {
+			cursor = db.query(false, Contacts.TABLE_NAME, Contacts.PROJECTION, selection, selectionArgs, null, null,
+					Contacts.ID, null, cancellationSignal);
+		} catch (OperationCanceledException e) {
+			return false;
+		}
+		try {
+			int idIndex = cursor.getColumnIndexOrThrow(Contacts.ID);
+			int dayIndex = cursor.getColumnIndexOrThrow(Contacts.DAY);
+			int ephIdHighIndex = cursor.getColumnIndexOrThrow(Contacts.EPHID_HIGH);
+			int ephIdLowIndex = cursor.getColumnIndexOrThrow(Contacts.EPHID_LOW);
+			int associatedKnownCaseIndex = cursor.getColumnIndexOrThrow(Contacts.ASSOCIATED_KNOWN_CASE);
+			ContactRow row = new ContactRow();
+			while (cursor.moveToNext()) {
+				if (cancellationSignal != null && cancellationSignal.isCanceled()) {
+					return false;
+				}
+				row.id = cursor.getInt(idIndex);
+				row.day = cursor.getLong(dayIndex);
+				row.ephIdHigh = cursor.getLong(ephIdHighIndex);
+				row.ephIdLow = cursor.getLong(ephIdLowIndex);
+				row.associatedKnownCase = cursor.getInt(associatedKnownCaseIndex);
+				if (!visitor.visit(row)) {
+					return false;
+				}
 			}
+			return true;
+		} catch (OperationCanceledException e) {
+			return false;
+		} finally {
+			cursor.close();
 		}
-		return false;
+	}
+
+	/**
+	 * Reads the counter maintained with every write to the contacts table, without scanning it.
+	 */
+	public boolean wasContactExposed() {
+		return databaseOpenHelper.getReadConnectionPool().read(db ->
+				getMetadata(db, Metadata.KEY_EXPOSED_CONTACT_COUNT, 0) > 0);
 	}
 
 	public void recreateTables(ResultListener<Void> listener) {
-		databaseThread.post(() -> {
+		databaseExecutor.post(DatabaseExecutor.Lane.INTERACTIVE, () -> {
 			databaseOpenHelper.recreateTables(databaseOpenHelper.getWritableDatabase());
 			listener.onResult(null);
 		});
 	}
 
 	public void exportTo(Context context, OutputStream targetOut, ResultListener<Void> listener) {
-		databaseThread.post(() -> {
+		exportTo(context, new SnapshotBundle(), targetOut, listener);
+	}
+
+	/**
+	 * Adds a snapshot of this database to the bundle and writes the bundle to the target on the
+	 * {@link BackgroundExecutor}. The snapshot does not hold up handshake ingestion, see
+	 * {@link DatabaseOpenHelper#snapshotTo}.
+	 */
+	public void exportTo(Context context, SnapshotBundle bundle, OutputStream targetOut, ResultListener<Void> listener) {
+		bundle.add(DatabaseOpenHelper.DATABASE_NAME, DatabaseOpenHelper.DATABASE_VERSION,
+				target -> databaseOpenHelper.snapshotTo(target, databaseExecutor));
+		BackgroundExecutor.getInstance().execute(() -> {
 			try {
-				databaseOpenHelper.exportDatabaseTo(context, targetOut);
+				bundle.writeTo(targetOut, context.getCacheDir());
 			} catch (IOException e) {
-				e.printStackTrace();
+				Logger.e(TAG, e);
 			}
-			listener.onResult(null);
+			mainHandler.post(() -> listener.onResult(null));
 		});
 	}
 
@@ -6,23 +6,36 @@
 package org.dpppt.android.sdk.internal.database;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import androidx.annotation.NonNull;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.dpppt.android.sdk.internal.AppConfigManager;
+import org.dpppt.android.sdk.internal.logger.Logger;
 
 class DatabaseOpenHelper extends SQLiteOpenHelper {
 
-	private static final int DATABASE_VERSION = 1;
-	private static final String DATABASE_NAME = "dp3t_sdk.db";
+	private static final String TAG = "DatabaseOpenHelper";
+
+	static final int DATABASE_VERSION = Migrations.LATEST_VERSION;
+	static final String DATABASE_NAME = "dp3t_sdk.db";
 
 	private static DatabaseOpenHelper instance;
 
-	static DatabaseOpenHelper getInstance(@NonNull Context context) {
+	private final File databaseFile;
+	private final StorageProfile storageProfile;
+	private final ReadConnectionPool readConnectionPool;
+
+	static synchronized DatabaseOpenHelper getInstance(@NonNull Context context) {
 		if (instance == null) {
 			instance = new DatabaseOpenHelper(context);
 		}
@@ -31,6 +44,26 @@ class DatabaseOpenHelper extends SQLiteOpenHelper {
 
 	private DatabaseOpenHelper(@NonNull Context context) {
 		super(context, DATABASE_NAME, null, DATABASE_VERSION);
+		storageProfile = AppConfigManager.getInstance(context).getStorageProfile();
+		setWriteAheadLoggingEnabled(true);
+		databaseFile = context.getDatabasePath(DATABASE_NAME);
+		readConnectionPool = new ReadConnectionPool(databaseFile, storageProfile);
+	}
+
+	@Override
+	public void onConfigure(SQLiteDatabase db) {
+		// only takes effect before the first table is created, older databases are converted by the MaintenanceWorker
+		db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+		storageProfile.applyToWriter(db);
+	}
+
+	/**
+	 * Returns the read-only connections for queries outside the database thread. They see committed data only.
+	 */
+	ReadConnectionPool getReadConnectionPool() {
+		// the database file and its schema must exist before a read-only connection can be opened
+		getWritableDatabase();
+		return readConnectionPool;
 	}
 
 	@Override
@@ -40,7 +73,7 @@ class DatabaseOpenHelper extends SQLiteOpenHelper {
 
 	@Override
 	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-		//empty for now
+		Migrations.migrate(db, oldVersion, newVersion);
 	}
 
 	@Override
@@ -49,27 +82,87 @@ class DatabaseOpenHelper extends SQLiteOpenHelper {
 	}
 
 	public void recreateTables(@NonNull SQLiteDatabase db) {
-		new Transaction(db,
+		new Transaction(db, recreateStatements()).run();
+	}
+
+	static String[] recreateStatements() {
+		List<String> statements = new ArrayList<>(Arrays.asList(
+				HandshakeAggregates.drop(),
+				Metadata.drop(),
+				MatchingJournal.drop(),
 				Contacts.drop(),
 				KnownCases.drop(),
 				Handshakes.drop(),
 				KnownCases.create(),
 				Handshakes.create(),
-				Contacts.create()
-		).run();
+				Contacts.create(),
+				MatchingJournal.create(),
+				Metadata.create(),
+				HandshakeAggregates.create(),
+				Handshakes.createTimestampIndex(),
+				Contacts.createDayIndex(),
+				Contacts.createAssociatedKnownCaseIndex()
+		));
+		statements.addAll(Arrays.asList(Contacts.createCounters()));
+		return statements.toArray(new String[0]);
 	}
 
 
-	public void exportDatabaseTo(Context context, OutputStream targetOut) throws IOException {
-		File db = context.getDatabasePath(DATABASE_NAME);
-		FileInputStream fileInputStream = new FileInputStream(db);
-		byte[] buf = new byte[2048];
-		int len;
-		while ((len = fileInputStream.read(buf)) > 0) {
-			targetOut.write(buf, 0, len);
+	/**
+	 * Writes a consistent copy of the database into the target file. With {@code VACUUM INTO} the copy is made on a
+	 * read-only connection and writers continue meanwhile. Otherwise the database file is copied by a task on the
+	 * executor, which blocks writes only for the duration of a local file copy.
+	 *
+	 * @return the snapshot method used, see {@link DatabaseSnapshot}
+	 */
+	String snapshotTo(@NonNull File target, @NonNull DatabaseExecutor databaseExecutor) throws IOException {
+		ReadConnectionPool readConnectionPool = getReadConnectionPool();
+		if (readConnectionPool.read(DatabaseSnapshot::supportsVacuumInto)) {
+			DatabaseSnapshot.deleteIfExists(target);
+			try {
+				readConnectionPool.read(db -> {
+					DatabaseSnapshot.vacuumInto(db, target);
+					return null;
+				});
+				return DatabaseSnapshot.METHOD_VACUUM_INTO;
+			} catch (SQLiteException e) {
+				Logger.w(TAG, "VACUUM INTO failed, copying the file instead: " + e.getMessage());
+			}
+		}
+
+		if (databaseExecutor.isExecutorThread()) {
+			copyDatabaseFiles(target);
+			return DatabaseSnapshot.METHOD_FILE_COPY;
 		}
-		targetOut.close();
-		fileInputStream.close();
+		CountDownLatch copied = new CountDownLatch(1);
+		IOException[] error = new IOException[1];
+		databaseExecutor.post(DatabaseExecutor.Lane.INTERACTIVE, () -> {
+			try {
+				copyDatabaseFiles(target);
+			} catch (IOException | RuntimeException e) {
+				error[0] = e instanceof IOException ? (IOException) e : new IOException(e);
+			} finally {
+				copied.countDown();
+			}
+		});
+		try {
+			copied.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for the database copy", e);
+		}
+		if (error[0] != null) {
+			throw error[0];
+		}
+		return DatabaseSnapshot.METHOD_FILE_COPY;
+	}
+
+	private void copyDatabaseFiles(File target) throws IOException {
+		// move all committed transactions from the log into the database file before copying it
+		Cursor checkpoint = getWritableDatabase().rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null);
+		checkpoint.moveToFirst();
+		checkpoint.close();
+		DatabaseSnapshot.copyFiles(databaseFile, target);
 	}
 
 }
@@ -0,0 +1,122 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Ways to take a consistent copy of an SQLite database file while it is in use.
+ * <p>
+ * From SQLite 3.27 on (Android 11), {@code VACUUM INTO} writes a compacted copy of the snapshot a connection sees, so
+ * it can run on a read-only connection without blocking any writer. On older versions the caller has to keep writers
+ * out while {@link #copyFiles} copies the database file and its write-ahead log.
+ */
+public final class DatabaseSnapshot {
+
+	public static final String METHOD_VACUUM_INTO = "vacuum_into";
+	public static final String METHOD_FILE_COPY = "file_copy";
+
+	private static final int VACUUM_INTO_MAJOR_VERSION = 3;
+	private static final int VACUUM_INTO_MINOR_VERSION = 27;
+
+	private static final String WAL_SUFFIX = "-wal";
+
+	private DatabaseSnapshot() { }
+
+	public static String getSqliteVersion(@NonNull SQLiteDatabase db) {
+		Cursor cursor = db.rawQuery("SELECT sqlite_version()", null);
+		try {
+			return cursor.moveToFirst() ? cursor.getString(0) : "";
+		} finally {
+			cursor.close();
+		}
+	}
+
+	public static boolean supportsVacuumInto(@NonNull SQLiteDatabase db) {
+		return supportsVacuumInto(getSqliteVersion(db));
+	}
+
+	static boolean supportsVacuumInto(String sqliteVersion) {
+		String[] parts = sqliteVersion.split("\\.");
+		try {
+			int major = Integer.parseInt(parts[0]);
+			int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+			return major > VACUUM_INTO_MAJOR_VERSION ||
+					(major == VACUUM_INTO_MAJOR_VERSION && minor >= VACUUM_INTO_MINOR_VERSION);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the state of the database as seen by the connection into the target file, which must not exist yet. Must
+	 * not be called inside a transaction.
+	 */
+	public static void vacuumInto(@NonNull SQLiteDatabase db, @NonNull File target) {
+		db.execSQL("VACUUM INTO ?", new Object[] { target.getPath() });
+	}
+
+	/**
+	 * Copies the database file and the committed transactions of its write-ahead log into the target file. The caller
+	 * must make sure nothing writes to the database meanwhile.
+	 */
+	public static void copyFiles(@NonNull File database, @NonNull File target) throws IOException {
+		File targetWal = new File(target.getPath() + WAL_SUFFIX);
+		deleteIfExists(target);
+		deleteIfExists(targetWal);
+		copyFile(database, target);
+		File wal = new File(database.getPath() + WAL_SUFFIX);
+		if (wal.length() > 0) {
+			copyFile(wal, targetWal);
+			// opening the copy replays its log, closing it writes the log back into the copy and removes it
+			SQLiteDatabase.openDatabase(target.getPath(), null, SQLiteDatabase.OPEN_READWRITE).close();
+			deleteIfExists(targetWal);
+		}
+	}
+
+	static void copyFile(File source, File target) throws IOException {
+		FileOutputStream out = new FileOutputStream(target);
+		try {
+			transferTo(source, out.getChannel());
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the whole file to the channel, letting the kernel move the bytes where it can.
+	 */
+	static void transferTo(File source, WritableByteChannel target) throws IOException {
+		FileInputStream in = new FileInputStream(source);
+		try {
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			long position = 0;
+			while (position < size) {
+				position += channel.transferTo(position, size - position, target);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	public static void deleteIfExists(@NonNull File file) throws IOException {
+		if (file.exists() && !file.delete()) {
+			throw new IOException("could not delete " + file);
+		}
+	}
+
+}
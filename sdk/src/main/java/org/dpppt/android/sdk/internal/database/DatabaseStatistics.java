@@ -0,0 +1,49 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class DatabaseStatistics {
+
+	private final long sizeBytes;
+	private final long freeBytes;
+	private final Map<String, Long> rowCounts;
+
+	DatabaseStatistics(long sizeBytes, long freeBytes, Map<String, Long> rowCounts) {
+		this.sizeBytes = sizeBytes;
+		this.freeBytes = freeBytes;
+		this.rowCounts = Collections.unmodifiableMap(rowCounts);
+	}
+
+	/**
+	 * @return the size of the database file, without the write-ahead log
+	 */
+	public long getSizeBytes() {
+		return sizeBytes;
+	}
+
+	/**
+	 * @return the part of the size taken by free pages not yet returned to the file system
+	 */
+	public long getFreeBytes() {
+		return freeBytes;
+	}
+
+	/**
+	 * @return the number of rows per table name
+	 */
+	public Map<String, Long> getRowCounts() {
+		return rowCounts;
+	}
+
+	@Override
+	public String toString() {
+		return "DatabaseStatistics{sizeBytes=" + sizeBytes + ", freeBytes=" + freeBytes + ", rowCounts=" + rowCounts + "}";
+	}
+
+}
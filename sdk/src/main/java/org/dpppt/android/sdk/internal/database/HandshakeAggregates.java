@@ -0,0 +1,62 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+/**
+ * Summary of the handshakes with one EphId within one epoch. Replaces the raw handshakes once they are no longer needed
+ * in full detail.
+ */
+interface HandshakeAggregates {
+
+	String TABLE_NAME = "handshake_aggregates";
+
+	/**
+	 * Start of the epoch in milliseconds since the epoch.
+	 */
+	String EPOCH = "epoch";
+	/**
+	 * The EphId split as in {@link Handshakes#EPHID_HIGH} and {@link Handshakes#EPHID_LOW}.
+	 */
+	String EPHID_HIGH = "ephid_high";
+	String EPHID_LOW = "ephid_low";
+	String COUNT = "count";
+	String FIRST_SEEN = "first_seen";
+	String LAST_SEEN = "last_seen";
+	String RSSI_MIN = "rssi_min";
+	String RSSI_MAX = "rssi_max";
+	String RSSI_MEAN = "rssi_mean";
+	String TX_POWER_LEVEL_MIN = "tx_power_level_min";
+	String TX_POWER_LEVEL_MAX = "tx_power_level_max";
+	String TX_POWER_LEVEL_MEAN = "tx_power_level_mean";
+
+	String[] PROJECTION = {
+			EPOCH,
+			EPHID_HIGH,
+			EPHID_LOW,
+			COUNT,
+			FIRST_SEEN,
+			LAST_SEEN,
+			RSSI_MIN,
+			RSSI_MAX,
+			RSSI_MEAN,
+			TX_POWER_LEVEL_MIN,
+			TX_POWER_LEVEL_MAX,
+			TX_POWER_LEVEL_MEAN
+	};
+
+	static String create() {
+		return "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" + EPOCH + " INTEGER NOT NULL, " + EPHID_HIGH +
+				" INTEGER NOT NULL, " + EPHID_LOW + " INTEGER NOT NULL, " + COUNT + " INTEGER NOT NULL, " + FIRST_SEEN + " INTEGER NOT NULL, " + LAST_SEEN +
+				" INTEGER NOT NULL, " + RSSI_MIN + " INTEGER, " + RSSI_MAX + " INTEGER, " + RSSI_MEAN + " REAL, " +
+				TX_POWER_LEVEL_MIN + " INTEGER, " + TX_POWER_LEVEL_MAX + " INTEGER, " + TX_POWER_LEVEL_MEAN + " REAL, " +
+				"PRIMARY KEY (" + EPOCH + ", " + EPHID_HIGH + ", " + EPHID_LOW + "))";
+	}
+
+	static String drop() {
+		return "DROP TABLE IF EXISTS " + TABLE_NAME;
+	}
+
+}
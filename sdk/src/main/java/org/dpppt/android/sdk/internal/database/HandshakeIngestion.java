@@ -0,0 +1,369 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dpppt.android.sdk.BuildConfig;
+import org.dpppt.android.sdk.internal.BroadcastHelper;
+import org.dpppt.android.sdk.internal.crypto.CryptoConstants;
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.logger.Logger;
+
+/**
+ * Collects the handshakes of the scan and GATT callbacks in a {@link HandshakeRingBuffer} and writes them to the
+ * database in group commits on the database thread: one transaction and one update per batch instead of one
+ * per handshake.
+ * <p>
+ * A commit is scheduled {@link #COMMIT_DELAY} after the first handshake of a batch. Once the buffer is half full, or
+ * when a handshake had to be dropped because it was full, the buffer is drained immediately. Identical handshakes
+ * delivered back to back are coalesced into one row.
+ * <p>
+ * Except in calibration builds, which keep every raw handshake, the handshakes are not written as rows but folded
+ * into a {@link HandshakeAggregator}: one row of {@link HandshakeAggregates} per EphId and epoch, written once the
+ * epoch is over, when a reader needs all handshakes, or at the latest {@link #AGGREGATE_FLUSH_INTERVAL} after the first
+ * unwritten sighting. Aggregates written early are merged with the rest of their epoch.
+ */
+public class HandshakeIngestion {
+
+	private static final String TAG = "HandshakeIngestion";
+
+	private static final int BUFFER_CAPACITY = 1024;
+	private static final int MAX_HANDSHAKES_PER_TRANSACTION = 256;
+	private static final long COMMIT_DELAY = 1000;
+	private static final long AGGREGATE_FLUSH_INTERVAL = 60 * 1000;
+
+	private static final String INSERT_HANDSHAKE = "INSERT INTO " + Handshakes.TABLE_NAME + " (" + Handshakes.TIMESTAMP +
+			", " + Handshakes.EPHID_HIGH + ", " + Handshakes.EPHID_LOW + ", " + Handshakes.TX_POWER_LEVEL + ", " +
+			Handshakes.RSSI + ") VALUES (?, ?, ?, ?, ?)";
+
+	// the values on the right-hand side are the ones before the update, the means are weighted by count
+	static final String MERGE_AGGREGATE = "UPDATE " + HandshakeAggregates.TABLE_NAME + " SET " +
+			HandshakeAggregates.RSSI_MEAN + " = (" + HandshakeAggregates.RSSI_MEAN + " * " + HandshakeAggregates.COUNT +
+			" + ?6 * ?1) / (" + HandshakeAggregates.COUNT + " + ?1), " + HandshakeAggregates.TX_POWER_LEVEL_MEAN + " = (" +
+			HandshakeAggregates.TX_POWER_LEVEL_MEAN + " * " + HandshakeAggregates.COUNT + " + ?9 * ?1) / (" +
+			HandshakeAggregates.COUNT + " + ?1), " + HandshakeAggregates.COUNT + " = " + HandshakeAggregates.COUNT +
+			" + ?1, " + HandshakeAggregates.FIRST_SEEN + " = min(" + HandshakeAggregates.FIRST_SEEN + ", ?2), " +
+			HandshakeAggregates.LAST_SEEN + " = max(" + HandshakeAggregates.LAST_SEEN + ", ?3), " +
+			HandshakeAggregates.RSSI_MIN + " = min(" + HandshakeAggregates.RSSI_MIN + ", ?4), " +
+			HandshakeAggregates.RSSI_MAX + " = max(" + HandshakeAggregates.RSSI_MAX + ", ?5), " +
+			HandshakeAggregates.TX_POWER_LEVEL_MIN + " = min(" + HandshakeAggregates.TX_POWER_LEVEL_MIN + ", ?7), " +
+			HandshakeAggregates.TX_POWER_LEVEL_MAX + " = max(" + HandshakeAggregates.TX_POWER_LEVEL_MAX + ", ?8) WHERE " +
+			HandshakeAggregates.EPOCH + " = ?10 AND " + HandshakeAggregates.EPHID_HIGH + " = ?11 AND " +
+			HandshakeAggregates.EPHID_LOW + " = ?12";
+	static final String INSERT_AGGREGATE = "INSERT INTO " + HandshakeAggregates.TABLE_NAME + " (" +
+			HandshakeAggregates.COUNT + ", " + HandshakeAggregates.FIRST_SEEN + ", " + HandshakeAggregates.LAST_SEEN + ", " +
+			HandshakeAggregates.RSSI_MIN + ", " + HandshakeAggregates.RSSI_MAX + ", " + HandshakeAggregates.RSSI_MEAN + ", " +
+			HandshakeAggregates.TX_POWER_LEVEL_MIN + ", " + HandshakeAggregates.TX_POWER_LEVEL_MAX + ", " +
+			HandshakeAggregates.TX_POWER_LEVEL_MEAN + ", " + HandshakeAggregates.EPOCH + ", " +
+			HandshakeAggregates.EPHID_HIGH + ", " + HandshakeAggregates.EPHID_LOW + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private static HandshakeIngestion instance;
+
+	private final Context context;
+	private final DatabaseOpenHelper databaseOpenHelper;
+	private final DatabaseExecutor databaseExecutor;
+	private final HandshakeRingBuffer ringBuffer = new HandshakeRingBuffer(BUFFER_CAPACITY);
+
+	private final AtomicBoolean commitScheduled = new AtomicBoolean(false);
+	private final AtomicBoolean immediateCommitScheduled = new AtomicBoolean(false);
+	private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+	private final Runnable scheduledCommit = () -> {
+		commitScheduled.set(false);
+		commit(false);
+	};
+	private final Runnable immediateCommit = () -> {
+		immediateCommitScheduled.set(false);
+		commit(false);
+	};
+	private final Runnable scheduledFlush = () -> {
+		flushScheduled.set(false);
+		commit(true);
+	};
+
+	private final AtomicLong acceptedCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
+	private final AtomicLong committedCount = new AtomicLong();
+	private final AtomicLong writtenAggregateCount = new AtomicLong();
+	private long droppedCountLogged;
+
+	// only accessed on the database thread
+	private boolean aggregateHandshakes = !BuildConfig.FLAVOR.equals("calibration");
+	private final HandshakeAggregator aggregator = new HandshakeAggregator();
+	private SQLiteStatement insertStatement;
+	private SQLiteStatement mergeAggregateStatement;
+	private SQLiteStatement insertAggregateStatement;
+	private final byte[] previousEphId = new byte[CryptoConstants.KEY_LENGTH];
+	private long previousTimestamp;
+	private int previousTxPowerLevel;
+	private int previousRssi;
+	private boolean hasPrevious;
+	private int insertedInBatch;
+	private int drainedInBatch;
+	private int writtenHandshakesInBatch;
+
+	public static synchronized HandshakeIngestion getInstance(@NonNull Context context) {
+		if (instance == null) {
+			instance = new HandshakeIngestion(context.getApplicationContext());
+		}
+		return instance;
+	}
+
+	private HandshakeIngestion(Context context) {
+		this.context = context;
+		databaseOpenHelper = DatabaseOpenHelper.getInstance(context);
+		databaseExecutor = DatabaseExecutor.getInstance();
+	}
+
+	/**
+	 * Queues a handshake for the next group commit. Never blocks.
+	 *
+	 * @return false if the buffer was full and the handshake was dropped
+	 */
+	public boolean ingest(byte[] ephId, long timestamp, int txPowerLevel, int rssi) {
+		boolean accepted = ringBuffer.offer(ephId, timestamp, txPowerLevel, rssi);
+		if (accepted) {
+			acceptedCount.incrementAndGet();
+		} else {
+			droppedCount.incrementAndGet();
+		}
+
+		if (!accepted || ringBuffer.size() >= ringBuffer.capacity() / 2) {
+			if (immediateCommitScheduled.compareAndSet(false, true)) {
+				databaseExecutor.post(DatabaseExecutor.Lane.INGESTION, immediateCommit);
+			}
+		} else if (commitScheduled.compareAndSet(false, true)) {
+			databaseExecutor.postDelayed(DatabaseExecutor.Lane.INGESTION, scheduledCommit, COMMIT_DELAY);
+		}
+		return accepted;
+	}
+
+	/**
+	 * Writes all queued handshakes and aggregates to the database. Must be called on the database thread; readers of the
+	 * handshakes call this first to see every handshake ingested so far.
+	 */
+	void commitPending() {
+		commit(true);
+	}
+
+	/**
+	 * Switches between writing raw handshakes and aggregates. Must be called on the database thread.
+	 */
+	void setAggregateHandshakes(boolean aggregateHandshakes) {
+		commitPending();
+		this.aggregateHandshakes = aggregateHandshakes;
+	}
+
+	/**
+	 * @param flushAggregates whether to write the aggregates of the current epoch too, not only of completed ones
+	 */
+	private void commit(boolean flushAggregates) {
+		if (ringBuffer.size() == 0 && aggregator.size() == 0) {
+			return;
+		}
+		SQLiteDatabase db = databaseOpenHelper.getWritableDatabase();
+
+		// handshakes folded into the aggregator only count once their aggregates are written
+		int committed = 0;
+		if (ringBuffer.size() > 0) {
+			if (aggregateHandshakes) {
+				aggregatePending();
+			} else {
+				committed = insertPending(db);
+			}
+			hasPrevious = false;
+		}
+
+		if (aggregator.size() > 0) {
+			long now = System.currentTimeMillis();
+			long currentEpochStart = now / CryptoConstants.MILLISECONDS_PER_EPOCH * CryptoConstants.MILLISECONDS_PER_EPOCH;
+			committed += writeAggregates(db, flushAggregates ? Long.MAX_VALUE : currentEpochStart);
+			if (aggregator.size() > 0 && flushScheduled.compareAndSet(false, true)) {
+				databaseExecutor.postDelayed(DatabaseExecutor.Lane.INGESTION, scheduledFlush, AGGREGATE_FLUSH_INTERVAL);
+			}
+		}
+
+		committedCount.addAndGet(committed);
+		long dropped = droppedCount.get();
+		if (dropped != droppedCountLogged) {
+			Logger.w(TAG, "buffer full, dropped " + (dropped - droppedCountLogged) + " handshakes");
+			droppedCountLogged = dropped;
+		}
+		if (committed > 0) {
+			BroadcastHelper.sendNewHandshakesBroadcast(context, committed);
+		}
+	}
+
+	private int insertPending(SQLiteDatabase db) {
+		if (insertStatement == null) {
+			insertStatement = db.compileStatement(INSERT_HANDSHAKE);
+		}
+		int inserted = 0;
+		int drained;
+		do {
+			insertedInBatch = 0;
+			drainedInBatch = 0;
+			try {
+				db.beginTransaction();
+				try {
+					drained = ringBuffer.drain(this::insertHandshake, MAX_HANDSHAKES_PER_TRANSACTION);
+					db.setTransactionSuccessful();
+				} finally {
+					db.endTransaction();
+				}
+			} catch (RuntimeException e) {
+				// the drained handshakes are released from the buffer and rolled back, so they count as dropped
+				droppedCount.addAndGet(drainedInBatch);
+				droppedCountLogged += drainedInBatch;
+				Logger.e(TAG, "insert failed, dropped " + drainedInBatch + " handshakes: " + e);
+				throw e;
+			}
+			inserted += insertedInBatch;
+		} while (drained == MAX_HANDSHAKES_PER_TRANSACTION);
+		return inserted;
+	}
+
+	private void aggregatePending() {
+		int drained;
+		do {
+			drained = ringBuffer.drain(this::aggregateHandshake, MAX_HANDSHAKES_PER_TRANSACTION);
+		} while (drained == MAX_HANDSHAKES_PER_TRANSACTION);
+	}
+
+	/**
+	 * @return the number of handshakes in the aggregates written
+	 */
+	private int writeAggregates(SQLiteDatabase db, long epochsBefore) {
+		if (mergeAggregateStatement == null) {
+			mergeAggregateStatement = db.compileStatement(MERGE_AGGREGATE);
+			insertAggregateStatement = db.compileStatement(INSERT_AGGREGATE);
+		}
+		writtenHandshakesInBatch = 0;
+		int written;
+		db.beginTransaction();
+		try {
+			written = aggregator.visit(epochsBefore, this::writeAggregate);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		// only forget the aggregates once committed, a failed transaction leaves them for the next flush
+		aggregator.remove(epochsBefore);
+		writtenAggregateCount.addAndGet(written);
+		return writtenHandshakesInBatch;
+	}
+
+	private void writeAggregate(HandshakeAggregator.Aggregate aggregate) {
+		// both statements take the same values in the same order
+		bindAggregate(mergeAggregateStatement, aggregate);
+		int updated = mergeAggregateStatement.executeUpdateDelete();
+		mergeAggregateStatement.clearBindings();
+		if (updated == 0) {
+			bindAggregate(insertAggregateStatement, aggregate);
+			insertAggregateStatement.executeInsert();
+			insertAggregateStatement.clearBindings();
+		}
+		writtenHandshakesInBatch += aggregate.getCount();
+	}
+
+	private static void bindAggregate(SQLiteStatement statement, HandshakeAggregator.Aggregate aggregate) {
+		statement.bindLong(1, aggregate.getCount());
+		statement.bindLong(2, aggregate.getFirstSeen());
+		statement.bindLong(3, aggregate.getLastSeen());
+		statement.bindLong(4, aggregate.getRssiMin());
+		statement.bindLong(5, aggregate.getRssiMax());
+		statement.bindDouble(6, aggregate.getRssiMean());
+		statement.bindLong(7, aggregate.getTxPowerLevelMin());
+		statement.bindLong(8, aggregate.getTxPowerLevelMax());
+		statement.bindDouble(9, aggregate.getTxPowerLevelMean());
+		statement.bindLong(10, aggregate.getEpoch());
+		statement.bindLong(11, aggregate.getEphIdHigh());
+		statement.bindLong(12, aggregate.getEphIdLow());
+	}
+
+	private void aggregateHandshake(byte[] ephIdBuffer, int offset, long timestamp, int txPowerLevel, int rssi) {
+		if (isRepeated(ephIdBuffer, offset, timestamp, txPowerLevel, rssi)) {
+			return;
+		}
+		aggregator.add(ephIdBuffer, offset, timestamp, txPowerLevel, rssi);
+	}
+
+	private void insertHandshake(byte[] ephIdBuffer, int offset, long timestamp, int txPowerLevel, int rssi) {
+		drainedInBatch++;
+		if (isRepeated(ephIdBuffer, offset, timestamp, txPowerLevel, rssi)) {
+			return;
+		}
+		insertStatement.bindLong(1, timestamp);
+		insertStatement.bindLong(2, EphId.readLong(ephIdBuffer, offset));
+		insertStatement.bindLong(3, EphId.readLong(ephIdBuffer, offset + 8));
+		insertStatement.bindLong(4, txPowerLevel);
+		insertStatement.bindLong(5, rssi);
+		insertStatement.executeInsert();
+		insertStatement.clearBindings();
+		insertedInBatch++;
+	}
+
+	/**
+	 * @return true if the handshake is identical to the previous one and has to be dropped
+	 */
+	private boolean isRepeated(byte[] ephIdBuffer, int offset, long timestamp, int txPowerLevel, int rssi) {
+		if (hasPrevious && timestamp == previousTimestamp && txPowerLevel == previousTxPowerLevel && rssi == previousRssi &&
+				rangeEquals(ephIdBuffer, offset, previousEphId)) {
+			coalescedCount.incrementAndGet();
+			return true;
+		}
+		System.arraycopy(ephIdBuffer, offset, previousEphId, 0, CryptoConstants.KEY_LENGTH);
+		previousTimestamp = timestamp;
+		previousTxPowerLevel = txPowerLevel;
+		previousRssi = rssi;
+		hasPrevious = true;
+		return false;
+	}
+
+	private static boolean rangeEquals(byte[] buffer, int offset, byte[] data) {
+		for (int i = 0; i < data.length; i++) {
+			if (buffer[offset + i] != data[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public long getAcceptedCount() {
+		return acceptedCount.get();
+	}
+
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	public long getCommittedCount() {
+		return committedCount.get();
+	}
+
+	/**
+	 * @return the number of aggregates written, counting an aggregate merged into an existing row again
+	 */
+	public long getWrittenAggregateCount() {
+		return writtenAggregateCount.get();
+	}
+
+	public int getPendingCount() {
+		return ringBuffer.size();
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import org.dpppt.android.sdk.internal.crypto.EphId;
+import org.dpppt.android.sdk.internal.database.models.Handshake;
+
+/**
+ * Mutable view of a row of the handshakes table, reused for all rows of a {@link Database#visitHandshakes} read.
+ */
+public class HandshakeRow {
+
+	int id;
+	long timestamp;
+	long ephIdHigh;
+	long ephIdLow;
+	int txPowerLevel;
+	int rssi;
+
+	public int getId() {
+		return id;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public long getEphIdHigh() {
+		return ephIdHigh;
+	}
+
+	public long getEphIdLow() {
+		return ephIdLow;
+	}
+
+	public EphId getEphId() {
+		return new EphId(ephIdHigh, ephIdLow);
+	}
+
+	public int getTxPowerLevel() {
+		return txPowerLevel;
+	}
+
+	public int getRssi() {
+		return rssi;
+	}
+
+	public Handshake toHandshake() {
+		return new Handshake(id, timestamp, getEphId(), txPowerLevel, rssi);
+	}
+
+}
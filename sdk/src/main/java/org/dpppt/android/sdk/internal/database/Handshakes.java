@@ -11,24 +11,36 @@ interface Handshakes {
 
 	String ID = "id";
 	String TIMESTAMP = "timestamp";
-	String EPHID = "ephid";
+	/**
+	 * First 8 bytes of the EphId, read as a big-endian long.
+	 */
+	String EPHID_HIGH = "ephid_high";
+	/**
+	 * Last 8 bytes of the EphId, read as a big-endian long.
+	 */
+	String EPHID_LOW = "ephid_low";
 	String TX_POWER_LEVEL = "tx_power_level";
 	String RSSI = "rssi";
 
 	String[] PROJECTION = {
 			ID,
 			TIMESTAMP,
-			EPHID,
+			EPHID_HIGH,
+			EPHID_LOW,
 			TX_POWER_LEVEL,
 			RSSI
 	};
 
 	static String create() {
 		return "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" + ID + " INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
-				TIMESTAMP + " INTEGER NOT NULL, " + EPHID + " BLOB NOT NULL, " +
+				TIMESTAMP + " INTEGER NOT NULL, " + EPHID_HIGH + " INTEGER NOT NULL, " + EPHID_LOW + " INTEGER NOT NULL, " +
 				TX_POWER_LEVEL + " INTEGER, " + RSSI + " INTEGER)";
 	}
 
+	static String createTimestampIndex() {
+		return "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_" + TIMESTAMP + " ON " + TABLE_NAME + " (" + TIMESTAMP + ")";
+	}
+
 	static String drop() {
 		return "DROP TABLE IF EXISTS " + TABLE_NAME;
 	}
@@ -0,0 +1,46 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+/**
+ * Matches known cases while more of them are still being inserted, so that reading the exposee lists of the following
+ * days overlaps with matching the ones already read. Every {@link #matchInsertedCases()} queues a run of the same
+ * {@link MatchingTransaction} on the bulk lane, after the insertions queued so far; all runs share the snapshot of the
+ * contacts loaded by the first one and only match the cases not matched yet. {@link #finish()} queues the last run and
+ * releases the snapshot.
+ */
+public class KnownCaseMatching {
+
+	private final DatabaseExecutor databaseExecutor;
+	private final MatchingTransaction matchingTransaction;
+
+	KnownCaseMatching(DatabaseExecutor databaseExecutor, MatchingTransaction matchingTransaction) {
+		this.databaseExecutor = databaseExecutor;
+		this.matchingTransaction = matchingTransaction;
+	}
+
+	/**
+	 * Matches the known cases inserted so far.
+	 */
+	public void matchInsertedCases() {
+		databaseExecutor.post(DatabaseExecutor.Lane.BULK, matchingTransaction);
+	}
+
+	/**
+	 * Matches the remaining known cases, including work left over by an earlier run, and releases the contacts. Must be
+	 * called once no more cases are inserted.
+	 */
+	public void finish() {
+		databaseExecutor.post(DatabaseExecutor.Lane.BULK, () -> {
+			try {
+				matchingTransaction.run();
+			} finally {
+				matchingTransaction.releaseContacts();
+			}
+		});
+	}
+
+}
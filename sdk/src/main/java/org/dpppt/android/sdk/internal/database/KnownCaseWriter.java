@@ -0,0 +1,142 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dpppt.android.sdk.internal.backend.ExposedListReader;
+import org.dpppt.android.sdk.internal.crypto.CryptoConstants;
+import org.dpppt.android.sdk.internal.util.DayDate;
+
+/**
+ * Inserts the known cases of one day as they are decoded by an {@link ExposedListReader}. The cases are collected in
+ * buffers of {@link #CASES_PER_BUFFER} fixed size key slots; a full buffer is inserted together with the
+ * {@link MatchingJournal} entries of its cases in one transaction on the bulk lane of the {@link DatabaseExecutor} and
+ * then returned to a pool shared by all writers. Once all {@link #MAX_BUFFERS} buffers wait for insertion a writer
+ * blocks, so memory stays bounded however many cases a day has.
+ * <p>
+ * The cases are matched by the next {@link MatchingTransaction}. A writer is used by one thread, never the database
+ * thread, and has to be flushed at the end.
+ */
+public class KnownCaseWriter implements ExposedListReader.ExposeeHandler {
+
+	private static final int CASES_PER_BUFFER = 500;
+	private static final int MAX_BUFFERS = 8;
+	private static final int KEY_LENGTH = CryptoConstants.SECRET_KEY_LENGTH;
+
+	private static final String INSERT_KNOWN_CASE = "INSERT OR IGNORE INTO " + KnownCases.TABLE_NAME + " (" +
+			KnownCases.ONSET + ", " + KnownCases.BUCKET_DAY + ", " + KnownCases.KEY + ") VALUES (?, ?, ?)";
+	private static final String INSERT_JOURNAL_ENTRY = "INSERT INTO " + MatchingJournal.TABLE_NAME + " (" +
+			MatchingJournal.KNOWN_CASE_ID + ", " + MatchingJournal.PENDING_FROM + ", " + MatchingJournal.PENDING_UNTIL +
+			") VALUES (?, ?, ?)";
+
+	private static final BlockingQueue<CaseBuffer> freeBuffers = new ArrayBlockingQueue<>(MAX_BUFFERS);
+	private static final AtomicInteger allocatedBuffers = new AtomicInteger();
+
+	private final SQLiteDatabase db;
+	private final DatabaseExecutor databaseExecutor;
+	private final long bucketDay;
+	private CaseBuffer buffer;
+
+	KnownCaseWriter(SQLiteDatabase db, DatabaseExecutor databaseExecutor, DayDate bucketDate) {
+		this.db = db;
+		this.databaseExecutor = databaseExecutor;
+		this.bucketDay = bucketDate.getEpochDay();
+	}
+
+	@Override
+	public void onExposee(byte[] key, long onsetEpochDay) throws InterruptedIOException {
+		if (buffer == null) {
+			buffer = takeBuffer();
+		}
+		System.arraycopy(key, 0, buffer.keys, buffer.size * KEY_LENGTH, KEY_LENGTH);
+		buffer.onsets[buffer.size++] = onsetEpochDay;
+		if (buffer.size == CASES_PER_BUFFER) {
+			flush();
+		}
+	}
+
+	/**
+	 * Queues the cases collected so far for insertion.
+	 */
+	public void flush() {
+		if (buffer == null) {
+			return;
+		}
+		CaseBuffer fullBuffer = buffer;
+		buffer = null;
+		databaseExecutor.post(DatabaseExecutor.Lane.BULK, () -> {
+			try {
+				insert(fullBuffer);
+			} finally {
+				fullBuffer.size = 0;
+				freeBuffers.offer(fullBuffer);
+			}
+		});
+	}
+
+	private void insert(CaseBuffer buffer) {
+		SQLiteStatement insertKnownCase = db.compileStatement(INSERT_KNOWN_CASE);
+		SQLiteStatement insertJournalEntry = db.compileStatement(INSERT_JOURNAL_ENTRY);
+		db.beginTransaction();
+		try {
+			for (int i = 0; i < buffer.size; i++) {
+				// the statement reads the key when it is executed, so one array serves all cases
+				System.arraycopy(buffer.keys, i * KEY_LENGTH, buffer.key, 0, KEY_LENGTH);
+				insertKnownCase.bindLong(1, buffer.onsets[i]);
+				insertKnownCase.bindLong(2, bucketDay);
+				insertKnownCase.bindBlob(3, buffer.key);
+				long idOfAddedCase = insertKnownCase.executeInsert();
+				if (idOfAddedCase == -1) {
+					//key was already in the database, so we can ignore it
+					continue;
+				}
+				insertJournalEntry.bindLong(1, idOfAddedCase);
+				insertJournalEntry.bindLong(2, buffer.onsets[i]);
+				insertJournalEntry.bindLong(3, bucketDay);
+				insertJournalEntry.executeInsert();
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			insertKnownCase.close();
+			insertJournalEntry.close();
+		}
+	}
+
+	private static CaseBuffer takeBuffer() throws InterruptedIOException {
+		CaseBuffer buffer = freeBuffers.poll();
+		if (buffer != null) {
+			return buffer;
+		}
+		if (allocatedBuffers.incrementAndGet() <= MAX_BUFFERS) {
+			return new CaseBuffer();
+		}
+		allocatedBuffers.decrementAndGet();
+		try {
+			return freeBuffers.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for a known case buffer");
+		}
+	}
+
+	private static class CaseBuffer {
+
+		final byte[] keys = new byte[CASES_PER_BUFFER * KEY_LENGTH];
+		final long[] onsets = new long[CASES_PER_BUFFER];
+		final byte[] key = new byte[KEY_LENGTH];
+		int size;
+
+	}
+
+}
@@ -10,8 +10,17 @@ interface KnownCases {
 	String TABLE_NAME = "known_cases";
 
 	String ID = "id";
+	/**
+	 * Days since 1970-01-01, see {@link org.dpppt.android.sdk.internal.util.DayDate#getEpochDay()}.
+	 */
 	String ONSET = "onset";
+	/**
+	 * Days since 1970-01-01.
+	 */
 	String BUCKET_DAY = "day";
+	/**
+	 * The raw secret key of the case.
+	 */
 	String KEY = "key";
 
 	String[] PROJECTION = {
@@ -23,7 +32,7 @@ interface KnownCases {
 
 	static String create() {
 		return "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" + ID + " INTEGER PRIMARY KEY NOT NULL, " + ONSET +
-				" INTEGER NOT NULL," + BUCKET_DAY + " INTEGER NOT NULL, " + KEY + " TEXT NOT NULL, "
+				" INTEGER NOT NULL," + BUCKET_DAY + " INTEGER NOT NULL, " + KEY + " BLOB NOT NULL, "
 				+ "CONSTRAINT no_duplicates UNIQUE (" + BUCKET_DAY + ", " + KEY + ") )";
 	}
 
@@ -0,0 +1,41 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+/**
+ * Persistent record of the matching work still to be done per known case. Days from the onset of a case up to
+ * {@link #PENDING_FROM} are completed, days from {@link #PENDING_FROM} to {@link #PENDING_UNTIL} are still pending.
+ * A row is written in the same transaction as its known case and removed once the case is completely matched.
+ */
+interface MatchingJournal {
+
+	String TABLE_NAME = "matching_journal";
+
+	String KNOWN_CASE_ID = "known_case_id";
+	/**
+	 * Days since 1970-01-01, as {@link #PENDING_UNTIL}.
+	 */
+	String PENDING_FROM = "pending_from";
+	String PENDING_UNTIL = "pending_until";
+
+	String[] PROJECTION = {
+			KNOWN_CASE_ID,
+			PENDING_FROM,
+			PENDING_UNTIL
+	};
+
+	static String create() {
+		return "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" + KNOWN_CASE_ID + " INTEGER PRIMARY KEY NOT NULL, " +
+				PENDING_FROM + " INTEGER NOT NULL, " + PENDING_UNTIL + " INTEGER NOT NULL, " +
+				"FOREIGN KEY (" + KNOWN_CASE_ID + ") REFERENCES " +
+				KnownCases.TABLE_NAME + " (" + KnownCases.ID + ") ON DELETE CASCADE)";
+	}
+
+	static String drop() {
+		return "DROP TABLE IF EXISTS " + TABLE_NAME;
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dpppt.android.sdk.internal.BroadcastHelper;
+import org.dpppt.android.sdk.internal.crypto.CryptoModule;
+import org.dpppt.android.sdk.internal.crypto.MatchCollector;
+import org.dpppt.android.sdk.internal.crypto.MatchingJob;
+import org.dpppt.android.sdk.internal.crypto.ParallelContactMatcher;
+import org.dpppt.android.sdk.internal.util.DayDate;
+
+/**
+ * Works off every pending {@link MatchingJournal} entry, as inserted by the {@link KnownCaseWriter}, including the
+ * ones left over by an earlier run that was killed. All pending cases are matched against a single snapshot of the
+ * stored contacts, in parallel and in checkpoints of up to {@link #CASES_PER_CHECKPOINT} cases and
+ * {@link #DAYS_PER_CHECKPOINT} days: each checkpoint commits the contact updates of its cases together with their
+ * journal entries, advanced past the matched days or removed once a case is complete, so completed days are never
+ * matched again and interrupted work is picked up by the next run. Between two checkpoints the transaction yields to
+ * the more important lanes of the {@link DatabaseExecutor}.
+ * <p>
+ * A transaction can be run repeatedly, see {@link KnownCaseMatching}: the contacts are loaded by the first run with
+ * pending cases and kept for the following runs until {@link #releaseContacts()}.
+ */
+class MatchingTransaction implements Runnable {
+
+	private static final int CASES_PER_CHECKPOINT = 500;
+	private static final int DAYS_PER_CHECKPOINT = 7;
+
+	private Context context;
+	private Database database;
+	private DatabaseExecutor databaseExecutor;
+	private SQLiteDatabase db;
+	private ContactsIndex contactsIndex;
+	private int numberOfMatches = 0;
+
+	MatchingTransaction(@NonNull Context context, @NonNull Database database, @NonNull DatabaseExecutor databaseExecutor,
+			@NonNull SQLiteDatabase db) {
+		this.context = context;
+		this.database = database;
+		this.databaseExecutor = databaseExecutor;
+		this.db = db;
+	}
+
+	@Override
+	public void run() {
+		List<MatchingJob> pendingJobs = database.getPendingMatchingJobs();
+		if (pendingJobs.isEmpty()) {
+			return;
+		}
+
+		if (contactsIndex == null) {
+			contactsIndex = loadContacts();
+		}
+		numberOfMatches = 0;
+
+		for (int start = 0; start < pendingJobs.size(); start += CASES_PER_CHECKPOINT) {
+			List<MatchingJob> jobs = pendingJobs.subList(start, Math.min(start + CASES_PER_CHECKPOINT, pendingJobs.size()));
+			while (!jobs.isEmpty()) {
+				List<MatchingJob> steps = new ArrayList<>(jobs.size());
+				for (MatchingJob job : jobs) {
+					steps.add(job.limitToDays(DAYS_PER_CHECKPOINT));
+				}
+				MatchCollector matchCollector = new MatchCollector();
+				ParallelContactMatcher.match(steps, contactsIndex, matchCollector);
+				jobs = commitCheckpoint(jobs, steps, matchCollector);
+				databaseExecutor.yieldToPriorityWork(DatabaseExecutor.Lane.BULK);
+			}
+		}
+
+		if (numberOfMatches > 0) {
+			BroadcastHelper.sendNewMatchesBroadcast(context, numberOfMatches);
+		}
+	}
+
+	/**
+	 * Drops the contacts loaded by the first run, the next run loads them again.
+	 */
+	void releaseContacts() {
+		contactsIndex = null;
+	}
+
+	private ContactsIndex loadContacts() {
+		DayDate firstDayToLoad = new DayDate().subtractDays(CryptoModule.NUMBER_OF_DAYS_TO_KEEP_DATA);
+		ContactsIndex contactsIndex = new ContactsIndex();
+		Database.visitContacts(db, firstDayToLoad, null, row -> {
+			contactsIndex.add(row.toContact());
+			return true;
+		});
+		return contactsIndex;
+	}
+
+	/**
+	 * @param steps the part of each job matched in this checkpoint, see {@link MatchingJob#limitToDays}
+	 * @return the rest of the jobs not completed yet
+	 */
+	private List<MatchingJob> commitCheckpoint(List<MatchingJob> jobs, List<MatchingJob> steps,
+			MatchCollector matchCollector) {
+		List<MatchingJob> remainingJobs = new ArrayList<>();
+		db.beginTransaction();
+		try {
+			matchCollector.drain((knownCaseId, contact) -> {
+				ContentValues updateValues = new ContentValues();
+				updateValues.put(Contacts.ASSOCIATED_KNOWN_CASE, knownCaseId);
+				db.update(Contacts.TABLE_NAME, updateValues, Contacts.ID + "=" + contact.getId(), null);
+				numberOfMatches++;
+			});
+			for (int i = 0; i < jobs.size(); i++) {
+				MatchingJob job = jobs.get(i);
+				MatchingJob remainingJob = job.continueAfter(steps.get(i).getBucketDate());
+				if (remainingJob == null) {
+					db.delete(MatchingJournal.TABLE_NAME, MatchingJournal.KNOWN_CASE_ID + "=" + job.getKnownCaseId(), null);
+				} else {
+					ContentValues journalValues = new ContentValues();
+					journalValues.put(MatchingJournal.PENDING_FROM, remainingJob.getFirstDayToMatch().getEpochDay());
+					db.update(MatchingJournal.TABLE_NAME, journalValues,
+							MatchingJournal.KNOWN_CASE_ID + "=" + job.getKnownCaseId(), null);
+					remainingJobs.add(remainingJob);
+				}
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		return remainingJobs;
+	}
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+/**
+ * Key-value store for the bookkeeping of the database, such as the watermark of the contact generation.
+ */
+interface Metadata {
+
+	String TABLE_NAME = "metadata";
+
+	String KEY = "key";
+	String VALUE = "value";
+
+	/**
+	 * Start of the first epoch whose handshakes have not been converted to contacts yet.
+	 */
+	String KEY_CONTACTS_WATERMARK = "contacts_watermark";
+
+	/**
+	 * Number of rows in the contacts table, see {@link Contacts#createCounters()}.
+	 */
+	String KEY_CONTACT_COUNT = "contact_count";
+
+	/**
+	 * Number of contacts associated with a known case, see {@link Contacts#createCounters()}.
+	 */
+	String KEY_EXPOSED_CONTACT_COUNT = "exposed_contact_count";
+
+	String[] PROJECTION = {
+			KEY,
+			VALUE
+	};
+
+	static String create() {
+		return "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" + KEY + " TEXT PRIMARY KEY NOT NULL, " + VALUE +
+				" INTEGER NOT NULL)";
+	}
+
+	static String drop() {
+		return "DROP TABLE IF EXISTS " + TABLE_NAME;
+	}
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import androidx.annotation.NonNull;
+
+import java.nio.charset.Charset;
+
+import org.dpppt.android.sdk.internal.util.Base64Util;
+import org.dpppt.android.sdk.internal.util.DayDate;
+
+/**
+ * Ordered schema migrations of the tracing database. A database at version n is upgraded by applying every migration
+ * with a target version above n in order; the schema created from scratch in
+ * {@link DatabaseOpenHelper#recreateTables(SQLiteDatabase)} must equal the one of a database migrated from version 1.
+ * Add a new migration for every schema change instead of editing a released one. Statements of a table spec change
+ * with the schema, so once a later migration changes a table, earlier migrations keep their statements as literals.
+ */
+final class Migrations {
+
+	private static final String MATCHING_JOURNAL_V2 = "CREATE TABLE IF NOT EXISTS matching_journal (" +
+			"known_case_id INTEGER PRIMARY KEY NOT NULL, pending_from INTEGER NOT NULL, pending_until INTEGER NOT NULL, " +
+			"FOREIGN KEY (known_case_id) REFERENCES known_cases (id) ON DELETE CASCADE)";
+	private static final String HANDSHAKES_TIMESTAMP_INDEX_V3 =
+			"CREATE INDEX IF NOT EXISTS handshakes_timestamp ON handshakes (timestamp)";
+	private static final String CONTACTS_ASSOCIATED_KNOWN_CASE_INDEX_V3 =
+			"CREATE INDEX IF NOT EXISTS contacts_associated_known_case ON contacts (associated_known_case)";
+	private static final String CONTACTS_DATE_INDEX_V3 =
+			"CREATE INDEX IF NOT EXISTS contacts_date ON contacts (date, ephid, associated_known_case)";
+	private static final String HANDSHAKE_AGGREGATES_V5 = "CREATE TABLE IF NOT EXISTS handshake_aggregates (" +
+			"epoch INTEGER NOT NULL, ephid BLOB NOT NULL, count INTEGER NOT NULL, first_seen INTEGER NOT NULL, " +
+			"last_seen INTEGER NOT NULL, rssi_min INTEGER, rssi_max INTEGER, rssi_mean REAL, tx_power_level_min INTEGER, " +
+			"tx_power_level_max INTEGER, tx_power_level_mean REAL, PRIMARY KEY (epoch, ephid))";
+	private static final String[] CONTACT_COUNTERS_V6 = {
+			"INSERT OR REPLACE INTO metadata (key, value) SELECT 'contact_count', count(*) FROM contacts",
+			"INSERT OR REPLACE INTO metadata (key, value) SELECT 'exposed_contact_count', count(*) FROM contacts " +
+					"WHERE associated_known_case > 0",
+			"CREATE TRIGGER IF NOT EXISTS contacts_count_insert AFTER INSERT ON contacts BEGIN " +
+					"UPDATE metadata SET value = value + 1 WHERE key = 'contact_count'; " +
+					"UPDATE metadata SET value = value + (CASE WHEN NEW.associated_known_case > 0 THEN 1 ELSE 0 END) " +
+					"WHERE key = 'exposed_contact_count'; END",
+			"CREATE TRIGGER IF NOT EXISTS contacts_count_delete AFTER DELETE ON contacts BEGIN " +
+					"UPDATE metadata SET value = value - 1 WHERE key = 'contact_count'; " +
+					"UPDATE metadata SET value = value - (CASE WHEN OLD.associated_known_case > 0 THEN 1 ELSE 0 END) " +
+					"WHERE key = 'exposed_contact_count'; END",
+			"CREATE TRIGGER IF NOT EXISTS contacts_count_update AFTER UPDATE OF associated_known_case ON contacts BEGIN " +
+					"UPDATE metadata SET value = value + (CASE WHEN NEW.associated_known_case > 0 THEN 1 ELSE 0 END) - " +
+					"(CASE WHEN OLD.associated_known_case > 0 THEN 1 ELSE 0 END) WHERE key = 'exposed_contact_count'; END"
+	};
+
+	static final Migration[] MIGRATIONS = {
+			new Migration(2,
+					MATCHING_JOURNAL_V2),
+			new Migration(3,
+					HANDSHAKES_TIMESTAMP_INDEX_V3,
+					CONTACTS_DATE_INDEX_V3,
+					CONTACTS_ASSOCIATED_KNOWN_CASE_INDEX_V3),
+			new Migration(4,
+					Metadata.create()),
+			new Migration(5,
+					HANDSHAKE_AGGREGATES_V5),
+			new Migration(6,
+					CONTACT_COUNTERS_V6),
+			new Migration(7,
+					Migrations::migrateToBinaryColumns),
+	};
+
+	static final int LATEST_VERSION = MIGRATIONS[MIGRATIONS.length - 1].toVersion;
+
+	private Migrations() { }
+
+	/**
+	 * Applies all migrations after fromVersion up to toVersion. Runs inside the upgrade transaction of the open helper.
+	 */
+	static void migrate(@NonNull SQLiteDatabase db, int fromVersion, int toVersion) {
+		for (Migration migration : MIGRATIONS) {
+			if (migration.toVersion > fromVersion && migration.toVersion <= toVersion) {
+				migration.apply(db);
+			}
+		}
+	}
+
+	/**
+	 * Version 7 stores EphIds as two integers, days as days since 1970-01-01 and the keys of known cases as raw bytes.
+	 * SQLite cannot change the type of a column, so every table is copied to a temporary table with its values
+	 * converted, recreated and filled again with the same row ids. Keys are decoded from Base64 in Java.
+	 */
+	private static void migrateToBinaryColumns(SQLiteDatabase db) {
+		long millisecondsPerDay = DayDate.MILLISECONDS_PER_DAY;
+		db.execSQL("CREATE TEMP TABLE migrate_known_cases AS SELECT id, onset / " + millisecondsPerDay + " AS onset, " +
+				"day / " + millisecondsPerDay + " AS day, key FROM known_cases");
+		db.execSQL("CREATE TEMP TABLE migrate_contacts AS SELECT id, date / " + millisecondsPerDay + " AS day, " +
+				readLongFromBlob("ephid", 0) + " AS ephid_high, " + readLongFromBlob("ephid", 8) + " AS ephid_low, " +
+				"associated_known_case FROM contacts");
+		db.execSQL("CREATE TEMP TABLE migrate_handshakes AS SELECT id, timestamp, " + readLongFromBlob("ephid", 0) +
+				" AS ephid_high, " + readLongFromBlob("ephid", 8) + " AS ephid_low, tx_power_level, rssi FROM handshakes");
+		db.execSQL("CREATE TEMP TABLE migrate_handshake_aggregates AS SELECT epoch, " + readLongFromBlob("ephid", 0) +
+				" AS ephid_high, " + readLongFromBlob("ephid", 8) + " AS ephid_low, count, first_seen, last_seen, rssi_min, " +
+				"rssi_max, rssi_mean, tx_power_level_min, tx_power_level_max, tx_power_level_mean FROM handshake_aggregates");
+		db.execSQL("CREATE TEMP TABLE migrate_matching_journal AS SELECT known_case_id, pending_from / " +
+				millisecondsPerDay + " AS pending_from, pending_until / " + millisecondsPerDay + " AS pending_until " +
+				"FROM matching_journal");
+
+		// indexes and the counter triggers are dropped with their tables
+		db.execSQL(HandshakeAggregates.drop());
+		db.execSQL(MatchingJournal.drop());
+		db.execSQL(Contacts.drop());
+		db.execSQL(KnownCases.drop());
+		db.execSQL(Handshakes.drop());
+		db.execSQL(KnownCases.create());
+		db.execSQL(Handshakes.create());
+		db.execSQL(Contacts.create());
+		db.execSQL(MatchingJournal.create());
+		db.execSQL(HandshakeAggregates.create());
+
+		copyKnownCases(db);
+		db.execSQL("INSERT OR IGNORE INTO " + Contacts.TABLE_NAME + " SELECT * FROM migrate_contacts");
+		db.execSQL("INSERT INTO " + Handshakes.TABLE_NAME + " SELECT * FROM migrate_handshakes");
+		db.execSQL("INSERT OR IGNORE INTO " + HandshakeAggregates.TABLE_NAME + " SELECT * FROM migrate_handshake_aggregates");
+		db.execSQL("INSERT INTO " + MatchingJournal.TABLE_NAME + " SELECT * FROM migrate_matching_journal");
+
+		db.execSQL(Handshakes.createTimestampIndex());
+		db.execSQL(Contacts.createDayIndex());
+		db.execSQL(Contacts.createAssociatedKnownCaseIndex());
+		// creates the triggers after the copy, so the counters are computed once from the copied rows
+		for (String statement : Contacts.createCounters()) {
+			db.execSQL(statement);
+		}
+
+		db.execSQL("DROP TABLE migrate_known_cases");
+		db.execSQL("DROP TABLE migrate_contacts");
+		db.execSQL("DROP TABLE migrate_handshakes");
+		db.execSQL("DROP TABLE migrate_handshake_aggregates");
+		db.execSQL("DROP TABLE migrate_matching_journal");
+	}
+
+	private static void copyKnownCases(SQLiteDatabase db) {
+		SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO " + KnownCases.TABLE_NAME + " (" +
+				KnownCases.ID + ", " + KnownCases.ONSET + ", " + KnownCases.BUCKET_DAY + ", " + KnownCases.KEY +
+				") VALUES (?, ?, ?, ?)");
+		Cursor cursor = db.rawQuery("SELECT id, onset, day, key FROM migrate_known_cases", null);
+		try {
+			while (cursor.moveToNext()) {
+				insert.bindLong(1, cursor.getLong(0));
+				insert.bindLong(2, cursor.getLong(1));
+				insert.bindLong(3, cursor.getLong(2));
+				insert.bindBlob(4, decodeKey(cursor.getString(3)));
+				insert.executeInsert();
+			}
+		} finally {
+			cursor.close();
+			insert.close();
+		}
+	}
+
+	private static byte[] decodeKey(String key) {
+		try {
+			return Base64Util.fromBase64(key);
+		} catch (IllegalArgumentException e) {
+			// cannot match anything either way, kept so the row and its contacts stay as they are
+			return key.getBytes(Charset.forName("UTF-8"));
+		}
+	}
+
+	/**
+	 * SQL expression reading 8 bytes of a blob from the given offset as a big-endian long, like
+	 * {@link org.dpppt.android.sdk.internal.crypto.EphId#readLong}. Missing bytes of a shorter blob read as zero.
+	 */
+	static String readLongFromBlob(String column, int offset) {
+		String hex = "hex(substr(" + column + ", " + (offset + 1) + ", 8))";
+		StringBuilder expression = new StringBuilder("(");
+		for (int digit = 0; digit < 16; digit++) {
+			if (digit > 0) {
+				expression.append(" | ");
+			}
+			expression.append("((instr('0123456789ABCDEF', substr(").append(hex).append(", ").append(digit + 1)
+					.append(", 1)) - 1) << ").append(4 * (15 - digit)).append(")");
+		}
+		return expression.append(")").toString();
+	}
+
+	interface Step {
+
+		void apply(SQLiteDatabase db);
+
+	}
+
+
+	static class Migration {
+
+		final int toVersion;
+		private final Step step;
+
+		Migration(int toVersion, String... statements) {
+			this(toVersion, db -> {
+				for (String statement : statements) {
+					db.execSQL(statement);
+				}
+			});
+		}
+
+		Migration(int toVersion, Step step) {
+			this.toVersion = toVersion;
+			this.step = step;
+		}
+
+		void apply(SQLiteDatabase db) {
+			step.apply(db);
+		}
+
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Small pool of read-only connections to a database in WAL mode. Readers work on the last committed snapshot and
+ * never wait for the writer, no matter how long its transaction runs. Connections are opened on first demand.
+ */
+class ReadConnectionPool {
+
+	private final File databaseFile;
+	private final StorageProfile storageProfile;
+	private final BlockingQueue<SQLiteDatabase> idleConnections;
+	private int openedConnections = 0;
+
+	ReadConnectionPool(@NonNull File databaseFile, @NonNull StorageProfile storageProfile) {
+		this.databaseFile = databaseFile;
+		this.storageProfile = storageProfile;
+		idleConnections = new ArrayBlockingQueue<>(storageProfile.getReadConnections());
+	}
+
+	<T> T read(@NonNull Reader<T> reader) {
+		SQLiteDatabase db = acquire();
+		try {
+			return reader.read(db);
+		} finally {
+			idleConnections.offer(db);
+		}
+	}
+
+	private SQLiteDatabase acquire() {
+		SQLiteDatabase db = idleConnections.poll();
+		if (db != null) {
+			return db;
+		}
+		synchronized (this) {
+			if (openedConnections < storageProfile.getReadConnections()) {
+				db = SQLiteDatabase.openDatabase(databaseFile.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+				storageProfile.applyToReader(db);
+				openedConnections++;
+				return db;
+			}
+		}
+		try {
+			return idleConnections.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for a read connection", e);
+		}
+	}
+
+	interface Reader<T> {
+
+		T read(SQLiteDatabase db);
+
+	}
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.dpppt.android.sdk.internal.crypto.CryptoModule;
+import org.dpppt.android.sdk.internal.logger.Logger;
+import org.dpppt.android.sdk.internal.util.DayDate;
+
+/**
+ * Removes the data past its retention period and returns the freed pages to the file system. The work is split into
+ * chunks of bounded cost; after each chunk the task posts itself again to the bulk lane of the
+ * {@link DatabaseExecutor}, so handshake commits and requests queued in the meantime run in between instead of waiting
+ * for the whole cleanup.
+ * <p>
+ * In calibration builds the raw handshakes are kept for {@link #RAW_HANDSHAKE_DAYS_TO_KEEP} days and then downsampled
+ * into {@link HandshakeAggregates}, one epoch range per chunk.
+ */
+class RetentionTask implements Runnable {
+
+	private static final String TAG = "RetentionTask";
+
+	static final int ROWS_PER_CHUNK = 500;
+	static final int PAGES_PER_CHUNK = 256;
+	static final int EPOCHS_PER_CHUNK = 4;
+	static final int RAW_HANDSHAKE_DAYS_TO_KEEP = 2;
+
+	static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+	// the columns are in the order of the parameters of HandshakeIngestion.MERGE_AGGREGATE and INSERT_AGGREGATE
+	static final String GROUP_HANDSHAKES = "SELECT count(*), min(" + Handshakes.TIMESTAMP + "), max(" +
+			Handshakes.TIMESTAMP + "), min(" + Handshakes.RSSI + "), max(" + Handshakes.RSSI + "), avg(" + Handshakes.RSSI +
+			"), min(" + Handshakes.TX_POWER_LEVEL + "), max(" + Handshakes.TX_POWER_LEVEL + "), avg(" +
+			Handshakes.TX_POWER_LEVEL + "), (" + Handshakes.TIMESTAMP + " / " + CryptoModule.MILLISECONDS_PER_EPOCH +
+			") * " + CryptoModule.MILLISECONDS_PER_EPOCH + " AS epoch, " + Handshakes.EPHID_HIGH + ", " +
+			Handshakes.EPHID_LOW + " FROM " + Handshakes.TABLE_NAME + " WHERE " + Handshakes.TIMESTAMP + " >= ? AND " +
+			Handshakes.TIMESTAMP + " < ? GROUP BY epoch, " + Handshakes.EPHID_HIGH + ", " + Handshakes.EPHID_LOW;
+
+	private final SQLiteDatabase db;
+	private final DatabaseExecutor databaseExecutor;
+	private final boolean downsampleHandshakes;
+	private final long firstDayToKeep;
+	private final long firstEpochToKeep;
+	private final long downsampleBefore;
+
+	private final Step[] steps;
+	private int currentStep = 0;
+
+	/**
+	 * @param databaseExecutor the executor to post the following chunks to, or null to only run them through
+	 *                         {@link #runChunk()}
+	 */
+	RetentionTask(@NonNull SQLiteDatabase db, @Nullable DatabaseExecutor databaseExecutor, boolean downsampleHandshakes,
+			long now) {
+		this.db = db;
+		this.databaseExecutor = databaseExecutor;
+		this.downsampleHandshakes = downsampleHandshakes;
+		DayDate today = new DayDate(now);
+		DayDate firstDay = today.subtractDays(CryptoModule.NUMBER_OF_DAYS_TO_KEEP_DATA);
+		firstDayToKeep = firstDay.getEpochDay();
+		firstEpochToKeep = firstDay.getStartOfDayTimestamp();
+		downsampleBefore = today.subtractDays(RAW_HANDSHAKE_DAYS_TO_KEEP).getStartOfDayTimestamp();
+		steps = new Step[] {
+				() -> deleteChunk(KnownCases.TABLE_NAME, KnownCases.BUCKET_DAY + " < ?", firstDayToKeep),
+				() -> deleteChunk(MatchingJournal.TABLE_NAME, MatchingJournal.KNOWN_CASE_ID + " NOT IN (SELECT " +
+						KnownCases.ID + " FROM " + KnownCases.TABLE_NAME + ")"),
+				() -> deleteChunk(Contacts.TABLE_NAME, Contacts.DAY + " < ?", firstDayToKeep),
+				this::downsampleHandshakesChunk,
+				() -> deleteChunk(HandshakeAggregates.TABLE_NAME, HandshakeAggregates.EPOCH + " < ?", firstEpochToKeep),
+				this::reclaimSpaceChunk
+		};
+	}
+
+	@Override
+	public void run() {
+		if (runChunk()) {
+			databaseExecutor.post(DatabaseExecutor.Lane.BULK, this);
+		} else {
+			Logger.d(TAG, "retention finished");
+		}
+	}
+
+	/**
+	 * Runs the next chunk of work.
+	 *
+	 * @return true if there is more work to do
+	 */
+	boolean runChunk() {
+		while (currentStep < steps.length) {
+			if (steps[currentStep].run()) {
+				return true;
+			}
+			currentStep++;
+		}
+		return false;
+	}
+
+	private boolean deleteChunk(String table, String whereClause, Object... whereArgs) {
+		String[] args = new String[whereArgs.length];
+		for (int i = 0; i < whereArgs.length; i++) {
+			args[i] = "" + whereArgs[i];
+		}
+		int deleted = db.delete(table, "rowid IN (SELECT rowid FROM " + table + " WHERE " + whereClause + " LIMIT " +
+				ROWS_PER_CHUNK + ")", args);
+		return deleted == ROWS_PER_CHUNK;
+	}
+
+	private boolean downsampleHandshakesChunk() {
+		if (!downsampleHandshakes) {
+			return false;
+		}
+		// only handshakes that were already converted to contacts can be downsampled
+		long until = Math.min(downsampleBefore, Database.getMetadata(db, Metadata.KEY_CONTACTS_WATERMARK, 0));
+		long oldest = queryLong("SELECT min(" + Handshakes.TIMESTAMP + ") FROM " + Handshakes.TABLE_NAME, until);
+		if (oldest >= until) {
+			return false;
+		}
+		long from = oldest / CryptoModule.MILLISECONDS_PER_EPOCH * CryptoModule.MILLISECONDS_PER_EPOCH;
+		long chunkUntil = Math.min(until, from + EPOCHS_PER_CHUNK * (long) CryptoModule.MILLISECONDS_PER_EPOCH);
+		db.beginTransaction();
+		try {
+			mergeIntoAggregates(from, chunkUntil);
+			db.delete(Handshakes.TABLE_NAME, Handshakes.TIMESTAMP + " >= ? AND " + Handshakes.TIMESTAMP + " < ?",
+					new String[] { "" + from, "" + chunkUntil });
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the handshakes of the range to the aggregates of their EphId and epoch, merged like the aggregates written by
+	 * the {@link HandshakeIngestion} if the epoch already has one.
+	 */
+	private void mergeIntoAggregates(long from, long until) {
+		SQLiteStatement merge = db.compileStatement(HandshakeIngestion.MERGE_AGGREGATE);
+		SQLiteStatement insert = db.compileStatement(HandshakeIngestion.INSERT_AGGREGATE);
+		Cursor cursor = db.rawQuery(GROUP_HANDSHAKES, new String[] { "" + from, "" + until });
+		try {
+			while (cursor.moveToNext()) {
+				bindGroup(merge, cursor);
+				if (merge.executeUpdateDelete() == 0) {
+					bindGroup(insert, cursor);
+					insert.executeInsert();
+				}
+			}
+		} finally {
+			cursor.close();
+			merge.close();
+			insert.close();
+		}
+	}
+
+	private static void bindGroup(SQLiteStatement statement, Cursor cursor) {
+		for (int i = 0; i < cursor.getColumnCount(); i++) {
+			if (cursor.getType(i) == Cursor.FIELD_TYPE_FLOAT) {
+				statement.bindDouble(i + 1, cursor.getDouble(i));
+			} else {
+				statement.bindLong(i + 1, cursor.getLong(i));
+			}
+		}
+	}
+
+	private boolean reclaimSpaceChunk() {
+		if (queryLong("PRAGMA auto_vacuum", 0) != AUTO_VACUUM_INCREMENTAL) {
+			// databases created before incremental vacuum was enabled keep their free pages for reuse until they are
+			// rebuilt once, see Database#enableIncrementalVacuum()
+			return false;
+		}
+		long freePages = queryLong("PRAGMA freelist_count", 0);
+		if (freePages == 0) {
+			return false;
+		}
+		queryLong("PRAGMA incremental_vacuum(" + PAGES_PER_CHUNK + ")", 0);
+		return freePages > PAGES_PER_CHUNK;
+	}
+
+	private long queryLong(String sql, long defaultValue) {
+		Cursor cursor = db.rawQuery(sql, null);
+		long value = cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : defaultValue;
+		cursor.close();
+		return value;
+	}
+
+	private interface Step {
+
+		/**
+		 * @return true if the step has more work to do
+		 */
+		boolean run();
+
+	}
+
+}
@@ -0,0 +1,19 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+/**
+ * Receives the rows of a streaming read one at a time. The same row object is reused for every row of a read, so it
+ * must not be kept beyond the call.
+ */
+public interface RowVisitor<R> {
+
+	/**
+	 * @return false to stop the read after this row
+	 */
+	boolean visit(R row);
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.dpppt.android.sdk.BuildConfig;
+import org.dpppt.android.sdk.internal.util.Json;
+
+/**
+ * Export of several databases as one zip file. All snapshots are taken first, into a temporary directory, so no
+ * database is held while the bundle is compressed and written to a possibly slow target. The first entry is
+ * {@link #MANIFEST_NAME}, describing the bundle and each database file in it.
+ */
+public class SnapshotBundle {
+
+	public static final String MANIFEST_NAME = "manifest.json";
+	static final int FORMAT_VERSION = 1;
+
+	private final List<Source> sources = new ArrayList<>();
+
+	/**
+	 * @param name          name of the database file in the bundle
+	 * @param schemaVersion the version of the database schema
+	 */
+	public void add(@NonNull String name, int schemaVersion, @NonNull Snapshotter snapshotter) {
+		sources.add(new Source(name, schemaVersion, snapshotter));
+	}
+
+	/**
+	 * Snapshots all databases and writes the bundle to the target, which is closed afterwards.
+	 *
+	 * @param tempDirectory directory for the snapshots, they are deleted once written
+	 */
+	public void writeTo(@NonNull OutputStream targetOut, @NonNull File tempDirectory) throws IOException {
+		List<File> snapshots = new ArrayList<>();
+		try {
+			Manifest manifest = new Manifest(System.currentTimeMillis());
+			for (Source source : sources) {
+				File snapshot = File.createTempFile("snapshot", ".db", tempDirectory);
+				snapshots.add(snapshot);
+				String method = source.snapshotter.snapshotTo(snapshot);
+				manifest.files.add(new ManifestFile(source.name, snapshot.length(), source.schemaVersion, method));
+			}
+
+			ZipOutputStream zipOut = new ZipOutputStream(targetOut);
+			try {
+				zipOut.putNextEntry(new ZipEntry(MANIFEST_NAME));
+				zipOut.write(Json.toJson(manifest).getBytes("UTF-8"));
+				zipOut.closeEntry();
+
+				// the channel writes into the compressing stream and must not be closed on its own
+				WritableByteChannel channel = Channels.newChannel(zipOut);
+				for (int i = 0; i < sources.size(); i++) {
+					zipOut.putNextEntry(new ZipEntry(sources.get(i).name));
+					DatabaseSnapshot.transferTo(snapshots.get(i), channel);
+					zipOut.closeEntry();
+				}
+			} finally {
+				zipOut.close();
+			}
+		} finally {
+			for (File snapshot : snapshots) {
+				DatabaseSnapshot.deleteIfExists(snapshot);
+			}
+		}
+	}
+
+	public interface Snapshotter {
+
+		/**
+		 * Writes a consistent copy of the database into the target file.
+		 *
+		 * @return the method used, see {@link DatabaseSnapshot}
+		 */
+		String snapshotTo(File target) throws IOException;
+
+	}
+
+
+	private static class Source {
+
+		final String name;
+		final int schemaVersion;
+		final Snapshotter snapshotter;
+
+		Source(String name, int schemaVersion, Snapshotter snapshotter) {
+			this.name = name;
+			this.schemaVersion = schemaVersion;
+			this.snapshotter = snapshotter;
+		}
+
+	}
+
+
+	private static class Manifest {
+
+		private int formatVersion = FORMAT_VERSION;
+		private long created;
+		private int sdkVersionCode = BuildConfig.VERSION_CODE;
+		private String sdkVersionName = BuildConfig.VERSION_NAME;
+		private long sdkBuildTime = BuildConfig.BUILD_TIME;
+		private String flavor = BuildConfig.FLAVOR;
+		private List<ManifestFile> files = new ArrayList<>();
+
+		Manifest(long created) {
+			this.created = created;
+		}
+
+	}
+
+
+	private static class ManifestFile {
+
+		private String name;
+		private long sizeBytes;
+		private int schemaVersion;
+		private String snapshotMethod;
+
+		ManifestFile(String name, long sizeBytes, int schemaVersion, String snapshotMethod) {
+			this.name = name;
+			this.sizeBytes = sizeBytes;
+			this.schemaVersion = schemaVersion;
+			this.snapshotMethod = snapshotMethod;
+		}
+
+	}
+
+}
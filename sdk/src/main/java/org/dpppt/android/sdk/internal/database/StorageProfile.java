@@ -0,0 +1,80 @@
+/*
+ * Created by Ubique Innovation AG
+ * https://www.ubique.ch
+ * Copyright (c) 2020. All rights reserved.
+ */
+package org.dpppt.android.sdk.internal.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Connection settings of the tracing database. The database always runs in write-ahead-log mode; the profile decides
+ * how often the log is synced, how much page cache and memory-mapped I/O every connection may use and how many
+ * read-only connections serve queries outside the database thread.
+ */
+public class StorageProfile {
+
+	public enum Synchronous {
+		OFF,
+		NORMAL,
+		FULL
+	}
+
+	public static final StorageProfile DEFAULT = new StorageProfile(Synchronous.NORMAL, 2048, 0, 2);
+
+	private final Synchronous synchronous;
+	private final int cacheSizeKiB;
+	private final long mmapSize;
+	private final int readConnections;
+
+	/**
+	 * @param synchronous the sync level of the writer; NORMAL only loses the last transactions on power loss in WAL mode
+	 * @param cacheSizeKiB the page cache size of every connection
+	 * @param mmapSize the number of bytes every connection may access through memory-mapped I/O, 0 to disable it
+	 * @param readConnections the size of the read-only connection pool, at least 1
+	 */
+	public StorageProfile(Synchronous synchronous, int cacheSizeKiB, long mmapSize, int readConnections) {
+		if (cacheSizeKiB <= 0 || mmapSize < 0 || readConnections < 1) {
+			throw new IllegalArgumentException("invalid storage profile");
+		}
+		this.synchronous = synchronous;
+		this.cacheSizeKiB = cacheSizeKiB;
+		this.mmapSize = mmapSize;
+		this.readConnections = readConnections;
+	}
+
+	public Synchronous getSynchronous() {
+		return synchronous;
+	}
+
+	public int getCacheSizeKiB() {
+		return cacheSizeKiB;
+	}
+
+	public long getMmapSize() {
+		return mmapSize;
+	}
+
+	public int getReadConnections() {
+		return readConnections;
+	}
+
+	void applyToWriter(SQLiteDatabase db) {
+		executePragma(db, "synchronous = " + synchronous.name());
+		applyToReader(db);
+	}
+
+	void applyToReader(SQLiteDatabase db) {
+		executePragma(db, "cache_size = -" + cacheSizeKiB);
+		executePragma(db, "mmap_size = " + mmapSize);
+	}
+
+	private static void executePragma(SQLiteDatabase db, String pragma) {
+		// some pragmas return the new value, which execSQL refuses
+		Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+		cursor.moveToFirst();
+		cursor.close();
+	}
+
+}
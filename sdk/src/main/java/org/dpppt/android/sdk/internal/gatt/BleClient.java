@@ -51,7 +51,7 @@ public class BleClient {
 	public void start() {
 		final BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
 		if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
-			BroadcastHelper.sendUpdateBroadcast(context);
+			BroadcastHelper.sendErrorStateChangedBroadcast(context);
 			return;
 		}
 		bleScanner = bluetoothAdapter.getBluetoothLeScanner();
@@ -139,7 +139,7 @@ public class BleClient {
 		final BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
 		if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
 			bleScanner = null;
-			BroadcastHelper.sendUpdateBroadcast(context);
+			BroadcastHelper.sendErrorStateChangedBroadcast(context);
 			return;
 		}
 		if (bleScanner == null) {
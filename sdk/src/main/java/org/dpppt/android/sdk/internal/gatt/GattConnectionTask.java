@@ -15,6 +15,7 @@ import android.util.Log;
 
 import java.util.Arrays;
 
+import org.dpppt.android.sdk.internal.crypto.CryptoModule;
 import org.dpppt.android.sdk.internal.database.Database;
 import org.dpppt.android.sdk.internal.logger.Logger;
 
@@ -118,6 +119,11 @@ public class GattConnectionTask {
 	}
 
 	public void addHandshakeToDatabase(byte[] starValue, String macAddress, int rxPowerLevel, int rssi) {
+		if (starValue == null || starValue.length != CryptoModule.KEY_LENGTH) {
+			Logger.w(TAG, "skipping malformed star of " + (starValue == null ? 0 : starValue.length) + " bytes from " +
+					macAddress);
+			return;
+		}
 		try {
 			String base64String = toBase64(starValue);
 			ContentValues handshakeData = new Database(context)